@@ -0,0 +1,70 @@
+package clay.filter;
+
+/**
+ * A filter that is passed the cells of one column of a batch of rows at a time,
+ * instead of a single cell. When all records of an input are parsed at once (by
+ * {@link clay.input.CSVInput#getRecords()}, on one or more threads) the rows are
+ * filtered in batches of a few thousand, and this filter is invoked once per
+ * column of every batch: a filter that does real work per cell can do that work
+ * in a tight loop, without a call per cell.
+ *
+ * Wherever the records are read one by one (iterating over them, pushing them to
+ * a handler, reading a range of them) the filter is passed one cell at a time, by
+ * {@link #apply(int, int, String)}: by default, as a batch of a single cell.
+ *
+ * For example, a filter that upper cases all values:
+ *
+ * <pre>
+ * <code>
+ * Input input = new Input("a,b,c\n1,2,3")
+ *     .with(new BatchFilter() {
+ *         &#64;Override
+ *         public void apply(int firstRow, int columnIndex, String[] values, int count) {
+ *             for (int i = 0; i &lt; count; i++) {
+ *                 if (values[i] != null) {
+ *                     values[i] = values[i].toUpperCase();
+ *                 }
+ *             }
+ *         }
+ *     });
+ * </code>
+ * </pre>
+ */
+public abstract class BatchFilter implements Filter {
+
+    /**
+     * Filters the cells of a column in a batch of consecutive rows, in place. A
+     * cell is skipped when it is set to {@code null}, else its (new) value in the
+     * array is used.
+     *
+     * @param firstRow
+     *         the index of the row of the first value (starting from 0): the value
+     *         at index {@code i} is the cell in row {@code firstRow + i}.
+     * @param columnIndex
+     *         the index of the column of the values (starting from 0).
+     * @param values
+     *         the values to be filtered. A value is {@code null} when its row has
+     *         no cell in the column, or when it has been excluded already: such a
+     *         value must stay {@code null}. Note that the other values might not
+     *         be the original values from the input anymore. They could have been
+     *         changed by a previous {@code Filter}.
+     * @param count
+     *         the number of values in the batch: the array may be longer.
+     */
+    public abstract void apply(int firstRow, int columnIndex, String[] values, int count);
+
+    /**
+     * Filters a single cell, as a batch of one value.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String apply(int rowIndex, int columnIndex, String value) {
+
+        String[] values = new String[]{value};
+
+        this.apply(rowIndex, columnIndex, values, 1);
+
+        return values[0];
+    }
+}
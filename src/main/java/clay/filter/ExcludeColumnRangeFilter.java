@@ -37,6 +37,24 @@ public class ExcludeColumnRangeFilter implements Filter {
         this.to = to;
     }
 
+    /**
+     * Returns the index from which to exclude columns.
+     *
+     * @return the index from which to exclude columns.
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the index from which to include columns again.
+     *
+     * @return the index from which to include columns again.
+     */
+    public int getTo() {
+        return to;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -44,4 +62,30 @@ public class ExcludeColumnRangeFilter implements Filter {
     public String apply(int rowIndex, int columnIndex, String value) {
         return (columnIndex >= from && columnIndex < to) ? null : value;
     }
+
+    /**
+     * Returns {@code true} iff the other object is a filter of the same class that
+     * excludes the same range of columns.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+
+        if (o == null || o.getClass() != this.getClass()) {
+            return false;
+        }
+
+        ExcludeColumnRangeFilter that = (ExcludeColumnRangeFilter) o;
+
+        return that.from == this.from && that.to == this.to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.from + this.to;
+    }
 }
@@ -1,16 +1,14 @@
 package clay.filter;
 
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * A filter that will exclude certain rows from the CSV input.
  */
 public class ExcludeRowFilter implements Filter {
 
-    // All row indexes whose rows should not be included.
-    private final Set<Integer> indexSet;
+    // All row indexes whose rows should not be included: sorted, and without duplicates.
+    private final int[] indexes;
 
     /**
      * Creates a new instance of this filter.
@@ -19,7 +17,36 @@ public class ExcludeRowFilter implements Filter {
      *         all row indexes whose rows should not be included.
      */
     public ExcludeRowFilter(Integer... indexes) {
-        this.indexSet = new HashSet<Integer>(Arrays.asList(indexes));
+
+        int[] sorted = new int[indexes.length];
+        int count = 0;
+
+        for (Integer index : indexes) {
+            if (index != null) {
+                sorted[count++] = index;
+            }
+        }
+
+        Arrays.sort(sorted, 0, count);
+
+        int distinct = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        this.indexes = Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Returns all row indexes whose rows should not be included.
+     *
+     * @return all row indexes whose rows should not be included, in ascending order.
+     */
+    public int[] getIndexes() {
+        return this.indexes.clone();
     }
 
     /**
@@ -27,6 +54,26 @@ public class ExcludeRowFilter implements Filter {
      */
     @Override
     public String apply(int rowIndex, int columnIndex, String value) {
-        return indexSet.contains(rowIndex) ? null : value;
+        return Arrays.binarySearch(this.indexes, rowIndex) >= 0 ? null : value;
+    }
+
+    /**
+     * Returns {@code true} iff the other object is a filter of the same class that
+     * excludes the same rows.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == this.getClass() &&
+                Arrays.equals(((ExcludeRowFilter) o).indexes, this.indexes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.indexes);
     }
 }
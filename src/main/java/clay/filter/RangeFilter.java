@@ -0,0 +1,53 @@
+package clay.filter;
+
+/**
+ * A filter that works on the raw chars of a cell before a string is created for
+ * it: it can narrow the range of the cell, or exclude it, but not change its
+ * chars. While the filters that come before it are range filters as well, the
+ * parser passes it the range of the cell in its own buffer, so that a string is
+ * only created once, for the cells that remain, of the chars that remain.
+ *
+ * Once a cell has been passed to another filter, its value is a string, which is
+ * passed to {@link #apply(int, int, String)}: by default, the range of all chars
+ * of the string. Both methods must narrow or exclude a cell in the same way.
+ */
+public abstract class RangeFilter implements Filter {
+
+    /**
+     * Filters the range of a cell, narrowing it in place.
+     *
+     * @param rowIndex
+     *         the index of the row of the cell (starting from 0).
+     * @param columnIndex
+     *         the index of the column of the cell (starting from 0).
+     * @param chars
+     *         the chars that contain the cell, which must not be changed.
+     * @param range
+     *         the start index (inclusive) of the cell in {@code chars} at index 0,
+     *         and its end index (exclusive) at index 1. A filter that narrows the
+     *         cell stores its new range here.
+     *
+     * @return {@code false} if the cell should be omitted from the input, else
+     * {@code true}.
+     */
+    public abstract boolean apply(int rowIndex, int columnIndex, char[] chars, int[] range);
+
+    /**
+     * Filters a cell of which a string has already been created, by filtering
+     * the range of all of its chars.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String apply(int rowIndex, int columnIndex, String value) {
+
+        char[] chars = value.toCharArray();
+        int[] range = new int[]{0, chars.length};
+
+        if (!this.apply(rowIndex, columnIndex, chars, range)) {
+            return null;
+        }
+
+        return range[0] == 0 && range[1] == chars.length ? value : value.substring(range[0], range[1]);
+    }
+}
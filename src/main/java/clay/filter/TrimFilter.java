@@ -3,7 +3,33 @@ package clay.filter;
 /**
  * A filter that trims all leading and trailing spaces from a cell value.
  */
-public class TrimFilter implements Filter {
+public class TrimFilter extends RangeFilter {
+
+    /**
+     * Narrows the range of a cell to exclude all leading and trailing chars up
+     * to and including a space, like {@link String#trim()} does.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean apply(int rowIndex, int columnIndex, char[] chars, int[] range) {
+
+        int start = range[0];
+        int end = range[1];
+
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        range[0] = start;
+        range[1] = end;
+
+        return true;
+    }
 
     /**
      * {@inheritDoc}
@@ -12,4 +38,23 @@ public class TrimFilter implements Filter {
     public String apply(int rowIndex, int columnIndex, String value) {
         return value.trim();
     }
+
+    /**
+     * Returns {@code true} iff the other object is a filter of the same class:
+     * all instances of a trim filter do the same.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == this.getClass();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return this.getClass().hashCode();
+    }
 }
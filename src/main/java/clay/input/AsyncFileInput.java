@@ -0,0 +1,339 @@
+package clay.input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * An {@code Input} represented as a local {@code File} that is read with an
+ * {@code AsynchronousFileChannel}, for storage with a high latency (such as
+ * network mounted volumes).
+ *
+ * The file is read through a ring of direct buffers: the reads of the next
+ * buffers are issued while the bytes of the current one are being tokenized,
+ * so the CPU does not sit idle waiting for every read to complete. On top of
+ * that, the records can be parsed in the background with {@link #getRecordsAsync()}
+ * or {@link #parseAsync(RecordHandler)}, which complete a {@code CompletableFuture}
+ * once the whole file has been parsed.
+ */
+public class AsyncFileInput extends FileInput {
+
+    /**
+     * Creates a new {@code AsyncFileInput} instance with default:
+     * - delimiter: {@value #DEFAULT_DELIMITER}
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public AsyncFileInput(File file) throws FileNotFoundException, IllegalArgumentException {
+        this(file, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates a new {@code AsyncFileInput} instance with default:
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public AsyncFileInput(File file, String delimiter) throws FileNotFoundException, IllegalArgumentException {
+        this(file, delimiter, DEFAULT_QUOTATION, DEFAULT_ESCAPE_QUOTATION);
+    }
+
+    /**
+     * Creates a new {@code AsyncFileInput} instance with default:
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public AsyncFileInput(File file, String delimiter, String quotation, String escapeQuotation)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, DEFAULT_RECORD_END);
+    }
+
+    /**
+     * Creates a new {@code AsyncFileInput} instance with default:
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public AsyncFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, recordEnd, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new {@code AsyncFileInput} instance.
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     * @param charset
+     *         the charset with which the file is decoded.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public AsyncFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                          Charset charset) throws FileNotFoundException, IllegalArgumentException {
+
+        super(file, delimiter, quotation, escapeQuotation, recordEnd, charset);
+    }
+
+    /**
+     * Parses the records of the file in the background, using the common
+     * {@code ForkJoinPool}.
+     *
+     * @return a future that completes with the same records as {@link #getRecords()},
+     * or exceptionally when the file could not be parsed.
+     */
+    public CompletableFuture<List<List<String>>> getRecordsAsync() {
+        return this.getRecordsAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses the records of the file in the background. The filters, selected
+     * columns and conditions are those of this input at the time of the call:
+     * changing them afterwards does not affect the parse, nor does the parse
+     * affect this input.
+     *
+     * @param executor
+     *         the executor that parses the file.
+     *
+     * @return a future that completes with the same records as {@link #getRecords()},
+     * or exceptionally when the file could not be parsed.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code executor} is {@code null}.
+     */
+    public CompletableFuture<List<List<String>>> getRecordsAsync(Executor executor) throws IllegalArgumentException {
+
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+
+        if (this.data != null) {
+            // Already parsed: no need to tokenize the file again.
+            return CompletableFuture.completedFuture(this.getRecords());
+        }
+
+        final RecordIterator iterator;
+
+        try {
+            // Opened on this thread, so that the tokenizer and iterator take their snapshots of this input here.
+            iterator = new RecordIterator(this.project(this.openTokenizer()), this.filters.values());
+        }
+        catch (IOException e) {
+            return failed(e);
+        }
+
+        return CompletableFuture.supplyAsync(new Supplier<List<List<String>>>() {
+            @Override
+            public List<List<String>> get() {
+
+                List<List<String>> records = new ArrayList<List<String>>();
+
+                while (iterator.hasNext()) {
+                    records.add(iterator.next());
+                }
+
+                return records;
+            }
+        }, executor);
+    }
+
+    /**
+     * Pushes all records of the file to a handler in the background, using the
+     * common {@code ForkJoinPool}.
+     *
+     * @param handler
+     *         the handler that receives the records.
+     *
+     * @return a future that completes once all records were pushed to the handler,
+     * or exceptionally when the file could not be parsed.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code handler} is {@code null}.
+     */
+    public CompletableFuture<Void> parseAsync(RecordHandler handler) throws IllegalArgumentException {
+        return this.parseAsync(handler, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Pushes all records of the file to a handler in the background. All callbacks
+     * of the handler are invoked by a single thread of the executor, one after the
+     * other, just like {@link #parse(RecordHandler)} does. The filters, selected
+     * columns and conditions are those of this input at the time of the call.
+     *
+     * @param handler
+     *         the handler that receives the records.
+     * @param executor
+     *         the executor that parses the file.
+     *
+     * @return a future that completes once all records were pushed to the handler,
+     * or exceptionally when the file could not be parsed.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code handler} or {@code executor} is {@code null}.
+     */
+    public CompletableFuture<Void> parseAsync(final RecordHandler handler, Executor executor)
+            throws IllegalArgumentException {
+
+        if (handler == null) {
+            throw new IllegalArgumentException("handler == null");
+        }
+
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+
+        final PushParser parser;
+
+        try {
+            parser = new PushParser(this.project(this.openTokenizer()), this.filters.values());
+        }
+        catch (IOException e) {
+            return failed(e);
+        }
+
+        return CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    parser.parse(handler);
+                }
+                catch (IOException e) {
+                    throw new RuntimeException("could not read the input", e);
+                }
+            }
+        }, executor);
+    }
+
+    // Returns a future that failed because the file could not be opened.
+    private static <T> CompletableFuture<T> failed(IOException e) {
+
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(new RuntimeException("could not open the input", e));
+
+        return future;
+    }
+
+    /**
+     * Opens a reader that decodes the file as it is read ahead asynchronously.
+     *
+     * @return a new reader from which the CSV input is tokenized.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    protected Reader openReader() throws IOException {
+
+        CharsetDecoder decoder = this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        return Channels.newReader(this.openChannel(), decoder, Tokenizer.WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a tokenizer that works on the raw bytes of the file as they are read
+     * ahead asynchronously when possible, else one that tokenizes the chars of the
+     * reader returned by {@link #openReader()}.
+     *
+     * @return a new tokenizer that reads the raw records of the file.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    Tokenizer openTokenizer() throws IOException {
+
+        if (!ByteTokenizer.supports(this.charset, this.delimiter, this.quotation, this.escapeQuotation,
+                this.recordEnd)) {
+            return this.tokenizer(this.openReader());
+        }
+
+        return ByteTokenizer.forChannel(this.openChannel(), Tokenizer.WINDOW_SIZE, this.charset, this.delimiter,
+                this.quotation, this.escapeQuotation, this.recordEnd);
+    }
+
+    // Opens a channel that reads the file ahead asynchronously.
+    private ReadAheadChannel openChannel() throws IOException {
+
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        return new ReadAheadChannel(channel, ReadAheadChannel.DEFAULT_BUFFER_COUNT,
+                ReadAheadChannel.DEFAULT_BUFFER_SIZE);
+    }
+}
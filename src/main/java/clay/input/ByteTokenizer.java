@@ -0,0 +1,627 @@
+package clay.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A tokenizer that works on the raw bytes of the input instead of on decoded
+ * chars. This is possible when all substrings of the dialect are a single ASCII
+ * char and the input is encoded in a charset in which the bytes of these chars
+ * never occur in the encoding of other chars (see {@link #supports(Charset, String, String, String, String)}).
+ *
+ * The delimiter, quotation and record end are found 8 bytes at a time: each
+ * {@code long} read from the window is compared against all three bytes at once
+ * (SWAR: SIMD within a register). Only the bytes of cells are decoded, straight
+ * from the window when possible: into strings by {@link #next()}, or into a
+ * reused array of chars for the handler passed to {@link #next(CellHandler)}.
+ *
+ * The bytes are either read from a channel into a window of a fixed size, or
+ * they are tokenized straight from memory mapped segments of a file.
+ */
+class ByteTokenizer extends Tokenizer {
+
+    // A long with all bytes set to 0x01.
+    private static final long ONES = 0x0101010101010101L;
+
+    // A long with all bytes set to 0x80.
+    private static final long HIGHS = 0x8080808080808080L;
+
+    // The channel from which the input is read, or null when the input is mapped.
+    private final ReadableByteChannel channel;
+
+    // The channel of the file that is mapped, or null when the input is read.
+    private final FileChannel file;
+
+    // The size of the mapped file.
+    private final long size;
+
+    // The (maximum) number of bytes that are read or mapped at once.
+    private final int windowSize;
+
+    // The charset with which the cells are decoded.
+    private final Charset charset;
+
+    // True iff every byte decodes to the char with the same value (ISO-8859-1).
+    private final boolean latin1;
+
+    // The bytes of the dialect.
+    private final byte delimiterByte;
+    private final byte quotationByte;
+    private final byte escapeByte;
+    private final byte recordEndByte;
+
+    // The bytes of the dialect, repeated in all 8 bytes of a long.
+    private final long delimiterPattern;
+    private final long quotationPattern;
+    private final long escapePattern;
+    private final long recordEndPattern;
+
+    // The window holding the bytes that are read (or mapped) from the input.
+    private ByteBuffer window;
+
+    // A view of the window used to copy bytes out of it when it is not backed by an array.
+    private ByteBuffer view;
+
+    // The index in the window of the next byte that will be tokenized.
+    private int position;
+
+    // The number of bytes in the window.
+    private int limit;
+
+    // The position in the input of the first byte in the window.
+    private long offset;
+
+    // Becomes true once the end of the input has been reached.
+    private boolean eof;
+
+    // A buffer for the bytes of cells that are not made up of a single run of bytes.
+    private byte[] buffer;
+
+    // The number of bytes in the buffer.
+    private int buffered;
+
+    // The chars of the last cell that was decoded for a handler, reused for all cells.
+    private char[] chars;
+
+    /**
+     * Creates a tokenizer that reads the bytes from a channel.
+     *
+     * @param channel
+     *         the channel from which the CSV input is read.
+     * @param windowSize
+     *         the number of bytes that are read at once.
+     * @param charset
+     *         the charset with which the cells are decoded.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @return a tokenizer that reads the bytes from a channel.
+     *
+     * @throws IllegalArgumentException
+     *         when the charset and dialect are not supported.
+     */
+    static ByteTokenizer forChannel(ReadableByteChannel channel, int windowSize, Charset charset, String delimiter,
+                                    String quotation, String escapeQuotation, String recordEnd)
+            throws IllegalArgumentException {
+
+        return new ByteTokenizer(channel, null, -1, windowSize, ByteBuffer.allocate(windowSize), charset, delimiter,
+                quotation, escapeQuotation, recordEnd);
+    }
+
+    /**
+     * Creates a tokenizer that tokenizes the bytes straight from memory mapped
+     * segments of a file.
+     *
+     * @param file
+     *         the channel of the file to map.
+     * @param segmentSize
+     *         the (maximum) number of bytes that are mapped at once.
+     * @param charset
+     *         the charset with which the cells are decoded.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @return a tokenizer that tokenizes the bytes straight from memory mapped
+     * segments of a file.
+     *
+     * @throws IOException
+     *         when the size of the file could not be determined.
+     * @throws IllegalArgumentException
+     *         when the charset and dialect are not supported.
+     */
+    static ByteTokenizer forMappedFile(FileChannel file, long segmentSize, Charset charset, String delimiter,
+                                       String quotation, String escapeQuotation, String recordEnd)
+            throws IOException, IllegalArgumentException {
+
+        // The first segment is mapped once the first byte is needed.
+        return new ByteTokenizer(null, file, file.size(), (int) Math.min(segmentSize, Integer.MAX_VALUE),
+                ByteBuffer.allocate(0), charset, delimiter, quotation, escapeQuotation, recordEnd);
+    }
+
+    private ByteTokenizer(ReadableByteChannel channel, FileChannel file, long size, int windowSize, ByteBuffer window,
+                          Charset charset, String delimiter, String quotation, String escapeQuotation,
+                          String recordEnd) {
+
+        super(delimiter, quotation, escapeQuotation, recordEnd);
+
+        if (!supports(charset, delimiter, quotation, escapeQuotation, recordEnd)) {
+            throw new IllegalArgumentException("the charset and dialect cannot be tokenized as bytes");
+        }
+
+        if (windowSize < 16) {
+            throw new IllegalArgumentException("windowSize < 16");
+        }
+
+        this.channel = channel;
+        this.file = file;
+        this.size = size;
+        this.windowSize = windowSize;
+        this.window = window.order(ByteOrder.LITTLE_ENDIAN);
+        this.view = window.duplicate();
+        this.charset = charset;
+        this.latin1 = charset.name().equals("ISO-8859-1");
+
+        this.delimiterByte = (byte) delimiter.charAt(0);
+        this.quotationByte = (byte) quotation.charAt(0);
+        this.escapeByte = (byte) escapeQuotation.charAt(0);
+        this.recordEndByte = (byte) recordEnd.charAt(0);
+
+        this.delimiterPattern = (this.delimiterByte & 0xFFL) * ONES;
+        this.quotationPattern = (this.quotationByte & 0xFFL) * ONES;
+        this.escapePattern = (this.escapeByte & 0xFFL) * ONES;
+        this.recordEndPattern = (this.recordEndByte & 0xFFL) * ONES;
+
+        this.position = 0;
+        this.limit = 0;
+        this.offset = 0;
+        this.eof = false;
+        this.buffer = new byte[64];
+        this.buffered = 0;
+        this.chars = new char[64];
+    }
+
+    /**
+     * Returns {@code true} iff input in the given charset and dialect can be
+     * tokenized as bytes: all substrings of the dialect must be a single ASCII
+     * char, and the charset must be one in which ASCII bytes only ever encode
+     * ASCII chars (UTF-8, US-ASCII and ISO-8859-1).
+     *
+     * @param charset
+     *         the charset of the input.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @return {@code true} iff input in the given charset and dialect can be
+     * tokenized as bytes.
+     */
+    static boolean supports(Charset charset, String delimiter, String quotation, String escapeQuotation,
+                            String recordEnd) {
+
+        String name = charset.name();
+
+        if (!(name.equals("UTF-8") || name.equals("US-ASCII") || name.equals("ISO-8859-1"))) {
+            return false;
+        }
+
+        for (String substring : new String[]{delimiter, quotation, escapeQuotation, recordEnd}) {
+            if (substring.length() != 1 || substring.charAt(0) >= 0x80) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean next(CellHandler handler) throws IOException {
+
+        if (!this.available(1)) {
+            return false;
+        }
+
+        this.buffered = 0;
+        this.firstColumn();
+
+        while (true) {
+
+            int start = this.position;
+            int index = this.scan(start, this.limit);
+
+            if (index == this.limit) {
+
+                // The run continues beyond the window: buffer it before reading more bytes.
+                this.buffer(start, index);
+                this.position = index;
+
+                if (!this.available(1)) {
+
+                    // The last record of the input need not be terminated by a record end.
+                    if (this.buffered > 0) {
+                        this.emit(handler, this.buffer, 0, this.buffered);
+                    }
+
+                    return true;
+                }
+
+                continue;
+            }
+
+            byte current = this.window.get(index);
+
+            if (current == this.delimiterByte) {
+                this.cell(handler, start, index);
+                this.position = index + 1;
+            }
+            else if (current == this.recordEndByte) {
+                this.cell(handler, start, index);
+                this.position = index + 1;
+                return true;
+            }
+            else {
+                // Anything before the opening quote is discarded.
+                this.buffered = 0;
+                this.position = index + 1;
+                this.quoted();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} unless the strings of the cells are interned: the strings
+     * are decoded straight from the bytes of the input otherwise.
+     *
+     * @return {@code true} unless the strings of the cells are interned.
+     */
+    @Override
+    boolean decodesStrings() {
+        return this.interner == null;
+    }
+
+    /**
+     * Returns the number of bytes of the input that have been tokenized so far.
+     *
+     * @return the number of bytes of the input that have been tokenized so far.
+     */
+    @Override
+    long position() {
+        return this.offset + this.position;
+    }
+
+    /**
+     * Closes the underlying channel. After this, the tokenizer has no more records.
+     *
+     * @throws IOException
+     *         when the channel could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        this.eof = true;
+        this.position = this.limit;
+
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        else {
+            this.file.close();
+        }
+    }
+
+    // Returns the index of the first delimiter, quotation or record end byte in the
+    // window from start (inclusive) to end (exclusive), or end if there is none.
+    private int scan(int start, int end) {
+
+        ByteBuffer window = this.window;
+        int index = start;
+
+        while (index + 8 <= end) {
+
+            long word = window.getLong(index);
+            long matches = zeros(word ^ this.delimiterPattern) |
+                    zeros(word ^ this.recordEndPattern) |
+                    zeros(word ^ this.quotationPattern);
+
+            if (matches != 0) {
+                // The window is little endian: the lowest set bit belongs to the first match.
+                return index + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+
+            index += 8;
+        }
+
+        while (index < end) {
+
+            byte current = window.get(index);
+
+            if (current == this.delimiterByte || current == this.recordEndByte || current == this.quotationByte) {
+                break;
+            }
+
+            index++;
+        }
+
+        return index;
+    }
+
+    // Returns the index of the first quotation or escape byte in the window from
+    // start (inclusive) to end (exclusive), or end if there is none.
+    private int scanQuoted(int start, int end) {
+
+        ByteBuffer window = this.window;
+        int index = start;
+
+        while (index + 8 <= end) {
+
+            long word = window.getLong(index);
+            long matches = zeros(word ^ this.quotationPattern) | zeros(word ^ this.escapePattern);
+
+            if (matches != 0) {
+                return index + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+
+            index += 8;
+        }
+
+        while (index < end && window.get(index) != this.quotationByte && window.get(index) != this.escapeByte) {
+            index++;
+        }
+
+        return index;
+    }
+
+    // Returns a long with the high bit set of (at least) the lowest byte that is zero
+    // in the given word. Bytes above a zero byte can be flagged as well, but never
+    // bytes below it: the lowest flagged byte is always the first zero byte.
+    private static long zeros(long word) {
+        return (word - ONES) & ~word & HIGHS;
+    }
+
+    // Buffers the contents of a quoted cell, up to and including its closing quote.
+    private void quoted() throws IOException {
+
+        while (true) {
+
+            int start = this.position;
+            int index = this.scanQuoted(start, this.limit);
+
+            this.buffer(start, index);
+            this.position = index;
+
+            if (index == this.limit) {
+
+                if (!this.available(1)) {
+                    throw this.unclosedQuote();
+                }
+
+                continue;
+            }
+
+            // Note that looking ahead might move the bytes in the window.
+            if (this.window.get(this.position) == this.escapeByte && this.available(2) &&
+                    this.window.get(this.position + 1) == this.quotationByte) {
+                this.buffer(this.quotationByte);
+                this.position += 2;
+            }
+            else if (this.window.get(this.position) == this.quotationByte) {
+                this.position++;
+                return;
+            }
+            else {
+                // An escape that does not precede a quotation is just a byte.
+                this.buffer(this.escapeByte);
+                this.position++;
+            }
+        }
+    }
+
+    // Passes the cell that ends with the bytes in the window from start to end to the handler.
+    private void cell(CellHandler handler, int start, int end) {
+
+        if (this.buffered == 0 && this.window.hasArray()) {
+            // The most common case: the entire cell is a single run of bytes, decoded straight from the window.
+            this.emit(handler, this.window.array(), this.window.arrayOffset() + start, end - start);
+            return;
+        }
+
+        this.buffer(start, end);
+        this.emit(handler, this.buffer, 0, this.buffered);
+        this.buffered = 0;
+    }
+
+    // Passes the bytes of a cell to the handler unless it is in a column that is not selected (or
+    // fails a condition), and moves on to the next column.
+    private void emit(CellHandler handler, byte[] bytes, int offset, int length) {
+
+        if (!this.skipping) {
+
+            // The number of chars the cell was decoded into, or -1 if it has not been decoded (yet).
+            int decoded = -1;
+
+            if (this.testing) {
+                decoded = this.decode(bytes, offset, length);
+            }
+
+            if ((decoded < 0 || this.test(this.chars, 0, decoded)) && this.passing) {
+
+                if (handler == this.strings && decoded < 0 && this.interner == null) {
+                    // No need to decode into chars first when a (new) string is wanted anyway.
+                    this.strings.row.add(new String(bytes, offset, length, this.charset));
+                }
+                else if (handler != SKIP) {
+
+                    // Note that decoding might replace the chars array.
+                    if (decoded < 0) {
+                        decoded = this.decode(bytes, offset, length);
+                    }
+
+                    handler.cell(this.chars, 0, decoded);
+                }
+            }
+        }
+
+        this.nextColumn();
+    }
+
+    // Decodes the bytes of a cell into the chars array, and returns the number of chars.
+    private int decode(byte[] bytes, int offset, int length) {
+
+        if (this.chars.length < length) {
+            this.chars = new char[Math.max(this.chars.length * 2, length)];
+        }
+
+        char[] chars = this.chars;
+        int index = 0;
+
+        if (this.latin1) {
+            for (; index < length; index++) {
+                chars[index] = (char) (bytes[offset + index] & 0xFF);
+            }
+        }
+        else {
+            // Widen the leading ASCII bytes, which are usually all of them, and decode the rest.
+            while (index < length && bytes[offset + index] >= 0) {
+                chars[index] = (char) bytes[offset + index];
+                index++;
+            }
+
+            if (index < length) {
+                String rest = new String(bytes, offset + index, length - index, this.charset);
+                rest.getChars(0, rest.length(), chars, index);
+                index += rest.length();
+            }
+        }
+
+        return index;
+    }
+
+    // Appends the bytes in the window from start to end to the buffer, unless the cell is in a
+    // column that is not selected.
+    private void buffer(int start, int end) {
+
+        int length = end - start;
+
+        if (length == 0 || this.skipping) {
+            return;
+        }
+
+        this.ensureBuffer(length);
+
+        if (this.window.hasArray()) {
+            int from = this.window.arrayOffset() + start;
+            System.arraycopy(this.window.array(), from, this.buffer, this.buffered, length);
+        }
+        else {
+            this.view.position(start);
+            this.view.get(this.buffer, this.buffered, length);
+        }
+
+        this.buffered += length;
+    }
+
+    // Appends a single byte to the buffer, unless the cell is in a column that is not selected.
+    private void buffer(byte b) {
+
+        if (this.skipping) {
+            return;
+        }
+
+        this.ensureBuffer(1);
+        this.buffer[this.buffered++] = b;
+    }
+
+    // Makes sure the buffer can hold `extra` more bytes.
+    private void ensureBuffer(int extra) {
+
+        if (this.buffered + extra > this.buffer.length) {
+
+            byte[] larger = new byte[Math.max(this.buffer.length * 2, this.buffered + extra)];
+            System.arraycopy(this.buffer, 0, larger, 0, this.buffered);
+            this.buffer = larger;
+        }
+    }
+
+    // Returns true iff there are at least `count` bytes available in the window,
+    // reading (or mapping) more bytes from the input if needed.
+    private boolean available(int count) throws IOException {
+
+        while (this.limit - this.position < count && !this.eof) {
+
+            if (this.channel != null) {
+                this.read();
+            }
+            else {
+                this.map();
+            }
+        }
+
+        return this.limit - this.position >= count;
+    }
+
+    // Moves the bytes that have not been tokenized yet to the start of the window
+    // and reads more bytes from the channel after them.
+    private void read() throws IOException {
+
+        this.window.limit(this.limit);
+        this.window.position(this.position);
+        this.window.compact();
+
+        this.offset += this.position;
+
+        int read = this.channel.read(this.window);
+
+        if (read < 0) {
+            this.eof = true;
+        }
+
+        this.limit = this.window.position();
+        this.position = 0;
+
+        this.window.clear();
+    }
+
+    // Maps the segment of the file that starts at the first byte that has not
+    // been tokenized yet.
+    private void map() throws IOException {
+
+        long start = this.offset + this.position;
+
+        if (start + (this.limit - this.position) >= this.size) {
+            // Everything up to the end of the file is already in the window.
+            this.eof = true;
+            return;
+        }
+
+        this.window = this.file.map(FileChannel.MapMode.READ_ONLY, start, Math.min(this.windowSize, this.size - start))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.view = this.window.duplicate();
+
+        this.offset = start;
+        this.limit = this.window.limit();
+        this.position = 0;
+    }
+}
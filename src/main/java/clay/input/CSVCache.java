@@ -0,0 +1,408 @@
+package clay.input;
+
+import clay.filter.Filter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A cache of the parsed records of file inputs, shared by everything that reads
+ * the same files: the first request for the records of a file parses it, and the
+ * next requests get the same records without reading the file again.
+ *
+ * The records are cached by the identity of the file (its path, size and
+ * modification time) and everything that determines its records: the class
+ * and dialect of the input, its charset, its filters, its selected columns and
+ * its conditions. Filters and conditions are compared with {@code equals}: the
+ * filters of this library are equal when they are of the same class and exclude
+ * the same rows or columns, other filters (and all predicates) only when they
+ * are the same instance, unless they override {@code equals}. A file that has
+ * changed gets new records.
+ *
+ * When many threads request the records of the same file at once, a single
+ * thread parses it, and the others wait for its records.
+ *
+ * The cache holds no more than (an estimate of) a maximum number of bytes of
+ * records: when it exceeds it, the least recently requested records are evicted.
+ *
+ * For example:
+ *
+ * <pre>
+ * <code>
+ * List&lt;List&lt;String&gt;&gt; records = CSVCache.getShared().getRecords(new FileInput(file, "|"));
+ * </code>
+ * </pre>
+ */
+public final class CSVCache {
+
+    /**
+     * The default maximum number of bytes of records of the shared cache: {@value}
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    // The cache shared by all of the process.
+    private static final CSVCache SHARED = new CSVCache(DEFAULT_MAX_BYTES);
+
+    // The cached records, from the least to the most recently requested.
+    private final LinkedHashMap<Key, Entry> entries;
+
+    // The records that are being parsed.
+    private final Map<Key, FutureTask<List<List<String>>>> loading;
+
+    // The maximum estimated number of bytes of the cached records.
+    private long maxBytes;
+
+    // The estimated number of bytes of the cached records.
+    private long bytes;
+
+    // The number of requests that did not parse the input.
+    private long hitCount;
+
+    // The number of requests that parsed the input.
+    private long missCount;
+
+    // The number of records that were evicted.
+    private long evictionCount;
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param maxBytes
+     *         the maximum estimated number of bytes of the cached records.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code maxBytes} is negative.
+     */
+    public CSVCache(long maxBytes) throws IllegalArgumentException {
+
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes < 0");
+        }
+
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        this.loading = new HashMap<Key, FutureTask<List<List<String>>>>();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache shared by all of the process, which holds at most
+     * {@value #DEFAULT_MAX_BYTES} bytes of records until it is changed with
+     * {@link #setMaxBytes(long)}.
+     *
+     * @return the cache shared by all of the process.
+     */
+    public static CSVCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the records of a {@link FileInput}, with all filters applied to
+     * them: the cached records when the same records were requested before, else
+     * the records returned by {@link CSVInput#getRecords()}. The returned records
+     * are shared by all requests: neither the list nor any record in it can be
+     * modified.
+     *
+     * @param input
+     *         the input to return the records of.
+     *
+     * @return the records of the input.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code input} is {@code null}, or not a {@link FileInput}.
+     * @throws RuntimeException
+     *         when the input could not be parsed, which is thrown to all requests
+     *         that waited for it.
+     */
+    public List<List<String>> getRecords(final CSVInput input) throws IllegalArgumentException {
+
+        if (input == null) {
+            throw new IllegalArgumentException("input == null");
+        }
+
+        if (!(input instanceof FileInput)) {
+            throw new IllegalArgumentException("input is not a FileInput: " + input.getClass().getName());
+        }
+
+        Key key = new Key((FileInput) input);
+        FutureTask<List<List<String>>> task;
+        boolean load = false;
+
+        synchronized (this) {
+
+            Entry entry = this.entries.get(key);
+
+            if (entry != null) {
+                this.hitCount++;
+                return entry.records;
+            }
+
+            task = this.loading.get(key);
+
+            if (task == null) {
+
+                task = new FutureTask<List<List<String>>>(new Callable<List<List<String>>>() {
+                    @Override
+                    public List<List<String>> call() {
+                        return unmodifiable(input.getRecords());
+                    }
+                });
+
+                this.loading.put(key, task);
+                this.missCount++;
+                load = true;
+            }
+            else {
+                this.hitCount++;
+            }
+        }
+
+        if (load) {
+            this.load(key, task);
+        }
+
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the records", e);
+        }
+        catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException("could not read the input", cause);
+        }
+    }
+
+    // Parses the records on the current thread, and caches them when it succeeds.
+    private void load(Key key, FutureTask<List<List<String>>> task) {
+
+        task.run();
+
+        Entry entry = null;
+
+        try {
+            List<List<String>> records = task.get();
+
+            // Weigh them outside the lock: it walks over all cells.
+            entry = new Entry(records, weigh(records));
+        }
+        catch (InterruptedException e) {
+            // Cannot happen: the task is done.
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // Not cached: the next request parses the input again.
+        }
+
+        synchronized (this) {
+
+            this.loading.remove(key);
+
+            if (entry != null) {
+                this.entries.put(key, entry);
+                this.bytes += entry.weight;
+                this.evict();
+            }
+        }
+    }
+
+    // Evicts the least recently requested records until the cached records fit.
+    private void evict() {
+
+        for (Iterator<Entry> entries = this.entries.values().iterator();
+             this.bytes > this.maxBytes && entries.hasNext(); ) {
+
+            this.bytes -= entries.next().weight;
+            this.evictionCount++;
+            entries.remove();
+        }
+    }
+
+    // Returns a view of the records that cannot be modified, nor can any of the records in it.
+    private static List<List<String>> unmodifiable(List<List<String>> records) {
+
+        List<List<String>> views = new ArrayList<List<String>>(records.size());
+
+        for (List<String> record : records) {
+            views.add(Collections.unmodifiableList(record));
+        }
+
+        return Collections.unmodifiableList(views);
+    }
+
+    // Returns an estimate of the number of bytes of the records.
+    private static long weigh(List<List<String>> records) {
+
+        // The views of the list of the records, with a reference to every record.
+        long weight = 56 + 4L * records.size();
+
+        for (List<String> record : records) {
+
+            // The unmodifiable view and list of the cells, with a reference to every cell.
+            weight += 56 + 4L * record.size();
+
+            for (String cell : record) {
+                // A string and its array, with two bytes per char.
+                weight += 40 + 2L * cell.length();
+            }
+        }
+
+        return weight;
+    }
+
+    /**
+     * Returns the maximum estimated number of bytes of the cached records.
+     *
+     * @return the maximum estimated number of bytes of the cached records.
+     */
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * Changes the maximum estimated number of bytes of the cached records, evicting
+     * the least recently requested records until the cached records fit.
+     *
+     * @param maxBytes
+     *         the maximum estimated number of bytes of the cached records.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code maxBytes} is negative.
+     */
+    public synchronized void setMaxBytes(long maxBytes) throws IllegalArgumentException {
+
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes < 0");
+        }
+
+        this.maxBytes = maxBytes;
+        this.evict();
+    }
+
+    /**
+     * Returns the estimated number of bytes of the cached records.
+     *
+     * @return the estimated number of bytes of the cached records.
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the number of inputs of which the records are cached.
+     *
+     * @return the number of inputs of which the records are cached.
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of requests that got cached records, or waited for
+     * the records that another request was parsing.
+     *
+     * @return the number of requests that did not parse the input.
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Returns the number of requests that parsed the input.
+     *
+     * @return the number of requests that parsed the input.
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Returns the number of records of inputs that were evicted to make room for
+     * others.
+     *
+     * @return the number of evicted records of inputs.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Evicts all cached records. Records that are being parsed are cached once
+     * they are parsed.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    // The cached records of an input.
+    private static final class Entry {
+
+        // The records.
+        final List<List<String>> records;
+
+        // The estimated number of bytes of the records.
+        final long weight;
+
+        Entry(List<List<String>> records, long weight) {
+            this.records = records;
+            this.weight = weight;
+        }
+    }
+
+    // The identity of a file, and everything that determines the records of an input of it.
+    private static final class Key {
+
+        // The parts of the key.
+        private final List<Object> parts;
+
+        Key(FileInput input) {
+
+            File file = input.getFile().getAbsoluteFile();
+
+            this.parts = Arrays.<Object>asList(
+                    input.getClass(),
+                    file.getPath(),
+                    file.length(),
+                    file.lastModified(),
+                    input.getDelimiter(),
+                    input.getQuotation(),
+                    input.getEscapeQuotation(),
+                    input.getRecordEnd(),
+                    input.getCharset().name(),
+                    new ArrayList<Filter>(input.filters.values()),
+                    input.columns == null ? null : Arrays.toString(input.columns),
+                    Arrays.asList(input.conditions()));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).parts.equals(this.parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.parts.hashCode();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package clay.input;
+
+import clay.filter.Filter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An index of where the cells of a CSV input start and end. Creating an index
+ * takes a single pass over the input that only records the boundaries of all
+ * cells in arrays of {@code int}s: no cell is decoded and no string is created.
+ * The text of a cell is only created when it is read, which makes an index the
+ * way to go when only a few of the columns of an input are needed.
+ *
+ * The rows of an index are the raw records of the input: unlike {@link CSVInput#getRecords()},
+ * empty records are not skipped, so that the index of a row is the row index
+ * that is passed to the filters. The filters are applied to a cell when it is
+ * read: a cell that is excluded by one of the filters is read as {@code null}.
+ */
+public final class CSVIndex {
+
+    // The actual CSV input string.
+    private final String input;
+
+    // The delimiter that separate the CSV data cells.
+    private final String delimiter;
+
+    // The substring that denotes the quotation of a CSV cell.
+    private final String quotation;
+
+    // The substring that denotes the escape of a quotation of a CSV cell.
+    private final String escapeQuotation;
+
+    // The substring that denotes the end of a CSV record.
+    private final String recordEnd;
+
+    // The filters that will be applied (in order!) to the cells that are read.
+    private final FilterPlan filters;
+
+    // The index of the first cell of every row, followed by the number of cells.
+    private int[] rows;
+
+    // The number of rows.
+    private int rowCount;
+
+    // The index in the input of the first char of every cell.
+    private int[] starts;
+
+    // The index in the input right after the last char of every cell, inverted (~end) for quoted cells.
+    private int[] ends;
+
+    // The number of cells.
+    private int cellCount;
+
+    /**
+     * Creates an index of the given input.
+     *
+     * @param input
+     *         the actual CSV input string.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     * @param filters
+     *         the filters that will be applied (in order!) to the cells that are read.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    CSVIndex(String input, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+             Collection<Filter> filters) {
+
+        this.input = input;
+        this.delimiter = delimiter;
+        this.quotation = quotation;
+        this.escapeQuotation = escapeQuotation;
+        this.recordEnd = recordEnd;
+        this.filters = new FilterPlan(filters);
+
+        this.rows = new int[64];
+        this.rowCount = 0;
+        this.starts = new int[256];
+        this.ends = new int[256];
+        this.cellCount = 0;
+
+        this.index();
+    }
+
+    /**
+     * Returns the number of rows: the number of raw records of the input.
+     *
+     * @return the number of rows.
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Returns the number of cells of a row.
+     *
+     * @param row
+     *         the index of the row.
+     *
+     * @return the number of cells of the row.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row.
+     */
+    public int getWidth(int row) throws IndexOutOfBoundsException {
+
+        this.checkRow(row);
+
+        return this.rows[row + 1] - this.rows[row];
+    }
+
+    /**
+     * Returns the value of a cell, decoding it from the input and applying all
+     * filters to it.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the value of the cell, or {@code null} if the row has no cell in
+     * the column, or if one of the filters excluded it.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row, or {@code column} is negative.
+     */
+    public String getString(int row, int column) throws IndexOutOfBoundsException {
+
+        if (column < 0) {
+            throw new IndexOutOfBoundsException("column: " + column);
+        }
+
+        if (column >= this.getWidth(row)) {
+            return null;
+        }
+
+        if (this.filters.excludes(row) || this.filters.excludesColumn(column)) {
+            // No need to decode a value that is excluded.
+            return null;
+        }
+
+        return this.filters.applyValues(row, column, this.decode(this.rows[row] + column));
+    }
+
+    /**
+     * Returns the values of all cells of a row that none of the filters excluded.
+     *
+     * @param row
+     *         the index of the row.
+     *
+     * @return the values of all cells of the row that none of the filters excluded.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row.
+     */
+    public List<String> getRecord(int row) throws IndexOutOfBoundsException {
+
+        int width = this.getWidth(row);
+        List<String> record = new ArrayList<String>(width);
+
+        for (int column = 0; column < width; column++) {
+
+            String value = this.getString(row, column);
+
+            if (value != null) {
+                record.add(value);
+            }
+        }
+
+        return record;
+    }
+
+    // Checks that there is a row with the given index.
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.rowCount) {
+            throw new IndexOutOfBoundsException("row: " + row + ", rows: " + this.rowCount);
+        }
+    }
+
+    // Returns the raw text of a cell.
+    private String decode(int cell) {
+
+        int start = this.starts[cell];
+        int end = this.ends[cell];
+
+        if (end >= 0) {
+            // The most common case: an unquoted cell is simply a substring of the input.
+            return this.input.substring(start, end);
+        }
+
+        // A quoted cell is a record of a single cell by itself, which a tokenizer can decode.
+        Tokenizer tokenizer = Tokenizer.create(new StringReader(this.input.substring(start, ~end)),
+                this.delimiter, this.quotation, this.escapeQuotation, this.recordEnd);
+
+        try {
+            List<String> record = tokenizer.next();
+
+            // A cell that decodes to nothing (like "") is not returned at the end of the input.
+            return record == null || record.isEmpty() ? "" : record.get(0);
+        }
+        catch (IOException e) {
+            // Cannot happen when reading from a string.
+            throw new RuntimeException("could not read the input", e);
+        }
+    }
+
+    // Records the boundaries of all cells in a single pass over the input.
+    private void index() {
+
+        String input = this.input;
+        int length = input.length();
+
+        // The first chars of the dialect, which need to be checked before looking ahead.
+        char delimiterChar = this.delimiter.charAt(0);
+        char quotationChar = this.quotation.charAt(0);
+        char escapeChar = this.escapeQuotation.isEmpty() ? quotationChar : this.escapeQuotation.charAt(0);
+        char recordEndChar = this.recordEnd.charAt(0);
+        String escapedQuotation = this.escapeQuotation + this.quotation;
+
+        int position = 0;
+
+        while (position < length) {
+
+            this.addRow();
+
+            int start = position;
+            boolean quoted = false;
+
+            // The number of chars of the cell so far: like the tokenizers, a last cell without any is not a cell.
+            int buffered = 0;
+
+            while (true) {
+
+                // Skip the chars that cannot start any of the substrings of the dialect.
+                while (position < length) {
+
+                    char c = input.charAt(position);
+
+                    if (c == delimiterChar || c == recordEndChar || c == quotationChar) {
+                        break;
+                    }
+
+                    position++;
+                    buffered++;
+                }
+
+                if (position >= length) {
+
+                    // The last record of the input need not be terminated by a record end.
+                    if (buffered > 0) {
+                        this.addCell(start, position, quoted);
+                    }
+
+                    break;
+                }
+
+                if (input.startsWith(this.delimiter, position)) {
+                    this.addCell(start, position, quoted);
+                    position += this.delimiter.length();
+                    start = position;
+                    quoted = false;
+                    buffered = 0;
+                }
+                else if (input.startsWith(this.recordEnd, position)) {
+                    this.addCell(start, position, quoted);
+                    position += this.recordEnd.length();
+                    break;
+                }
+                else if (input.startsWith(this.quotation, position)) {
+
+                    // Anything before the opening quote is discarded.
+                    position += this.quotation.length();
+                    quoted = true;
+                    buffered = 0;
+
+                    while (true) {
+
+                        while (position < length && input.charAt(position) != quotationChar &&
+                                input.charAt(position) != escapeChar) {
+                            position++;
+                            buffered++;
+                        }
+
+                        if (position >= length) {
+                            throw new RuntimeException("missing closing quote '" + this.quotation + "'");
+                        }
+
+                        if (input.startsWith(escapedQuotation, position)) {
+                            position += escapedQuotation.length();
+                            buffered++;
+                        }
+                        else if (input.startsWith(this.quotation, position)) {
+                            position += this.quotation.length();
+                            break;
+                        }
+                        else {
+                            position++;
+                            buffered++;
+                        }
+                    }
+                }
+                else {
+                    // Only the first char of a substring matched: it is just a char.
+                    position++;
+                    buffered++;
+                }
+            }
+        }
+
+        this.rows[this.rowCount] = this.cellCount;
+        this.starts = Arrays.copyOf(this.starts, this.cellCount);
+        this.ends = Arrays.copyOf(this.ends, this.cellCount);
+        this.rows = Arrays.copyOf(this.rows, this.rowCount + 1);
+    }
+
+    // Starts a new row, of which the cells are added next.
+    private void addRow() {
+
+        // Keep room for the cell count after the last row.
+        if (this.rowCount + 2 > this.rows.length) {
+            this.rows = Arrays.copyOf(this.rows, this.rows.length * 2);
+        }
+
+        this.rows[this.rowCount++] = this.cellCount;
+    }
+
+    // Adds the boundaries of a cell.
+    private void addCell(int start, int end, boolean quoted) {
+
+        if (this.cellCount == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.cellCount * 2);
+            this.ends = Arrays.copyOf(this.ends, this.cellCount * 2);
+        }
+
+        this.starts[this.cellCount] = start;
+        this.ends[this.cellCount] = quoted ? ~end : end;
+        this.cellCount++;
+    }
+}
@@ -2,13 +2,18 @@ package clay.input;
 
 import clay.filter.Filter;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * An interface that describes a CSV input.
  */
-public interface CSVInput extends Serializable {
+public interface CSVInput extends Serializable, Iterable<List<String>> {
 
     /**
      * The default delimiter that separates CSV cells: {@value}
@@ -30,9 +35,16 @@ public interface CSVInput extends Serializable {
      */
     public static final String DEFAULT_RECORD_END = "\n";
 
+    /**
+     * The default maximum number of distinct values of a column of which the
+     * strings are interned by {@link #intern()}: {@value}
+     */
+    public static final int DEFAULT_INTERN_CARDINALITY = 1024;
+
     /**
      * Adds a filter which will be applied to all CSV cells when
-     * parsing the input.
+     * parsing the input. A {@link clay.filter.BatchFilter} is applied to
+     * a column of a batch of rows at a time by {@link #getRecords()}.
      *
      * @param filter
      *         the filter to add.
@@ -64,6 +76,169 @@ public interface CSVInput extends Serializable {
      */
     CSVInput without(Class<? extends Filter> filterType);
 
+    /**
+     * Interns the strings of the cells per column, with a maximum of
+     * {@link #DEFAULT_INTERN_CARDINALITY} distinct values per column: see
+     * {@link #intern(int)}.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    default CSVInput intern() {
+        return this.intern(DEFAULT_INTERN_CARDINALITY);
+    }
+
+    /**
+     * Interns the strings of the cells per column: all cells in a column that
+     * have the same chars are the same string instance, which is looked up by
+     * the raw chars of a cell without creating a new string. This saves memory
+     * and allocations for columns with only a few distinct values that repeat
+     * over many records, like a country, a status or a currency.
+     *
+     * A column that turns out to have more distinct values than the cardinality
+     * is not interned any further, so that interning does not cost much for
+     * columns of which (almost) all values are distinct. Note that the values are
+     * interned as they are read from the input, before any filter other than a
+     * {@link clay.filter.RangeFilter} like the {@link clay.filter.TrimFilter} is
+     * applied to them, and that a parallel parse interns per chunk.
+     *
+     * @param cardinality
+     *         the maximum number of distinct values of a column that is interned,
+     *         or 0 (the default) to not intern any strings.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code cardinality} is negative.
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    CSVInput intern(int cardinality);
+
+    /**
+     * Lets {@link #getRecords()} parse the input on multiple threads. The input is
+     * split into chunks that are tokenized and filtered in parallel, after which
+     * the records are stitched together in the order they appear in the input.
+     * Record ends inside quoted cells are handled correctly, and the row indexes
+     * passed to the filters are the same as when parsing on a single thread.
+     *
+     * Note that this requires the entire input to be in memory while it is parsed
+     * (but, unlike {@link #getInput()}, not afterwards), and that all filters must be
+     * safe to be invoked from multiple threads. The
+     * {@link #iterator()} always parses on a single thread.
+     *
+     * @param parallelism
+     *         the number of threads to parse the input with: 1 (the default) parses
+     *         the input on the calling thread.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code parallelism} is less than 1.
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    CSVInput parallel(int parallelism);
+
+    /**
+     * Selects the columns of which the cells are returned: all other cells are
+     * only scanned past while tokenizing, without buffering or decoding their
+     * chars, and without passing them through any filter. The selected cells are
+     * returned in the order they appear in the input, and are passed to the
+     * filters with the index of their column in the input.
+     *
+     * The selection applies to all ways of parsing the input, except for the
+     * {@link #getIndex()}, which always keeps the boundaries of all cells.
+     *
+     * @param columns
+     *         the indexes of the columns to select, in any order.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code columns} is {@code null}, or one of them is negative.
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    CSVInput select(int... columns);
+
+    /**
+     * Selects the columns of which the cells are returned by their name in the
+     * first record of the input, as {@link #select(int...)} does. Note that the
+     * first record itself is returned (with only the selected cells) as well.
+     * By default, the names are looked up in the first record returned by
+     * {@link #head(int)}.
+     *
+     * @param names
+     *         the names of the columns to select, in any order.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code names} is {@code null}, or the first record does not
+     *         have a cell for one of them.
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    default CSVInput select(String... names) {
+
+        if (names == null) {
+            throw new IllegalArgumentException("names == null");
+        }
+
+        List<List<String>> head = this.head(1);
+        int[] columns = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+
+            columns[i] = head.isEmpty() ? -1 : head.get(0).indexOf(names[i]);
+
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("no such column: " + names[i]);
+            }
+        }
+
+        return this.select(columns);
+    }
+
+    /**
+     * Adds a condition that the raw cell in a column must meet for its record to
+     * be returned. The condition is tested as soon as the cell has been tokenized,
+     * before any filter is applied to it: when it fails, the remaining cells of
+     * the record are only scanned past, without buffering or decoding their chars,
+     * and the record is skipped. This makes this the way to go when only a small
+     * part of the records of a large input is needed. A record without a cell in
+     * the column is tested as if it had an empty cell there.
+     *
+     * The cell is passed as a view of the chars of the cell that is only valid
+     * during the test. The condition is tested for all records of the input, but
+     * not for records that are excluded as a whole by an
+     * {@link clay.filter.ExcludeRowRangeFilter}. When the input is parsed on
+     * multiple threads (see {@link #parallel(int)}), the predicate must be safe to
+     * be invoked from multiple threads as well. Multiple conditions must all be met.
+     *
+     * @param column
+     *         the index of the column of the cell to test.
+     * @param predicate
+     *         the predicate that the raw cell must meet.
+     *
+     * @return this instance.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code column} is negative, or {@code predicate} is {@code null}.
+     * @throws IllegalStateException
+     *         when the input is already parsed, which is done when
+     *         {@link #getRecords()} is first called.
+     */
+    CSVInput where(int column, Predicate<CharSequence> predicate);
+
     /**
      * Returns the CSV input.
      *
@@ -105,4 +280,233 @@ public interface CSVInput extends Serializable {
      * @return a shallow copy of the parsed {@code input} as a 2D list of strings.
      */
     List<List<String>> getRecords();
+
+    /**
+     * Parses the {@code input} one record at a time, pushing every record to the
+     * {@code handler} as soon as it is parsed. The handler receives the same records
+     * as {@link #getRecords()} returns, but the chars of the cells are passed as
+     * ranges of a reused array: no objects are created per record or cell, except
+     * for strings passed to filters other than the built-in ones.
+     *
+     * Like {@link #iterator()}, this always parses the input, and the input is not
+     * considered to be parsed afterwards.
+     *
+     * @param handler
+     *         the handler that receives the records.
+     *
+     * @throws IllegalArgumentException
+     *         when the {@code handler} is {@code null}.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    void parse(RecordHandler handler);
+
+    /**
+     * Returns a cursor that parses the {@code input} one record at a time, returning
+     * the same mutable {@link Record} for every record. The cursor returns the same
+     * records as {@link #getRecords()} does, but creates no objects per record or
+     * cell while doing so. Like {@link #iterator()}, this always parses the input,
+     * and the input is not considered to be parsed afterwards.
+     *
+     * @return a cursor that parses the {@code input} one record at a time.
+     */
+    RecordCursor cursor();
+
+    /**
+     * Returns a single record of the {@code input}, with all filters applied to it.
+     * Records are identified by their index among all raw records of the input
+     * (including empty ones): the same row index that is passed to the filters.
+     * Only the records up to the requested one are tokenized, and inputs that
+     * support it (see {@link FileInput#buildIndex()}) seek close to it first.
+     *
+     * @param record
+     *         the index of the raw record.
+     *
+     * @return the record, or {@code null} if there is no such record, or when it
+     * does not have a single non-empty cell after applying the filters.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code record} is negative, or greater than {@code Integer.MAX_VALUE}
+     *         (the greatest row index that can be passed to the filters).
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    default List<String> getRecord(long record) {
+
+        List<List<String>> records = this.getRecords(record, record + 1);
+
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Returns a range of records of the {@code input}, with all filters applied to
+     * them, skipping records without a non-empty cell just like {@link #getRecords()}
+     * does. Records are identified by their index among all raw records of the
+     * input, as in {@link #getRecord(long)}. Records in the range of an
+     * {@link clay.filter.ExcludeRowRangeFilter} are skipped without creating their cells.
+     *
+     * @param from
+     *         the index of the first raw record (inclusive).
+     * @param to
+     *         the index of the last raw record (exclusive).
+     *
+     * @return the records in the range, in the order they appear in the input.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code from} is negative, {@code to} is less than {@code from}, or
+     *         the range has a row index greater than {@code Integer.MAX_VALUE} (the
+     *         greatest row index that can be passed to the filters).
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    List<List<String>> getRecords(long from, long to);
+
+    /**
+     * Returns the first records of the {@code input}, with all filters applied to
+     * them, skipping records without a non-empty cell just like {@link #getRecords()}
+     * does. The input is only read and tokenized up to the last returned record,
+     * which makes this the way to preview (or detect the columns of) a large input.
+     * Like {@link #iterator()}, the input is not considered to be parsed afterwards.
+     * By default, these are the first records of {@link #iterator()}, which is
+     * closed afterwards when it is {@code Closeable}.
+     *
+     * @param count
+     *         the maximum number of records to return.
+     *
+     * @return the first {@code count} records, or all records when the input has
+     * fewer of them.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code count} is negative.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    default List<List<String>> head(int count) {
+
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>(Math.min(count, 1024));
+        Iterator<List<String>> iterator = this.iterator();
+
+        try {
+            while (records.size() < count && iterator.hasNext()) {
+                records.add(iterator.next());
+            }
+        }
+        finally {
+            if (iterator instanceof Closeable) {
+                try {
+                    // Stop reading the input as soon as enough records have been read.
+                    ((Closeable) iterator).close();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException("could not close the input", e);
+                }
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns an iterator that parses the {@code input} one record at a time, with
+     * all filters applied to it. Unlike {@link #getRecords()}, the records are not
+     * kept in memory: only the record that is being returned is, which makes this
+     * the way to process large inputs. Note that the input is not considered to be
+     * parsed after iterating over it: filters can still be added or removed, which
+     * will then be reflected in iterators created afterwards.
+     *
+     * When the input has already been parsed by {@link #getRecords()}, the returned
+     * iterator simply walks over the already parsed records.
+     *
+     * @return an iterator that parses the {@code input} one record at a time.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed, which is
+     *         thrown by the iterator at the moment it reaches that cell.
+     */
+    @Override
+    Iterator<List<String>> iterator();
+
+    /**
+     * Returns the records of the {@code input} as views of the chars of their cells,
+     * with all filters applied to them. Like {@link #iterator()}, every iteration
+     * parses the input one record at a time, but no string is created per cell:
+     * each record is copied into a single array of chars, and its cells are
+     * {@link CharSlice} views of that array. Callers create a string of a cell
+     * only when they really need one.
+     *
+     * Filters other than {@link clay.filter.TrimFilter} are passed a string of the
+     * cell, which defeats the purpose of views for the cells they are applied to.
+     *
+     * When the input has already been parsed by {@link #getRecords()}, the views
+     * simply walk over the already parsed records.
+     *
+     * @return the records of the {@code input} as views of the chars of their cells.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed, which is
+     *         thrown by the iterator at the moment it reaches that cell.
+     */
+    Iterable<List<CharSequence>> views();
+
+    /**
+     * Returns the records of the {@code input} as a table that is stored column by
+     * column, with all filters applied to them. Every call parses the input again,
+     * one record at a time: the records are added to the table as they are parsed,
+     * without ever holding all of them as strings. Columns that only hold numbers
+     * are stored as arrays of primitives.
+     *
+     * When the input has already been parsed by {@link #getRecords()}, the table
+     * is created from the already parsed records.
+     *
+     * @return the records of the {@code input} as a table that is stored column by
+     * column.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    default CSVTable getTable() {
+        return this.getTable(0);
+    }
+
+    /**
+     * Returns the records of the {@code input} as a table, like {@link #getTable()},
+     * in which every text column with no more than {@code cardinality} distinct
+     * values is stored as a {@link CSVTable.Type#DICTIONARY}: a code of one or two
+     * bytes per cell, plus a single string per distinct value. Cells can then be
+     * compared and grouped by their codes (see {@link CSVTable#getCode(int, int)}).
+     * A column with more distinct values is stored as text.
+     *
+     * @param cardinality
+     *         the maximum number of distinct values of a text column that is stored
+     *         as a dictionary, at most {@link CSVTable#MAX_CARDINALITY}.
+     *
+     * @return the records of the {@code input} as a table that is stored column by
+     * column.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code cardinality} is negative, or more than {@link CSVTable#MAX_CARDINALITY}.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    CSVTable getTable(int cardinality) throws IllegalArgumentException;
+
+    /**
+     * Returns an index of the cells of the {@code input}, of which the text is only
+     * created when a cell is read. Creating the index reads the entire input into
+     * memory (see {@link #getInput()}) and takes a single pass over it to record
+     * where all cells start and end.
+     *
+     * Note that the rows of the index are the raw records of the input, and that
+     * the filters are applied to a cell when it is read: see {@link CSVIndex}.
+     *
+     * @return an index of the cells of the {@code input}.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    CSVIndex getIndex();
 }
@@ -0,0 +1,561 @@
+package clay.input;
+
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeColumnRangeFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.ExcludeRowRangeFilter;
+import clay.filter.Filter;
+import clay.filter.TrimFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The parsed records of an input, with all filters applied to them, saved in a
+ * compact binary file that is read through a memory mapping. Opening a snapshot
+ * only maps the file: nothing is tokenized, and a record is only decoded when it
+ * is read. Reloading a large input from a snapshot therefore takes a fraction of
+ * the time it takes to parse it again.
+ *
+ * The file holds every record as the number of its cells, the end offset of every
+ * cell and the UTF-8 bytes of all its cells, followed by a table of the offset of
+ * every record: reading any record takes a lookup in the table, without reading
+ * the records before it.
+ *
+ * A snapshot holds the records as they were filtered when it was written. A
+ * snapshot of a {@link FileInput} (see {@link FileInput#writeSnapshot()}) is only
+ * valid for the file, dialect and charset it was written for, just like its
+ * index, and for the same selected columns and filters: a digest of them is saved
+ * with the records. Only the filters of this library can be compared this way:
+ * a snapshot is never valid for an input with other filters, or with conditions
+ * (see {@link CSVInput#where(int, java.util.function.Predicate)}).
+ *
+ * A snapshot can be read by multiple threads at once.
+ */
+public final class CSVSnapshot {
+
+    /**
+     * The extension of sidecar snapshot files: {@value}
+     */
+    static final String EXTENSION = ".snap";
+
+    // The first bytes of a snapshot file.
+    private static final int MAGIC = 0x434C534E;
+
+    // The version of the format of snapshot files.
+    private static final int VERSION = 2;
+
+    // The number of bytes of the trailer: the number of records, the offset of their table and the largest record.
+    private static final int TRAILER_SIZE = 8 + 8 + 4;
+
+    // The number of bytes of the file every mapped segment starts after the previous one.
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    // The UTF-8 charset, in which the cells are saved.
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The mapped segments of the file, each of which overlaps the next one by the largest record.
+    private final MappedByteBuffer[] segments;
+
+    // The number of bytes of the file every segment starts after the previous one.
+    private final int segmentSize;
+
+    // The number of records.
+    private final long recordCount;
+
+    // The offset in the file of the table of the offsets of the records.
+    private final long table;
+
+    private CSVSnapshot(MappedByteBuffer[] segments, int segmentSize, long recordCount, long table) {
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.recordCount = recordCount;
+        this.table = table;
+    }
+
+    /**
+     * Parses an input and saves its records, with all filters applied to them, to
+     * a snapshot file, replacing it atomically when it already exists.
+     *
+     * @param input
+     *         the input to save the records of.
+     * @param file
+     *         the file to save the records to.
+     *
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     * @throws IOException
+     *         when the snapshot could not be saved.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    public static void write(CSVInput input, File file) throws IllegalArgumentException, IOException {
+
+        if (input == null) {
+            throw new IllegalArgumentException("input == null");
+        }
+
+        if (file == null) {
+            throw new IllegalArgumentException("file == null");
+        }
+
+        write(input, file, -1, -1, "");
+    }
+
+    /**
+     * Parses an input and saves its records to a snapshot file, along with the
+     * state of the file they were read from.
+     *
+     * @param input
+     *         the input to save the records of.
+     * @param file
+     *         the file to save the records to.
+     * @param size
+     *         the size of the file of the input when it was parsed, or -1.
+     * @param lastModified
+     *         the modification time of the file of the input when it was parsed, or -1.
+     * @param charset
+     *         the name of the charset of the file of the input, or an empty string.
+     *
+     * @throws IOException
+     *         when the snapshot could not be saved.
+     */
+    static void write(CSVInput input, File file, long size, long lastModified, String charset) throws IOException {
+
+        // A unique temporary file next to the snapshot, so that concurrent writers do not clobber each other.
+        File directory = file.getAbsoluteFile().getParentFile();
+        Path temporary = Files.createTempFile(directory.toPath(), file.getName() + ".", ".tmp");
+
+        try {
+            writeTo(temporary.toFile(), input, size, lastModified, charset);
+
+            Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            // Only left when the input could not be parsed, or the snapshot could not be saved.
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Writes a snapshot to a (temporary) file.
+    private static void writeTo(File temporary, CSVInput input, long size, long lastModified, String charset)
+            throws IOException {
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary),
+                1 << 16));
+
+        long[] offsets = new long[1024];
+        long recordCount = 0;
+        int largest = 0;
+        byte[][] cells = new byte[16][];
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeUTF(input.getDelimiter());
+            out.writeUTF(input.getQuotation());
+            out.writeUTF(input.getEscapeQuotation());
+            out.writeUTF(input.getRecordEnd());
+            out.writeUTF(charset);
+
+            byte[] digest = input instanceof SimpleInput ? digest((SimpleInput) input) : null;
+
+            out.writeInt(digest == null ? -1 : digest.length);
+            out.write(digest == null ? new byte[0] : digest);
+
+            // DataOutputStream counts its bytes in an int, which a large snapshot overflows.
+            long position = out.size();
+
+            for (Iterator<List<String>> records = input.iterator(); records.hasNext(); ) {
+
+                List<String> record = records.next();
+                int count = record.size();
+                int length = 0;
+
+                if (count > cells.length) {
+                    cells = new byte[Math.max(count, cells.length * 2)][];
+                }
+
+                out.writeInt(count);
+
+                for (int i = 0; i < count; i++) {
+                    cells[i] = record.get(i).getBytes(UTF_8);
+                    length += cells[i].length;
+                    out.writeInt(length);
+                }
+
+                for (int i = 0; i < count; i++) {
+                    out.write(cells[i]);
+                }
+
+                if (recordCount == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+
+                offsets[(int) recordCount++] = position;
+
+                int recordSize = 4 + 4 * count + length;
+
+                position += recordSize;
+                largest = Math.max(largest, recordSize);
+            }
+
+            for (int i = 0; i < recordCount; i++) {
+                out.writeLong(offsets[i]);
+            }
+
+            out.writeLong(recordCount);
+            out.writeLong(position);
+            out.writeInt(largest);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory.
+     *
+     * @param file
+     *         the snapshot file.
+     *
+     * @return the snapshot.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code file} is {@code null}.
+     * @throws IOException
+     *         when the file could not be read, or is not a snapshot.
+     */
+    public static CSVSnapshot open(File file) throws IllegalArgumentException, IOException {
+
+        if (file == null) {
+            throw new IllegalArgumentException("file == null");
+        }
+
+        return open(file, SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory, in segments of (a little
+     * more than) a given size.
+     *
+     * @param file
+     *         the snapshot file.
+     * @param segmentSize
+     *         the number of bytes of the file every segment starts after the previous one.
+     *
+     * @return the snapshot.
+     *
+     * @throws IOException
+     *         when the file could not be read, or is not a snapshot.
+     */
+    static CSVSnapshot open(File file, int segmentSize) throws IOException {
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+
+            if (size < 8 + TRAILER_SIZE) {
+                throw new IOException("not a snapshot: " + file.getPath());
+            }
+
+            ByteBuffer header = read(channel, 0, 8);
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a snapshot: " + file.getPath());
+            }
+
+            if (header.getInt() != VERSION) {
+                throw new IOException("unsupported snapshot version: " + file.getPath());
+            }
+
+            long recordCount = trailer.getLong();
+            long table = trailer.getLong();
+            int overlap = Math.max(trailer.getInt(), 8);
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size - 1) / segmentSize) + 1];
+
+            for (int i = 0; i < segments.length; i++) {
+
+                long start = (long) i * segmentSize;
+
+                // The mapping outlives the channel.
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min((long) segmentSize + overlap, size - start));
+            }
+
+            return new CSVSnapshot(segments, segmentSize, recordCount, table);
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens the snapshot file of a file input, if it is valid for the input.
+     *
+     * @param file
+     *         the snapshot file.
+     * @param input
+     *         the input the snapshot must have been written for.
+     *
+     * @return the snapshot, or {@code null} if there is no snapshot file, or when
+     * it is not valid (anymore) for the input.
+     */
+    static CSVSnapshot open(File file, FileInput input) {
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        File source = input.getFile();
+        byte[] digest = digest(input);
+
+        if (digest == null) {
+            // Filters or conditions that cannot be compared with those the snapshot was written for.
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            try {
+                boolean valid = in.readInt() == MAGIC &&
+                        in.readInt() == VERSION &&
+                        in.readLong() == source.length() &&
+                        in.readLong() == source.lastModified() &&
+                        in.readUTF().equals(input.getDelimiter()) &&
+                        in.readUTF().equals(input.getQuotation()) &&
+                        in.readUTF().equals(input.getEscapeQuotation()) &&
+                        in.readUTF().equals(input.getRecordEnd()) &&
+                        in.readUTF().equals(input.getCharset().name()) &&
+                        in.readInt() == digest.length;
+
+                if (!valid) {
+                    return null;
+                }
+
+                byte[] saved = new byte[digest.length];
+                in.readFully(saved);
+
+                if (!Arrays.equals(saved, digest)) {
+                    return null;
+                }
+            }
+            finally {
+                in.close();
+            }
+
+            return open(file);
+        }
+        catch (IOException e) {
+            // An unreadable (or truncated) snapshot file is ignored.
+            return null;
+        }
+    }
+
+    /**
+     * Returns a digest of the selected columns and the filters of an input: two
+     * inputs of the same file and dialect with the same digest have the same
+     * records.
+     *
+     * @param input
+     *         the input to return the digest of.
+     *
+     * @return the digest of the input, or {@code null} when it has conditions, or
+     * filters other than those of this library, which cannot be compared.
+     */
+    static byte[] digest(SimpleInput input) {
+
+        if (input.conditions().length > 0) {
+            return null;
+        }
+
+        StringBuilder description = new StringBuilder();
+
+        description.append(input.columns == null ? "*" : Arrays.toString(input.columns));
+
+        for (Filter filter : input.filters.values()) {
+
+            // Exact classes: a subclass could filter differently.
+            Class<?> type = filter.getClass();
+
+            description.append(';').append(type.getName());
+
+            if (type == ExcludeRowFilter.class) {
+                description.append(Arrays.toString(((ExcludeRowFilter) filter).getIndexes()));
+            }
+            else if (type == ExcludeColumnFilter.class) {
+                description.append(Arrays.toString(((ExcludeColumnFilter) filter).getIndexes()));
+            }
+            else if (type == ExcludeRowRangeFilter.class) {
+                ExcludeRowRangeFilter range = (ExcludeRowRangeFilter) filter;
+                description.append(range.getFrom()).append(',').append(range.getTo());
+            }
+            else if (type == ExcludeColumnRangeFilter.class) {
+                ExcludeColumnRangeFilter range = (ExcludeColumnRangeFilter) filter;
+                description.append(range.getFrom()).append(',').append(range.getTo());
+            }
+            else if (type != TrimFilter.class) {
+                return null;
+            }
+        }
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(description.toString().getBytes(UTF_8));
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Reads a number of bytes at a position of a channel.
+    private static ByteBuffer read(FileChannel channel, long position, int count) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(count);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of the snapshot");
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Returns the number of records of this snapshot.
+     *
+     * @return the number of records of this snapshot.
+     */
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Returns a record of this snapshot.
+     *
+     * @param record
+     *         the index of the record (starting from 0).
+     *
+     * @return the cells of the record.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such record.
+     */
+    public List<String> getRecord(long record) throws IndexOutOfBoundsException {
+
+        if (record < 0 || record >= this.recordCount) {
+            throw new IndexOutOfBoundsException("record: " + record + ", records: " + this.recordCount);
+        }
+
+        return this.read(record);
+    }
+
+    /**
+     * Returns a range of records of this snapshot.
+     *
+     * @param from
+     *         the index of the first record (inclusive).
+     * @param to
+     *         the index of the last record (exclusive): records beyond the last
+     *         record of this snapshot are left out.
+     *
+     * @return the records in the range.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code from} is negative or {@code to} is less than {@code from}.
+     */
+    public List<List<String>> getRecords(long from, long to) throws IllegalArgumentException {
+
+        if (from < 0) {
+            throw new IllegalArgumentException("from < 0");
+        }
+
+        if (to < from) {
+            throw new IllegalArgumentException("to < from");
+        }
+
+        to = Math.min(to, this.recordCount);
+
+        List<List<String>> records = new ArrayList<List<String>>((int) Math.max(0, to - from));
+
+        for (long record = from; record < to; record++) {
+            records.add(this.read(record));
+        }
+
+        return records;
+    }
+
+    /**
+     * Returns all records of this snapshot.
+     *
+     * @return all records of this snapshot.
+     */
+    public List<List<String>> getRecords() {
+        return this.getRecords(0, this.recordCount);
+    }
+
+    // Decodes a record.
+    private List<String> read(long record) {
+
+        long offset = this.getLong(this.table + record * 8);
+
+        // A view of its own, so that concurrent reads do not share a position.
+        ByteBuffer buffer = this.segments[(int) (offset / this.segmentSize)].duplicate();
+        buffer.position((int) (offset % this.segmentSize));
+
+        int count = buffer.getInt();
+        int[] ends = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            ends[i] = buffer.getInt();
+        }
+
+        byte[] bytes = new byte[count == 0 ? 0 : ends[count - 1]];
+        buffer.get(bytes);
+
+        List<String> cells = new ArrayList<String>(count);
+        int start = 0;
+
+        for (int i = 0; i < count; i++) {
+            cells.add(new String(bytes, start, ends[i] - start, UTF_8));
+            start = ends[i];
+        }
+
+        return cells;
+    }
+
+    // Returns the long at an offset in the file.
+    private long getLong(long offset) {
+        return this.segments[(int) (offset / this.segmentSize)].getLong((int) (offset % this.segmentSize));
+    }
+}
@@ -0,0 +1,1150 @@
+package clay.input;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A parsed CSV input that is stored column by column instead of row by row. Each
+ * column is a single contiguous array: a column whose cells are all (empty or)
+ * numbers is stored as an {@code int[]}, {@code long[]} or {@code double[]}, and
+ * all other columns are stored as a single {@code char[]} holding the chars of
+ * all cells, plus the end index of every cell. There is no object per row, nor
+ * per cell, which makes a table a fraction of the size of the equivalent
+ * {@code List<List<String>>}, and makes scanning a column cache friendly.
+ *
+ * A column is only stored as numbers when this does not lose anything: every
+ * cell must be the canonical text of its number, so that {@link #getString(int, int)}
+ * returns the exact text of every cell. Integers may not have a plus sign nor
+ * leading zeros (such as {@code "007"}), and decimals must be in the format of
+ * {@link Double#toString(double)} (such as {@code "0.5"} or {@code "1.0E10"}).
+ * A column holding both integers and decimals is stored as text.
+ *
+ * A table can also store the text columns that have only a few distinct values
+ * (see {@link CSVInput#getTable(int)}) as a dictionary of these values plus a
+ * code per cell: a single byte while the column has no more than 256 distinct
+ * values, else two. Every distinct value is a single string, and cells can be
+ * compared (or grouped) by their codes instead of their text.
+ *
+ * Rows can have fewer cells than the table has columns: such cells are absent,
+ * for which {@link #getString(int, int)} returns {@code null}.
+ */
+public final class CSVTable implements Serializable {
+
+    /**
+     * The types in which the cells of a column can be stored.
+     */
+    public enum Type {
+
+        /**
+         * All cells are empty or integers in the range of an {@code int}.
+         */
+        INT,
+
+        /**
+         * All cells are empty or integers in the range of a {@code long}.
+         */
+        LONG,
+
+        /**
+         * All cells are empty or decimals in the format of {@link Double#toString(double)}.
+         */
+        DOUBLE,
+
+        /**
+         * The cells are stored as text.
+         */
+        STRING,
+
+        /**
+         * The cells are stored as codes into a dictionary of the distinct values
+         * of the column.
+         */
+        DICTIONARY
+    }
+
+    /**
+     * The maximum number of distinct values of a column that is stored as a
+     * {@link Type#DICTIONARY}: {@value}
+     */
+    public static final int MAX_CARDINALITY = 65536;
+
+    // The initial number of cells a column can hold.
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The columns of the table, of which the first columnCount are in use.
+    private Column[] columns;
+
+    // The number of columns.
+    private int columnCount;
+
+    // The number of rows.
+    private int rowCount;
+
+    // The number of cells of every row, or null as long as every row has a cell in every column.
+    private int[] widths;
+
+    // The maximum number of distinct values of a text column that is stored as a dictionary, or 0 for none.
+    private final int cardinality;
+
+    /**
+     * Creates a new, empty table to which rows can be added, which stores all
+     * text columns as text.
+     */
+    CSVTable() {
+        this(0);
+    }
+
+    /**
+     * Creates a new, empty table to which rows can be added.
+     *
+     * @param cardinality
+     *         the maximum number of distinct values of a text column that is stored
+     *         as a {@link Type#DICTIONARY}, or 0 to store all text columns as text.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code cardinality} is negative, or more than {@link #MAX_CARDINALITY}.
+     */
+    CSVTable(int cardinality) throws IllegalArgumentException {
+
+        if (cardinality < 0) {
+            throw new IllegalArgumentException("cardinality < 0");
+        }
+
+        if (cardinality > MAX_CARDINALITY) {
+            throw new IllegalArgumentException("cardinality > " + MAX_CARDINALITY);
+        }
+
+        this.cardinality = cardinality;
+        this.columns = new Column[4];
+        this.columnCount = 0;
+        this.rowCount = 0;
+        this.widths = null;
+    }
+
+    /**
+     * Adds a row to the end of this table.
+     *
+     * @param row
+     *         the cells of the row.
+     */
+    void add(List<? extends CharSequence> row) {
+
+        int width = row.size();
+
+        while (this.columnCount < width) {
+            this.addColumn();
+        }
+
+        if (this.widths == null && width != this.columnCount) {
+            // The first row that does not have a cell in every column.
+            this.widths = new int[Math.max(INITIAL_CAPACITY, this.rowCount * 2)];
+            Arrays.fill(this.widths, 0, this.rowCount, this.columnCount);
+        }
+
+        if (this.widths != null) {
+
+            if (this.rowCount == this.widths.length) {
+                this.widths = Arrays.copyOf(this.widths, this.rowCount * 2);
+            }
+
+            this.widths[this.rowCount] = width;
+        }
+
+        for (int column = 0; column < this.columnCount; column++) {
+            this.columns[column].add(column < width ? row.get(column) : null);
+        }
+
+        this.rowCount++;
+    }
+
+    /**
+     * Shrinks all arrays to the number of rows: invoked once all rows have been added.
+     */
+    void trim() {
+
+        for (int column = 0; column < this.columnCount; column++) {
+            this.columns[column].trim();
+        }
+
+        this.columns = Arrays.copyOf(this.columns, this.columnCount);
+
+        if (this.widths != null) {
+            this.widths = Arrays.copyOf(this.widths, this.rowCount);
+        }
+    }
+
+    // Adds a column whose cells are absent in all rows that have been added so far.
+    private void addColumn() {
+
+        if (this.columnCount == this.columns.length) {
+            this.columns = Arrays.copyOf(this.columns, this.columnCount * 2);
+        }
+
+        Column column = new Column(this.cardinality);
+
+        for (int row = 0; row < this.rowCount; row++) {
+            column.add(null);
+        }
+
+        if (this.rowCount > 0 && this.widths == null) {
+            // None of the rows so far have a cell in this column.
+            this.widths = new int[Math.max(INITIAL_CAPACITY, this.rowCount * 2)];
+            Arrays.fill(this.widths, 0, this.rowCount, this.columnCount);
+        }
+
+        this.columns[this.columnCount++] = column;
+    }
+
+    /**
+     * Returns the number of rows of this table.
+     *
+     * @return the number of rows of this table.
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Returns the number of columns of this table: the number of cells of the
+     * widest row.
+     *
+     * @return the number of columns of this table.
+     */
+    public int getColumnCount() {
+        return this.columnCount;
+    }
+
+    /**
+     * Returns the type in which the cells of a column are stored. A column that
+     * only has empty cells is stored as {@link Type#STRING}.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return the type in which the cells of the column are stored.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     */
+    public Type getType(int column) throws IndexOutOfBoundsException {
+        return this.column(column).type();
+    }
+
+    /**
+     * Returns the number of cells of a row.
+     *
+     * @param row
+     *         the index of the row.
+     *
+     * @return the number of cells of the row.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row.
+     */
+    public int getWidth(int row) throws IndexOutOfBoundsException {
+
+        this.checkRow(row);
+
+        return this.widths == null ? this.columnCount : this.widths[row];
+    }
+
+    /**
+     * Returns {@code true} iff a cell is empty or absent.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return {@code true} iff the cell is empty or absent.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     */
+    public boolean isEmpty(int row, int column) throws IndexOutOfBoundsException {
+
+        Column c = this.column(column);
+
+        return column >= this.getWidth(row) || c.isEmpty(row);
+    }
+
+    /**
+     * Returns the text of a cell.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the text of the cell, or {@code null} if the row has no cell in
+     * the column.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     */
+    public String getString(int row, int column) throws IndexOutOfBoundsException {
+
+        CharSequence chars = this.getChars(row, column);
+
+        return chars == null ? null : chars.toString();
+    }
+
+    /**
+     * Returns the text of a cell without creating a string for it when the column
+     * is stored as text: the returned sequence is then a view of the chars of the
+     * column.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the text of the cell, or {@code null} if the row has no cell in
+     * the column.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     */
+    public CharSequence getChars(int row, int column) throws IndexOutOfBoundsException {
+
+        Column c = this.column(column);
+
+        if (column >= this.getWidth(row)) {
+            return null;
+        }
+
+        return c.chars(row);
+    }
+
+    /**
+     * Returns the value of a cell of an {@link Type#INT} column.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the value of the cell, or 0 if the cell is empty or absent.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as {@code int}s.
+     */
+    public int getInt(int row, int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.getInts(column)[this.checkRow(row)];
+    }
+
+    /**
+     * Returns the value of a cell of an {@link Type#INT} or {@link Type#LONG} column.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the value of the cell, or 0 if the cell is empty or absent.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as {@code int}s or {@code long}s.
+     */
+    public long getLong(int row, int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+
+        Column c = this.column(column);
+        this.checkRow(row);
+
+        if (c.type == Type.INT) {
+            return c.ints[row];
+        }
+
+        return this.getLongs(column)[row];
+    }
+
+    /**
+     * Returns the value of a cell of a numeric column.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the value of the cell, or 0 if the cell is empty or absent.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     * @throws IllegalArgumentException
+     *         when the column is stored as text.
+     */
+    public double getDouble(int row, int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+
+        Column c = this.column(column);
+        this.checkRow(row);
+
+        if (c.type == Type.INT) {
+            return c.ints[row];
+        }
+
+        if (c.type == Type.LONG) {
+            return c.longs[row];
+        }
+
+        return this.getDoubles(column)[row];
+    }
+
+    /**
+     * Returns all values of an {@link Type#INT} column, in which empty and absent
+     * cells are 0 (see {@link #isEmpty(int, int)}). Note that the returned array
+     * is the storage of the column itself, which allows scanning it without any
+     * copying or indirection: it must not be modified.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return all values of the column, with one element per row.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as {@code int}s.
+     */
+    public int[] getInts(int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.column(column, Type.INT).ints;
+    }
+
+    /**
+     * Returns all values of a {@link Type#LONG} column, in which empty and absent
+     * cells are 0 (see {@link #isEmpty(int, int)}). Note that the returned array
+     * is the storage of the column itself: it must not be modified.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return all values of the column, with one element per row.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as {@code long}s.
+     */
+    public long[] getLongs(int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.column(column, Type.LONG).longs;
+    }
+
+    /**
+     * Returns all values of a {@link Type#DOUBLE} column, in which empty and absent
+     * cells are 0 (see {@link #isEmpty(int, int)}). Note that the returned array
+     * is the storage of the column itself: it must not be modified.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return all values of the column, with one element per row.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as {@code double}s.
+     */
+    public double[] getDoubles(int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.column(column, Type.DOUBLE).doubles;
+    }
+
+    /**
+     * Returns the code of a cell of a {@link Type#DICTIONARY} column: the index of
+     * its value in the dictionary of the column (see {@link #getValue(int, int)}).
+     * Two cells in a column have the same code iff they have the same text. An
+     * absent cell has the code of the empty value.
+     *
+     * @param row
+     *         the index of the row.
+     * @param column
+     *         the index of the column.
+     *
+     * @return the code of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such row or column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as a dictionary.
+     */
+    public int getCode(int row, int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.column(column, Type.DICTIONARY).code(this.checkRow(row));
+    }
+
+    /**
+     * Returns the code of a value in the dictionary of a {@link Type#DICTIONARY}
+     * column: comparing the codes of the cells to it finds the cells with that
+     * value, without comparing any text.
+     *
+     * @param column
+     *         the index of the column.
+     * @param value
+     *         the value to look up.
+     *
+     * @return the code of the value, or -1 if no cell in the column has the value.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as a dictionary, or {@code value} is
+     *         {@code null}.
+     */
+    public int getCode(int column, CharSequence value) throws IndexOutOfBoundsException, IllegalArgumentException {
+
+        if (value == null) {
+            throw new IllegalArgumentException("value == null");
+        }
+
+        return this.column(column, Type.DICTIONARY).dictionary.find(value);
+    }
+
+    /**
+     * Returns a value in the dictionary of a {@link Type#DICTIONARY} column.
+     *
+     * @param column
+     *         the index of the column.
+     * @param code
+     *         the code of the value.
+     *
+     * @return the value with the given code.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column or code.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as a dictionary.
+     */
+    public String getValue(int column, int code) throws IndexOutOfBoundsException, IllegalArgumentException {
+
+        Column c = this.column(column, Type.DICTIONARY);
+
+        if (code < 0 || code >= c.dictionary.size()) {
+            throw new IndexOutOfBoundsException("code: " + code + ", values: " + c.dictionary.size());
+        }
+
+        return c.dictionary.value(code);
+    }
+
+    /**
+     * Returns the number of distinct values of a {@link Type#DICTIONARY} column:
+     * its codes range from 0 up to this number.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return the number of distinct values of the column.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such column.
+     * @throws IllegalArgumentException
+     *         when the column is not stored as a dictionary.
+     */
+    public int getValueCount(int column) throws IndexOutOfBoundsException, IllegalArgumentException {
+        return this.column(column, Type.DICTIONARY).dictionary.size();
+    }
+
+    /**
+     * Returns the rows of this table as a 2D list of strings: the same records
+     * from which this table was created.
+     *
+     * @return the rows of this table as a 2D list of strings.
+     */
+    public List<List<String>> getRecords() {
+
+        List<List<String>> records = new ArrayList<List<String>>(this.rowCount);
+
+        for (int row = 0; row < this.rowCount; row++) {
+
+            int width = this.getWidth(row);
+            List<String> record = new ArrayList<String>(width);
+
+            for (int column = 0; column < width; column++) {
+                record.add(this.columns[column].chars(row).toString());
+            }
+
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    // Returns the column with the given index.
+    private Column column(int column) {
+
+        if (column < 0 || column >= this.columnCount) {
+            throw new IndexOutOfBoundsException("column: " + column + ", columns: " + this.columnCount);
+        }
+
+        return this.columns[column];
+    }
+
+    // Returns the column with the given index, which must be stored in the given type.
+    private Column column(int column, Type type) {
+
+        Column c = this.column(column);
+
+        if (c.type() != type) {
+            throw new IllegalArgumentException("column " + column + " is stored as " + c.type() + ", not " + type);
+        }
+
+        return c;
+    }
+
+    // Checks that there is a row with the given index, and returns it.
+    private int checkRow(int row) {
+
+        if (row < 0 || row >= this.rowCount) {
+            throw new IndexOutOfBoundsException("row: " + row + ", rows: " + this.rowCount);
+        }
+
+        return row;
+    }
+
+    /**
+     * Returns {@code true} iff the text is an integer without a plus sign or
+     * leading zeros, in the range of a {@code long}.
+     *
+     * @param text
+     *         the text to check.
+     *
+     * @return {@code true} iff the text is the canonical text of a {@code long}.
+     */
+    static boolean isCanonicalLong(CharSequence text) {
+
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+
+        if (digits == 0 || digits > 19) {
+            return false;
+        }
+
+        if (text.charAt(start) == '0' && (digits > 1 || start == 1)) {
+            // Leading zeros, or "-0".
+            return false;
+        }
+
+        for (int i = start; i < length; i++) {
+
+            char c = text.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        if (digits == 19) {
+
+            String limit = start == 1 ? "9223372036854775808" : "9223372036854775807";
+
+            for (int i = 0; i < 19; i++) {
+
+                char c = text.charAt(start + i);
+
+                if (c != limit.charAt(i)) {
+                    return c < limit.charAt(i);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses the text of a {@code long}, which must be canonical (see {@link #isCanonicalLong(CharSequence)}).
+     *
+     * @param text
+     *         the canonical text of a {@code long}.
+     *
+     * @return the {@code long} of the text.
+     */
+    static long parseLong(CharSequence text) {
+
+        boolean negative = text.charAt(0) == '-';
+        long value = 0;
+
+        // Accumulate negatively, so that Long.MIN_VALUE does not overflow.
+        for (int i = negative ? 1 : 0; i < text.length(); i++) {
+            value = value * 10 - (text.charAt(i) - '0');
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Returns {@code true} iff the text is a decimal in the format of
+     * {@link Double#toString(double)}.
+     *
+     * @param text
+     *         the text to check.
+     *
+     * @return {@code true} iff the text is the canonical text of a {@code double}.
+     */
+    static boolean isCanonicalDouble(CharSequence text) {
+
+        boolean point = false;
+
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+
+            if (c == '.') {
+                point = true;
+            }
+            else if (!(c >= '0' && c <= '9' || c == '-' || c == 'E')) {
+                // This also rules out "NaN" and "Infinity".
+                return false;
+            }
+        }
+
+        if (!point) {
+            return false;
+        }
+
+        String string = text.toString();
+
+        try {
+            return Double.toString(Double.parseDouble(string)).equals(string);
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // The cells of a single column, in the type that fits all its cells so far.
+    private static final class Column implements Serializable {
+
+        // The type in which the cells are stored, or null as long as all cells are empty.
+        Type type;
+
+        // The number of cells.
+        int size;
+
+        // The cells of an INT column.
+        int[] ints;
+
+        // The cells of a LONG column.
+        long[] longs;
+
+        // The cells of a DOUBLE column.
+        double[] doubles;
+
+        // The chars of all cells of a STRING column.
+        char[] chars;
+
+        // The number of chars of a STRING column.
+        int length;
+
+        // The end index in `chars` of every cell of a STRING column.
+        int[] ends;
+
+        // The empty (and absent) cells of a numeric column.
+        BitSet empty;
+
+        // The maximum number of distinct values of a DICTIONARY column, or 0 to store text as a STRING column.
+        final int cardinality;
+
+        // The code of every cell of a DICTIONARY column with at most 256 values, else null.
+        byte[] bytes;
+
+        // The code of every cell of a DICTIONARY column with more than 256 values, else null.
+        char[] codes;
+
+        // The distinct values of a DICTIONARY column.
+        Dictionary dictionary;
+
+        Column(int cardinality) {
+            this.type = null;
+            this.size = 0;
+            this.empty = new BitSet();
+            this.cardinality = cardinality;
+        }
+
+        // Returns the type in which the cells are stored.
+        Type type() {
+            return this.type == null ? Type.STRING : this.type;
+        }
+
+        // Adds a cell, which is null when it is absent.
+        void add(CharSequence cell) {
+
+            if (cell == null || cell.length() == 0) {
+                this.addEmpty();
+                return;
+            }
+
+            if (this.type == null) {
+                this.type = this.text(classify(cell));
+                this.allocate();
+            }
+
+            switch (this.type) {
+
+                case INT:
+                    if (isCanonicalLong(cell)) {
+
+                        long value = parseLong(cell);
+
+                        if (value == (int) value) {
+                            this.ensureCapacity();
+                            this.ints[this.size++] = (int) value;
+                            return;
+                        }
+
+                        this.toLongs();
+                        this.add(cell);
+                    }
+                    else {
+                        this.toStrings(this.text(Type.STRING));
+                        this.add(cell);
+                    }
+                    return;
+
+                case LONG:
+                    if (isCanonicalLong(cell)) {
+                        this.ensureCapacity();
+                        this.longs[this.size++] = parseLong(cell);
+                    }
+                    else {
+                        this.toStrings(this.text(Type.STRING));
+                        this.add(cell);
+                    }
+                    return;
+
+                case DOUBLE:
+                    if (isCanonicalDouble(cell)) {
+                        this.ensureCapacity();
+                        this.doubles[this.size++] = Double.parseDouble(cell.toString());
+                    }
+                    else {
+                        this.toStrings(this.text(Type.STRING));
+                        this.add(cell);
+                    }
+                    return;
+
+                case DICTIONARY:
+                    this.addValue(cell);
+                    return;
+
+                default:
+                    this.ensureCapacity();
+                    this.ensureChars(cell.length());
+
+                    if (cell instanceof CharSlice) {
+                        ((CharSlice) cell).getChars(this.chars, this.length);
+                    }
+                    else {
+                        cell.toString().getChars(0, cell.length(), this.chars, this.length);
+                    }
+
+                    this.length += cell.length();
+                    this.ends[this.size++] = this.length;
+            }
+        }
+
+        // Adds an empty (or absent) cell.
+        private void addEmpty() {
+
+            if (this.type == Type.STRING) {
+                this.ensureCapacity();
+                this.ends[this.size++] = this.length;
+                return;
+            }
+
+            if (this.type == Type.DICTIONARY) {
+                this.addValue("");
+                return;
+            }
+
+            // All numeric arrays (and the untyped column) hold 0 for empty cells.
+            this.empty.set(this.size);
+
+            if (this.type != null) {
+                this.ensureCapacity();
+            }
+
+            this.size++;
+        }
+
+        // Adds a cell to a DICTIONARY column, which becomes a STRING column once it has too many values.
+        private void addValue(CharSequence cell) {
+
+            int code = this.dictionary.find(cell);
+
+            if (code < 0) {
+
+                if (this.dictionary.size() == this.cardinality) {
+                    this.toStrings(Type.STRING);
+                    this.add(cell);
+                    return;
+                }
+
+                code = this.insert(cell);
+            }
+
+            this.ensureCapacity();
+
+            if (this.bytes != null) {
+                this.bytes[this.size++] = (byte) code;
+            }
+            else {
+                this.codes[this.size++] = (char) code;
+            }
+        }
+
+        // Adds a new value to a DICTIONARY column, and returns its code.
+        private int insert(CharSequence value) {
+
+            if (this.dictionary.size() == 256 && this.bytes != null) {
+                // The codes no longer fit in a byte.
+                this.codes = new char[this.bytes.length];
+
+                for (int i = 0; i < this.size; i++) {
+                    this.codes[i] = (char) (this.bytes[i] & 0xFF);
+                }
+
+                this.bytes = null;
+            }
+
+            return this.dictionary.add(value.toString());
+        }
+
+        // Returns the code of a cell of a DICTIONARY column.
+        int code(int index) {
+            return this.bytes != null ? this.bytes[index] & 0xFF : this.codes[index];
+        }
+
+        // Returns the type in which text is stored, if the given type is STRING.
+        private Type text(Type type) {
+            return type == Type.STRING && this.cardinality > 0 ? Type.DICTIONARY : type;
+        }
+
+        // Returns the type that the first non-empty cell of a column can be stored in.
+        private static Type classify(CharSequence cell) {
+
+            if (isCanonicalLong(cell)) {
+
+                long value = parseLong(cell);
+
+                return value == (int) value ? Type.INT : Type.LONG;
+            }
+
+            return isCanonicalDouble(cell) ? Type.DOUBLE : Type.STRING;
+        }
+
+        // Allocates the storage for the type, holding all (empty) cells so far.
+        private void allocate() {
+
+            int capacity = Math.max(INITIAL_CAPACITY, this.size * 2);
+
+            switch (this.type) {
+
+                case INT:
+                    this.ints = new int[capacity];
+                    break;
+
+                case LONG:
+                    this.longs = new long[capacity];
+                    break;
+
+                case DOUBLE:
+                    this.doubles = new double[capacity];
+                    break;
+
+                case DICTIONARY:
+                    this.bytes = new byte[capacity];
+                    this.dictionary = new Dictionary();
+                    this.empty = null;
+
+                    if (this.size > 0) {
+                        // All cells so far are empty, and have code 0.
+                        this.insert("");
+                    }
+                    break;
+
+                default:
+                    this.ends = new int[capacity];
+                    this.chars = new char[capacity * 8];
+                    this.length = 0;
+                    this.empty = null;
+            }
+        }
+
+        // Makes sure the storage can hold one more cell.
+        private void ensureCapacity() {
+
+            switch (this.type) {
+
+                case INT:
+                    if (this.size == this.ints.length) {
+                        this.ints = Arrays.copyOf(this.ints, this.size * 2);
+                    }
+                    break;
+
+                case LONG:
+                    if (this.size == this.longs.length) {
+                        this.longs = Arrays.copyOf(this.longs, this.size * 2);
+                    }
+                    break;
+
+                case DOUBLE:
+                    if (this.size == this.doubles.length) {
+                        this.doubles = Arrays.copyOf(this.doubles, this.size * 2);
+                    }
+                    break;
+
+                case DICTIONARY:
+                    if (this.bytes != null && this.size == this.bytes.length) {
+                        this.bytes = Arrays.copyOf(this.bytes, this.size * 2);
+                    }
+                    else if (this.codes != null && this.size == this.codes.length) {
+                        this.codes = Arrays.copyOf(this.codes, this.size * 2);
+                    }
+                    break;
+
+                default:
+                    if (this.size == this.ends.length) {
+                        this.ends = Arrays.copyOf(this.ends, this.size * 2);
+                    }
+            }
+        }
+
+        // Makes sure the chars of a STRING column can hold `extra` more chars.
+        private void ensureChars(int extra) {
+            if (this.length + extra > this.chars.length) {
+                this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.length + extra));
+            }
+        }
+
+        // Converts an INT column to a LONG column.
+        private void toLongs() {
+
+            this.longs = new long[Math.max(INITIAL_CAPACITY, this.ints.length)];
+
+            for (int i = 0; i < this.size; i++) {
+                this.longs[i] = this.ints[i];
+            }
+
+            this.ints = null;
+            this.type = Type.LONG;
+        }
+
+        // Converts a numeric column to a text column (or a DICTIONARY column to a STRING column), with the
+        // canonical text of every number.
+        private void toStrings(Type type) {
+
+            int size = this.size;
+            String[] texts = new String[size];
+
+            for (int i = 0; i < size; i++) {
+                texts[i] = this.chars(i).toString();
+            }
+
+            this.type = type;
+            this.ints = null;
+            this.longs = null;
+            this.doubles = null;
+            this.bytes = null;
+            this.codes = null;
+            this.dictionary = null;
+            this.size = 0;
+            this.allocate();
+
+            for (String text : texts) {
+                this.add(text);
+            }
+        }
+
+        // Shrinks the storage to the number of cells.
+        void trim() {
+
+            if (this.type == null) {
+                // All cells are empty: store them as empty text.
+                this.type = Type.STRING;
+                this.ends = new int[this.size];
+                this.chars = new char[0];
+                this.length = 0;
+                this.empty = null;
+                return;
+            }
+
+            switch (this.type) {
+
+                case INT:
+                    this.ints = Arrays.copyOf(this.ints, this.size);
+                    break;
+
+                case LONG:
+                    this.longs = Arrays.copyOf(this.longs, this.size);
+                    break;
+
+                case DOUBLE:
+                    this.doubles = Arrays.copyOf(this.doubles, this.size);
+                    break;
+
+                case DICTIONARY:
+                    if (this.bytes != null) {
+                        this.bytes = Arrays.copyOf(this.bytes, this.size);
+                    }
+                    else {
+                        this.codes = Arrays.copyOf(this.codes, this.size);
+                    }
+
+                    this.dictionary.trim();
+                    break;
+
+                default:
+                    this.ends = Arrays.copyOf(this.ends, this.size);
+                    this.chars = Arrays.copyOf(this.chars, this.length);
+            }
+        }
+
+        // Returns true iff the cell is empty.
+        boolean isEmpty(int index) {
+
+            switch (this.type()) {
+
+                case STRING:
+                    return this.start(index) == this.ends[index];
+
+                case DICTIONARY:
+                    return this.dictionary.value(this.code(index)).isEmpty();
+
+                default:
+                    return this.empty.get(index);
+            }
+        }
+
+        // Returns the text of a cell.
+        CharSequence chars(int index) {
+
+            switch (this.type()) {
+
+                case INT:
+                    return this.empty.get(index) ? "" : Integer.toString(this.ints[index]);
+
+                case LONG:
+                    return this.empty.get(index) ? "" : Long.toString(this.longs[index]);
+
+                case DOUBLE:
+                    return this.empty.get(index) ? "" : Double.toString(this.doubles[index]);
+
+                case DICTIONARY:
+                    return this.dictionary.value(this.code(index));
+
+                default:
+                    int start = this.start(index);
+                    return new CharSlice(this.chars, start, this.ends[index] - start);
+            }
+        }
+
+        // Returns the start index in `chars` of a cell of a STRING column.
+        private int start(int index) {
+            return index == 0 ? 0 : this.ends[index - 1];
+        }
+    }
+}
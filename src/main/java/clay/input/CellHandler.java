@@ -0,0 +1,21 @@
+package clay.input;
+
+/**
+ * Receives the raw cells of a record from a {@link Tokenizer}, one at a time and
+ * in the order they appear in the input.
+ */
+interface CellHandler {
+
+    /**
+     * Handles a raw cell. The chars are only valid during this call: they may
+     * be overwritten as soon as it returns, so they must be copied to keep them.
+     *
+     * @param chars
+     *         the array holding the chars of the cell.
+     * @param offset
+     *         the index in {@code chars} of the first char of the cell.
+     * @param length
+     *         the number of chars of the cell.
+     */
+    void cell(char[] chars, int offset, int length);
+}
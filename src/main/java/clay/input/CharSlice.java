@@ -0,0 +1,245 @@
+package clay.input;
+
+import java.io.Serializable;
+
+/**
+ * A lightweight, read-only view of a range of chars in an array: creating one
+ * does not copy any chars. A string is only created when {@link #toString()}
+ * is invoked, so that callers that merely inspect, compare or parse a cell need
+ * not create a string for it at all.
+ *
+ * Two slices are equal iff they hold the same chars, and their hash code is the
+ * same as the hash code of the string with these chars. Use {@link #contentEquals(CharSequence)}
+ * to compare a slice with any other char sequence.
+ */
+public final class CharSlice implements CharSequence, Comparable<CharSlice>, Serializable {
+
+    /**
+     * An empty slice.
+     */
+    public static final CharSlice EMPTY = new CharSlice(new char[0], 0, 0);
+
+    // The chars that this slice is a view of.
+    private final char[] chars;
+
+    // The index in the array of the first char of this slice.
+    private final int offset;
+
+    // The number of chars of this slice.
+    private final int length;
+
+    // The cached hash code, or 0 if it has not been computed yet.
+    private int hash;
+
+    /**
+     * Creates a new view of a range of chars. Note that the chars are not copied:
+     * the array must not be changed while the slice is in use.
+     *
+     * @param chars
+     *         the chars that the slice is a view of.
+     * @param offset
+     *         the index in the array of the first char of the slice.
+     * @param length
+     *         the number of chars of the slice.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code chars} is {@code null}, or when the range does not lie
+     *         within the array.
+     */
+    public CharSlice(char[] chars, int offset, int length) throws IllegalArgumentException {
+
+        if (chars == null) {
+            throw new IllegalArgumentException("chars == null");
+        }
+
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IllegalArgumentException("the range [" + offset + ", " + (offset + length) +
+                    ") does not lie within [0, " + chars.length + ")");
+        }
+
+        this.chars = chars;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char charAt(int index) {
+
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + this.length);
+        }
+
+        return this.chars[this.offset + index];
+    }
+
+    /**
+     * Returns a view of a range of this slice: no chars are copied.
+     *
+     * @param start
+     *         the index of the first char (inclusive).
+     * @param end
+     *         the index of the last char (exclusive).
+     *
+     * @return a view of a range of this slice.
+     */
+    @Override
+    public CharSlice subSequence(int start, int end) {
+
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + this.length);
+        }
+
+        if (start == 0 && end == this.length) {
+            return this;
+        }
+
+        return new CharSlice(this.chars, this.offset + start, end - start);
+    }
+
+    /**
+     * Returns a view of this slice without any leading and trailing whitespace,
+     * using the same definition of whitespace as {@link String#trim()}: no chars
+     * are copied.
+     *
+     * @return a view of this slice without any leading and trailing whitespace.
+     */
+    public CharSlice trim() {
+
+        int start = this.offset;
+        int end = this.offset + this.length;
+
+        while (start < end && this.chars[start] <= ' ') {
+            start++;
+        }
+
+        while (end > start && this.chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        return this.subSequence(start - this.offset, end - this.offset);
+    }
+
+    /**
+     * Returns {@code true} iff this slice holds no chars.
+     *
+     * @return {@code true} iff this slice holds no chars.
+     */
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    /**
+     * Returns {@code true} iff this slice holds the same chars as the given
+     * sequence.
+     *
+     * @param sequence
+     *         the sequence to compare this slice with.
+     *
+     * @return {@code true} iff this slice holds the same chars as the given
+     * sequence.
+     */
+    public boolean contentEquals(CharSequence sequence) {
+
+        if (sequence == null || sequence.length() != this.length) {
+            return false;
+        }
+
+        for (int i = 0; i < this.length; i++) {
+            if (this.chars[this.offset + i] != sequence.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the chars of this slice into an array.
+     *
+     * @param destination
+     *         the array to copy the chars into.
+     * @param destinationOffset
+     *         the index in the array at which the first char is copied.
+     */
+    public void getChars(char[] destination, int destinationOffset) {
+        System.arraycopy(this.chars, this.offset, destination, destinationOffset, this.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(CharSlice that) {
+
+        int count = Math.min(this.length, that.length);
+
+        for (int i = 0; i < count; i++) {
+
+            char a = this.chars[this.offset + i];
+            char b = that.chars[that.offset + i];
+
+            if (a != b) {
+                return a - b;
+            }
+        }
+
+        return this.length - that.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        return o instanceof CharSlice && this.contentEquals((CharSlice) o);
+    }
+
+    /**
+     * Returns the same hash code as {@code toString().hashCode()}, without
+     * creating a string.
+     *
+     * @return the same hash code as {@code toString().hashCode()}.
+     */
+    @Override
+    public int hashCode() {
+
+        int hash = this.hash;
+
+        if (hash == 0) {
+
+            for (int i = 0; i < this.length; i++) {
+                hash = 31 * hash + this.chars[this.offset + i];
+            }
+
+            this.hash = hash;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns a new string holding the chars of this slice.
+     *
+     * @return a new string holding the chars of this slice.
+     */
+    @Override
+    public String toString() {
+        return new String(this.chars, this.offset, this.length);
+    }
+}
@@ -0,0 +1,191 @@
+package clay.input;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A tokenizer for dialects where the delimiter, quotation, escape quotation and
+ * record end all consist of a single char. Instead of looking ahead for these
+ * substrings at every position, the window is scanned in tight loops that compare
+ * each char against {@code char} constants, and a run of chars that make up an
+ * entire cell is passed straight from the window, without copying it into a
+ * buffer first.
+ *
+ * This produces the exact same records as {@link ReaderTokenizer}.
+ */
+class CharTokenizer extends ReaderTokenizer {
+
+    // The char that separates the CSV data cells.
+    private final char delimiterChar;
+
+    // The char that denotes the quotation of a CSV cell.
+    private final char quotationChar;
+
+    // The char that denotes the escape of a quotation of a CSV cell.
+    private final char escapeChar;
+
+    // The char that denotes the end of a CSV record.
+    private final char recordEndChar;
+
+    /**
+     * Creates a new tokenizer for a single char dialect.
+     *
+     * @param reader
+     *         the reader from which the CSV input is read.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @throws IllegalArgumentException
+     *         when any of the substrings does not consist of a single char.
+     */
+    CharTokenizer(Reader reader, String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws IllegalArgumentException {
+
+        super(reader, delimiter, quotation, escapeQuotation, recordEnd);
+
+        if (delimiter.length() != 1 || quotation.length() != 1 || escapeQuotation.length() != 1 ||
+                recordEnd.length() != 1) {
+            throw new IllegalArgumentException("all substrings of the dialect must consist of a single char");
+        }
+
+        this.delimiterChar = delimiter.charAt(0);
+        this.quotationChar = quotation.charAt(0);
+        this.escapeChar = escapeQuotation.charAt(0);
+        this.recordEndChar = recordEnd.charAt(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean next(CellHandler handler) throws IOException {
+
+        if (!this.available(1)) {
+            return false;
+        }
+
+        this.buffered = 0;
+        this.firstColumn();
+
+        while (true) {
+
+            // Scan a run of chars that are not special outside of a quoted cell.
+            char[] window = this.window;
+            int start = this.position;
+            int end = this.limit;
+            int index = start;
+
+            while (index < end) {
+
+                char current = window[index];
+
+                if (current == this.delimiterChar || current == this.recordEndChar || current == this.quotationChar) {
+                    break;
+                }
+
+                index++;
+            }
+
+            if (index == end) {
+
+                // The run continues beyond the window: buffer it before reading more chars.
+                this.buffer(start, index);
+                this.position = index;
+
+                if (!this.available(1)) {
+
+                    // The last record of the input need not be terminated by a record end.
+                    if (this.buffered > 0) {
+                        this.pass(handler, this.buffer, 0, this.buffered);
+                    }
+
+                    return true;
+                }
+
+                continue;
+            }
+
+            char current = window[index];
+
+            if (current == this.delimiterChar) {
+                this.cell(handler, start, index);
+                this.position = index + 1;
+            }
+            else if (current == this.recordEndChar) {
+                this.cell(handler, start, index);
+                this.position = index + 1;
+                return true;
+            }
+            else {
+                // Anything before the opening quote is discarded.
+                this.buffered = 0;
+                this.position = index + 1;
+                this.quoted();
+            }
+        }
+    }
+
+    // Passes the cell that ends with the chars in the window from start to end to the handler.
+    private void cell(CellHandler handler, int start, int end) {
+
+        if (this.buffered == 0) {
+            // The most common case: the entire cell is a single run of chars.
+            this.pass(handler, this.window, start, end - start);
+            return;
+        }
+
+        this.buffer(start, end);
+        this.pass(handler, this.buffer, 0, this.buffered);
+        this.buffered = 0;
+    }
+
+    // Buffers the contents of a quoted cell, up to and including its closing quote.
+    private void quoted() throws IOException {
+
+        while (true) {
+
+            char[] window = this.window;
+            int start = this.position;
+            int end = this.limit;
+            int index = start;
+
+            while (index < end && window[index] != this.quotationChar && window[index] != this.escapeChar) {
+                index++;
+            }
+
+            this.buffer(start, index);
+            this.position = index;
+
+            if (index == end) {
+
+                if (!this.available(1)) {
+                    throw this.unclosedQuote();
+                }
+
+                continue;
+            }
+
+            // Note that looking ahead might move the chars in the window.
+            if (this.window[this.position] == this.escapeChar && this.available(2) &&
+                    this.window[this.position + 1] == this.quotationChar) {
+                this.buffer(this.quotationChar);
+                this.position += 2;
+            }
+            else if (this.window[this.position] == this.quotationChar) {
+                this.position++;
+                return;
+            }
+            else {
+                // An escape that does not precede a quotation is just a char.
+                this.buffer(this.escapeChar);
+                this.position++;
+            }
+        }
+    }
+}
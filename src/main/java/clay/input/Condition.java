@@ -0,0 +1,56 @@
+package clay.input;
+
+import java.io.Serializable;
+import java.util.function.Predicate;
+
+/**
+ * A condition that the raw cell in a column must meet for its record to be
+ * kept: see {@link CSVInput#where(int, Predicate)}.
+ */
+final class Condition implements Serializable {
+
+    // The index of the column of the cell that is tested.
+    final int column;
+
+    // The predicate that the raw cell must meet.
+    final Predicate<CharSequence> predicate;
+
+    /**
+     * Creates a new condition.
+     *
+     * @param column
+     *         the index of the column of the cell that is tested.
+     * @param predicate
+     *         the predicate that the raw cell must meet.
+     */
+    Condition(int column, Predicate<CharSequence> predicate) {
+        this.column = column;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Returns {@code true} iff the other object is a condition on the same column,
+     * with an equal predicate.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+
+        if (!(o instanceof Condition)) {
+            return false;
+        }
+
+        Condition that = (Condition) o;
+
+        return that.column == this.column && that.predicate.equals(this.predicate);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.column + this.predicate.hashCode();
+    }
+}
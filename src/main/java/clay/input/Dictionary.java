@@ -0,0 +1,189 @@
+package clay.input;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The distinct values of a column, each of which has a code: the index at which
+ * it was added. The values are found by their chars through a small open
+ * addressing table, so that looking up a value that was added before does not
+ * allocate: neither from a {@code CharSequence}, nor from a range of a char array.
+ */
+final class Dictionary implements Serializable {
+
+    // The initial number of values the dictionary has room for.
+    private static final int INITIAL_CAPACITY = 16;
+
+    // The value of every code.
+    private String[] values;
+
+    // The number of values.
+    private int count;
+
+    // The code + 1 of the value in every slot of the table, or 0 for an empty slot: the table is at most half full.
+    private int[] slots;
+
+    Dictionary() {
+        this.values = new String[INITIAL_CAPACITY];
+        this.count = 0;
+        this.slots = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the number of values.
+     */
+    int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the value of a code.
+     *
+     * @param code
+     *         the code of the value, less than {@link #size()}.
+     *
+     * @return the value of the code.
+     */
+    String value(int code) {
+        return this.values[code];
+    }
+
+    /**
+     * Returns the code of a value.
+     *
+     * @param value
+     *         the value to look up.
+     *
+     * @return the code of the value, or -1 if it was not added.
+     */
+    int find(CharSequence value) {
+
+        int hash = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+
+        int mask = this.slots.length - 1;
+
+        for (int slot = mix(hash) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+
+            String candidate = this.values[this.slots[slot] - 1];
+
+            if (candidate.hashCode() == hash && candidate.contentEquals(value)) {
+                return this.slots[slot] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the code of the value with the chars in a range of an array.
+     *
+     * @param chars
+     *         the array holding the chars of the value.
+     * @param offset
+     *         the index in the array of the first char of the value.
+     * @param length
+     *         the number of chars of the value.
+     *
+     * @return the code of the value, or -1 if it was not added.
+     */
+    int find(char[] chars, int offset, int length) {
+
+        int hash = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        int mask = this.slots.length - 1;
+
+        for (int slot = mix(hash) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+
+            String candidate = this.values[this.slots[slot] - 1];
+
+            if (candidate.hashCode() == hash && equals(candidate, chars, offset, length)) {
+                return this.slots[slot] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a value that was not added before.
+     *
+     * @param value
+     *         the value to add.
+     *
+     * @return the code of the value.
+     */
+    int add(String value) {
+
+        if (this.count == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.count * 2);
+        }
+
+        int code = this.count++;
+
+        this.values[code] = value;
+        this.place(code);
+
+        if (this.count * 2 > this.slots.length) {
+
+            this.slots = new int[this.slots.length * 2];
+
+            for (int i = 0; i < this.count; i++) {
+                this.place(i);
+            }
+        }
+
+        return code;
+    }
+
+    /**
+     * Shrinks the storage of the values to their number.
+     */
+    void trim() {
+        this.values = Arrays.copyOf(this.values, this.count);
+    }
+
+    // Puts a code in the first free slot for its value.
+    private void place(int code) {
+
+        int mask = this.slots.length - 1;
+        int slot = mix(this.values[code].hashCode()) & mask;
+
+        while (this.slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        this.slots[slot] = code + 1;
+    }
+
+    // Spreads the bits of a hash, so that similar values do not cluster in the table.
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Returns true iff the value has the given chars.
+    private static boolean equals(String value, char[] chars, int offset, int length) {
+
+        if (value.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
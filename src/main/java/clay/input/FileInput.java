@@ -2,19 +2,59 @@ package clay.input;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 
 /**
  * An {@code Input} represented as a local {@code File}.
+ *
+ * The file is never loaded into memory as a whole: every time the input is
+ * parsed, the file is read from a {@code FileChannel} and tokenized through a
+ * window of a fixed size. When the file is encoded in UTF-8 (or US-ASCII, or
+ * ISO-8859-1) and the delimiter, quotation, escape quotation and record end are
+ * all a single ASCII char, the bytes of the file are tokenized without decoding
+ * them first: only the cells themselves are decoded.
+ *
+ * For random access into large files, a sparse index of where the records start
+ * can be saved next to the file with {@link #buildIndex()}. As long as the file
+ * does not change, {@link #getRecord(long)} and {@link #getRecords(long, long)}
+ * then seek to the requested records instead of reading the file from the start.
  */
 public class FileInput extends SimpleInput {
 
     /**
-     * Creates a new {@code StringInput} instance with default:
+     * The default charset of CSV files: UTF-8.
+     */
+    public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The CSV input file.
+     */
+    protected final File file;
+
+    /**
+     * The charset with which the CSV input file is decoded. A {@code Charset} is
+     * not serializable: it is restored from its name when this input is deserialized.
+     */
+    protected transient Charset charset;
+
+    // The name of the charset, from which it is restored when this input is deserialized.
+    private final String charsetName;
+
+    /**
+     * Creates a new {@code FileInput} instance with default:
      * - delimiter: {@value #DEFAULT_DELIMITER}
      * - quotation: {@value #DEFAULT_QUOTATION}
      * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
      * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
      *
      * @param file
      *         the CSV input file.
@@ -29,10 +69,11 @@ public class FileInput extends SimpleInput {
     }
 
     /**
-     * Creates a new {@code StringInput} instance with default:
+     * Creates a new {@code FileInput} instance with default:
      * - quotation: {@value #DEFAULT_QUOTATION}
      * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
      * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
      *
      * @param file
      *         the CSV input file.
@@ -49,8 +90,9 @@ public class FileInput extends SimpleInput {
     }
 
     /**
-     * Creates a new {@code StringInput} instance with default:
+     * Creates a new {@code FileInput} instance with default:
      * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
      *
      * @param file
      *         the CSV input file.
@@ -73,7 +115,8 @@ public class FileInput extends SimpleInput {
     }
 
     /**
-     * Creates a new {@code StringInput} instance.
+     * Creates a new {@code FileInput} instance with default:
+     * - charset: UTF-8
      *
      * @param file
      *         the CSV input file.
@@ -94,6 +137,283 @@ public class FileInput extends SimpleInput {
     public FileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd)
             throws FileNotFoundException, IllegalArgumentException {
 
-        super(new Scanner(file).useDelimiter("\\Z").next(), delimiter, quotation, escapeQuotation, recordEnd);
+        this(file, delimiter, quotation, escapeQuotation, recordEnd, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new {@code FileInput} instance.
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     * @param charset
+     *         the charset with which the file is decoded.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public FileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                     Charset charset) throws FileNotFoundException, IllegalArgumentException {
+
+        super(delimiter, quotation, escapeQuotation, recordEnd);
+
+        if (file == null) {
+            throw new IllegalArgumentException("file == null");
+        }
+
+        if (charset == null) {
+            throw new IllegalArgumentException("charset == null");
+        }
+
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        this.file = file;
+        this.charset = charset;
+        this.charsetName = charset.name();
+    }
+
+    // Restores the charset, which is not serialized.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.charset = Charset.forName(this.charsetName);
+    }
+
+    /**
+     * Returns the CSV input file.
+     *
+     * @return the CSV input file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the charset with which the CSV input file is decoded.
+     *
+     * @return the charset with which the CSV input file is decoded.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Returns the sidecar file in which the index of the records of the file is
+     * saved: the path of the file with {@code ".idx"} appended to it.
+     *
+     * @return the sidecar file in which the index of the records of the file is saved.
+     */
+    public File getIndexFile() {
+        return new File(this.file.getPath() + RowIndex.EXTENSION);
+    }
+
+    /**
+     * Returns {@code true} iff there is an index of the records that is valid for
+     * the file in its current state, and for the dialect and charset of this input.
+     *
+     * @return {@code true} iff there is a valid index of the records.
+     */
+    public boolean hasIndex() {
+        return RowIndex.read(this.getIndexFile(), this) != null;
+    }
+
+    /**
+     * Creates an index of where every {@value RowIndex#DEFAULT_STRIDE}th record of
+     * the file starts, and saves it to the file returned by {@link #getIndexFile()}.
+     *
+     * @throws IOException
+     *         when the file could not be read, or the index could not be saved.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    public void buildIndex() throws IOException {
+        this.buildIndex(RowIndex.DEFAULT_STRIDE);
+    }
+
+    /**
+     * Creates an index of where every {@code stride}-th record of the file starts,
+     * and saves it to the file returned by {@link #getIndexFile()}. A smaller stride
+     * makes reaching a record faster, at the cost of a larger index.
+     *
+     * @param stride
+     *         the number of records between two indexed records.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code stride} is less than 1.
+     * @throws IOException
+     *         when the file could not be read, or the index could not be saved.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    public void buildIndex(int stride) throws IllegalArgumentException, IOException {
+
+        if (stride < 1) {
+            throw new IllegalArgumentException("stride < 1");
+        }
+
+        // Take these before reading, so that changes during the reading invalidate the index.
+        long size = this.file.length();
+        long lastModified = this.file.lastModified();
+
+        RowIndex index = RowIndex.build(this.openTokenizer(), stride, this.isByteTokenized());
+        index.write(this.getIndexFile(), this, size, lastModified);
+    }
+
+    /**
+     * Returns the sidecar file in which a snapshot of the records of the file is
+     * saved: the path of the file with {@code ".snap"} appended to it.
+     *
+     * @return the sidecar file in which a snapshot of the records of the file is saved.
+     */
+    public File getSnapshotFile() {
+        return new File(this.file.getPath() + CSVSnapshot.EXTENSION);
+    }
+
+    /**
+     * Parses the file and saves its records, with all filters applied to them, to
+     * the file returned by {@link #getSnapshotFile()}. As long as the file does not
+     * change, {@link #openSnapshot()} then loads the records without parsing them
+     * again.
+     *
+     * @throws IOException
+     *         when the file could not be read, or the snapshot could not be saved.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    public void writeSnapshot() throws IOException {
+
+        // Take these before reading, so that changes during the reading invalidate the snapshot.
+        long size = this.file.length();
+        long lastModified = this.file.lastModified();
+
+        CSVSnapshot.write(this, this.getSnapshotFile(), size, lastModified, this.charset.name());
+    }
+
+    /**
+     * Opens the snapshot of the records saved by {@link #writeSnapshot()}, if it
+     * is valid for the file in its current state, and for the dialect, charset,
+     * selected columns and filters of this input. An input with conditions, or
+     * with filters other than those of this library, has no valid snapshot: its
+     * filters cannot be compared with those the snapshot was saved with.
+     *
+     * @return the snapshot of the records, or {@code null} if there is no snapshot
+     * that is valid for this input.
+     */
+    public CSVSnapshot openSnapshot() {
+        return CSVSnapshot.open(this.getSnapshotFile(), this);
+    }
+
+    /**
+     * Opens a tokenizer positioned at the start of a raw record: when there is
+     * a valid index, this seeks to the indexed record at or before it instead of
+     * reading the file from its start.
+     *
+     * @param record
+     *         the index of the raw record.
+     *
+     * @return a new tokenizer positioned at the start of the raw record.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    Tokenizer openTokenizer(long record) throws IOException {
+
+        RowIndex index = RowIndex.read(this.getIndexFile(), this);
+
+        if (index == null || index.bytes != this.isByteTokenized()) {
+            return super.openTokenizer(record);
+        }
+
+        long offset = index.offset(record);
+        Tokenizer tokenizer;
+
+        if (index.bytes) {
+
+            FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+
+            tokenizer = ByteTokenizer.forChannel(channel, Tokenizer.WINDOW_SIZE, this.charset, this.delimiter,
+                    this.quotation, this.escapeQuotation, this.recordEnd);
+        }
+        else {
+
+            Reader reader = this.openReader();
+
+            for (long skipped = 0; skipped < offset; ) {
+
+                long count = reader.skip(offset - skipped);
+
+                if (count <= 0) {
+                    break;
+                }
+
+                skipped += count;
+            }
+
+            tokenizer = this.tokenizer(reader);
+        }
+
+        return skip(tokenizer, record - index.indexed(record));
+    }
+
+    // Returns true iff the file is tokenized as bytes.
+    private boolean isByteTokenized() {
+        return ByteTokenizer.supports(this.charset, this.delimiter, this.quotation, this.escapeQuotation,
+                this.recordEnd);
+    }
+
+    /**
+     * Opens a buffered reader that decodes the file straight from a {@code FileChannel}.
+     * Malformed input is replaced by the charset's replacement character, just like
+     * an {@code InputStreamReader} does.
+     *
+     * @return a new reader from which the CSV input is tokenized.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    protected Reader openReader() throws IOException {
+
+        CharsetDecoder decoder = this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        return Channels.newReader(channel, decoder, Tokenizer.WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a tokenizer that works on the raw bytes of the file when possible,
+     * else one that tokenizes the chars of the reader returned by {@link #openReader()}.
+     *
+     * @return a new tokenizer that reads the raw records of the file.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    Tokenizer openTokenizer() throws IOException {
+
+        if (!this.isByteTokenized()) {
+            return super.openTokenizer();
+        }
+
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        return ByteTokenizer.forChannel(channel, Tokenizer.WINDOW_SIZE, this.charset, this.delimiter,
+                this.quotation, this.escapeQuotation, this.recordEnd);
     }
 }
@@ -0,0 +1,489 @@
+package clay.input;
+
+import clay.filter.BatchFilter;
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeColumnRangeFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.ExcludeRowRangeFilter;
+import clay.filter.Filter;
+import clay.filter.RangeFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The filters of an input, compiled once before parsing into a plan that is
+ * cheap to apply to every cell.
+ *
+ * The filters that exclude rows or columns only depend on the row and column
+ * index: they are resolved into sorted ranges of excluded rows and columns, and
+ * a table of the first columns, so that whether a cell is excluded is a single
+ * array lookup. A record in an excluded row is never passed to a filter, and a
+ * cell in an excluded column is not either. Only the other filters remain to be
+ * applied (in order!) to the value of a cell. The {@link RangeFilter}s among them
+ * that come first are applied to the raw chars of a cell, before a string of the
+ * cell is created.
+ *
+ * Note that only the filters of exactly these classes are resolved: subclasses
+ * could change what is excluded, and are applied like any other filter.
+ *
+ * When all records are filtered at once, they are filtered in batches of
+ * consecutive rows, one column at a time: a {@link BatchFilter} is then invoked
+ * once per column of a batch instead of once per cell.
+ */
+final class FilterPlan {
+
+    /**
+     * The maximum number of leading columns of which the exclusion is looked up
+     * in a table instead of in the ranges of excluded columns: {@value}
+     */
+    static final int MAX_TABLE_SIZE = 1024;
+
+    /**
+     * The number of raw records that are filtered at once by {@link #filter(int, List, int[])}: {@value}
+     */
+    static final int BATCH_SIZE = 4096;
+
+    // The rows that are excluded as a whole.
+    private final Ranges rows;
+
+    // The columns that are excluded in every row.
+    private final Ranges columns;
+
+    // Whether each of the first columns is excluded.
+    private final boolean[] table;
+
+    /**
+     * The filters that are applied (in order!) to the value of every cell that is
+     * not excluded: all filters other than the ones that exclude rows or columns.
+     */
+    final Filter[] values;
+
+    /**
+     * Whether the filter in {@link #values} at the same index is a {@link RangeFilter},
+     * which can narrow the range of a cell instead of a string.
+     */
+    final boolean[] ranges;
+
+    /**
+     * Whether any of the filters in {@link #values} is a {@link BatchFilter}.
+     */
+    final boolean batched;
+
+    /**
+     * Compiles a plan of filters.
+     *
+     * @param filters
+     *         the filters that will be applied (in order!) to all the data cells.
+     */
+    FilterPlan(Collection<Filter> filters) {
+
+        List<long[]> rows = new ArrayList<long[]>();
+        List<long[]> columns = new ArrayList<long[]>();
+        List<Filter> values = new ArrayList<Filter>();
+
+        for (Filter filter : filters) {
+
+            Class<?> type = filter.getClass();
+
+            if (type == ExcludeRowFilter.class) {
+                for (int index : ((ExcludeRowFilter) filter).getIndexes()) {
+                    rows.add(new long[]{index, index + 1L});
+                }
+            }
+            else if (type == ExcludeRowRangeFilter.class) {
+                ExcludeRowRangeFilter range = (ExcludeRowRangeFilter) filter;
+                rows.add(new long[]{range.getFrom(), range.getTo()});
+            }
+            else if (type == ExcludeColumnFilter.class) {
+                for (int index : ((ExcludeColumnFilter) filter).getIndexes()) {
+                    columns.add(new long[]{index, index + 1L});
+                }
+            }
+            else if (type == ExcludeColumnRangeFilter.class) {
+                ExcludeColumnRangeFilter range = (ExcludeColumnRangeFilter) filter;
+                columns.add(new long[]{range.getFrom(), range.getTo()});
+            }
+            else {
+                values.add(filter);
+            }
+        }
+
+        this.rows = new Ranges(rows);
+        this.columns = new Ranges(columns);
+        this.table = this.columns.table(MAX_TABLE_SIZE);
+        this.values = values.toArray(new Filter[values.size()]);
+        this.ranges = new boolean[this.values.length];
+
+        boolean batched = false;
+
+        for (int i = 0; i < this.values.length; i++) {
+            this.ranges[i] = this.values[i] instanceof RangeFilter;
+            batched |= this.values[i] instanceof BatchFilter;
+        }
+
+        this.batched = batched;
+    }
+
+    /**
+     * Returns {@code true} iff a raw record is excluded as a whole, without having
+     * to pass its cells through the filters.
+     *
+     * @param rowIndex
+     *         the index of the raw record in the input.
+     *
+     * @return {@code true} iff the raw record is excluded as a whole.
+     */
+    boolean excludes(long rowIndex) {
+        return this.rows.contains(rowIndex);
+    }
+
+    /**
+     * Returns {@code true} iff the cells in a column are excluded in every row.
+     *
+     * @param columnIndex
+     *         the index of the column in the input.
+     *
+     * @return {@code true} iff the cells in the column are excluded.
+     */
+    boolean excludesColumn(int columnIndex) {
+        return columnIndex < this.table.length ? this.table[columnIndex] : this.columns.contains(columnIndex);
+    }
+
+    /**
+     * Applies all filters to a cell.
+     *
+     * @param rowIndex
+     *         the index of the raw record of the cell in the input.
+     * @param columnIndex
+     *         the index of the column of the cell in the input.
+     * @param value
+     *         the value of the cell.
+     *
+     * @return {@code null} if the cell is excluded, else its filtered value.
+     */
+    String apply(int rowIndex, int columnIndex, String value) {
+
+        if (this.excludes(rowIndex) || this.excludesColumn(columnIndex)) {
+            return null;
+        }
+
+        return this.applyValues(rowIndex, columnIndex, value);
+    }
+
+    /**
+     * Applies the filters in {@link #values} to a cell that is not excluded.
+     *
+     * @param rowIndex
+     *         the index of the raw record of the cell in the input.
+     * @param columnIndex
+     *         the index of the column of the cell in the input.
+     * @param value
+     *         the value of the cell.
+     *
+     * @return {@code null} if one of the filters excluded the cell, else its
+     * filtered value.
+     */
+    String applyValues(int rowIndex, int columnIndex, String value) {
+        return this.applyValues(0, rowIndex, columnIndex, value);
+    }
+
+    /**
+     * Applies all filters to the raw chars of a cell of a record that is not
+     * excluded as a whole: the range filters that come first narrow the range of
+     * the cell, after which a single string is created of the chars that remain
+     * (or looked up, when it is interned), to which the other filters are applied.
+     *
+     * @param rowIndex
+     *         the index of the raw record of the cell in the input.
+     * @param columnIndex
+     *         the index of the column of the cell in the input.
+     * @param chars
+     *         the chars that contain the cell.
+     * @param range
+     *         the start index (inclusive) and the end index (exclusive) of the cell
+     *         in {@code chars}, which are narrowed in place.
+     * @param interner
+     *         creates the string of the cell, or {@code null} when it is not interned.
+     *
+     * @return {@code null} if the cell is excluded, else its filtered value.
+     */
+    String apply(int rowIndex, int columnIndex, char[] chars, int[] range, Interner interner) {
+
+        if (this.excludesColumn(columnIndex)) {
+            return null;
+        }
+
+        int first = this.narrow(rowIndex, columnIndex, chars, range);
+
+        if (first < 0) {
+            return null;
+        }
+
+        int length = range[1] - range[0];
+        String value = interner == null ? new String(chars, range[0], length) :
+                interner.intern(columnIndex, chars, range[0], length);
+
+        return this.applyValues(first, rowIndex, columnIndex, value);
+    }
+
+    /**
+     * Applies the range filters at the start of {@link #values} to the raw chars
+     * of a cell.
+     *
+     * @param rowIndex
+     *         the index of the raw record of the cell in the input.
+     * @param columnIndex
+     *         the index of the column of the cell in the input.
+     * @param chars
+     *         the chars that contain the cell.
+     * @param range
+     *         the start index (inclusive) and the end index (exclusive) of the cell
+     *         in {@code chars}, which are narrowed in place.
+     *
+     * @return the index in {@link #values} of the first filter that still needs
+     * to be applied to the value of the cell, or -1 if one of the range filters
+     * excluded the cell.
+     */
+    int narrow(int rowIndex, int columnIndex, char[] chars, int[] range) {
+
+        int first = 0;
+
+        while (first < this.values.length && this.ranges[first]) {
+
+            if (!((RangeFilter) this.values[first]).apply(rowIndex, columnIndex, chars, range)) {
+                // One of the filters excluded this cell.
+                return -1;
+            }
+
+            first++;
+        }
+
+        return first;
+    }
+
+    /**
+     * Applies the filters in {@link #values} from a given index on to a cell that
+     * is not excluded.
+     *
+     * @param first
+     *         the index in {@link #values} of the first filter to apply.
+     * @param rowIndex
+     *         the index of the raw record of the cell in the input.
+     * @param columnIndex
+     *         the index of the column of the cell in the input.
+     * @param value
+     *         the value of the cell.
+     *
+     * @return {@code null} if one of the filters excluded the cell, else its
+     * filtered value.
+     */
+    String applyValues(int first, int rowIndex, int columnIndex, String value) {
+
+        for (int i = first; i < this.values.length; i++) {
+
+            value = this.values[i].apply(rowIndex, columnIndex, value);
+
+            if (value == null) {
+                // One of the filters excluded this value.
+                return null;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Applies all filters to a batch of consecutive raw records, one column at a
+     * time, in batches of at most {@link #BATCH_SIZE} records.
+     *
+     * @param firstRow
+     *         the index in the input of the first raw record.
+     * @param records
+     *         the cells of the raw records, or {@code null} for a raw record that
+     *         has been excluded as a whole already.
+     * @param columns
+     *         the indexes of the columns of the cells, when only the cells in these
+     *         columns were tokenized (see {@link Tokenizer#select(int[])}), or
+     *         {@code null} when the cells are in all columns.
+     *
+     * @return the filtered records that have a non-empty cell, in order.
+     */
+    List<List<String>> filter(int firstRow, List<List<String>> records, int[] columns) {
+
+        List<List<String>> filtered = new ArrayList<List<String>>(records.size());
+
+        for (int from = 0; from < records.size(); from += BATCH_SIZE) {
+            List<List<String>> batch = records.subList(from, Math.min(from + BATCH_SIZE, records.size()));
+            this.filterBatch(firstRow + from, batch, columns, filtered);
+        }
+
+        return filtered;
+    }
+
+    // Applies all filters to a batch of raw records column by column, and adds the records that have a value.
+    private void filterBatch(int firstRow, List<List<String>> records, int[] columns, List<List<String>> filtered) {
+
+        int count = records.size();
+        List<List<String>> batch = new ArrayList<List<String>>(count);
+        int width = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            List<String> record = records.get(i);
+
+            if (record != null && this.excludes(firstRow + i)) {
+                // No need to filter the cells of a record that is excluded as a whole.
+                record = null;
+            }
+
+            batch.add(record);
+
+            if (record != null) {
+                width = Math.max(width, record.size());
+            }
+        }
+
+        // The filtered values of every cell of the batch, or null for a column that is excluded.
+        String[][] cells = new String[width][];
+
+        for (int cell = 0; cell < width; cell++) {
+
+            int columnIndex = columns == null ? cell : columns[cell];
+
+            if (this.excludesColumn(columnIndex)) {
+                continue;
+            }
+
+            String[] values = new String[count];
+
+            for (int i = 0; i < count; i++) {
+
+                List<String> record = batch.get(i);
+
+                if (record != null && cell < record.size()) {
+                    values[i] = record.get(cell);
+                }
+            }
+
+            for (Filter filter : this.values) {
+
+                if (filter instanceof BatchFilter) {
+                    ((BatchFilter) filter).apply(firstRow, columnIndex, values, count);
+                    continue;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    if (values[i] != null) {
+                        values[i] = filter.apply(firstRow + i, columnIndex, values[i]);
+                    }
+                }
+            }
+
+            cells[cell] = values;
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            List<String> record = batch.get(i);
+
+            if (record == null) {
+                continue;
+            }
+
+            List<String> row = new ArrayList<String>(record.size());
+            boolean hasValue = false;
+
+            for (int cell = 0; cell < record.size(); cell++) {
+
+                String value = cells[cell] == null ? null : cells[cell][i];
+
+                if (value != null) {
+
+                    row.add(value);
+
+                    // There is at least one cell with a value in it.
+                    hasValue |= !value.isEmpty();
+                }
+            }
+
+            if (hasValue) {
+                filtered.add(row);
+            }
+        }
+    }
+
+    /**
+     * Sorted, disjoint ranges of indexes.
+     */
+    private static final class Ranges {
+
+        // The (inclusive) start of every range, in ascending order.
+        private final long[] froms;
+
+        // The (exclusive) end of every range.
+        private final long[] tos;
+
+        // Merges the (overlapping or adjacent) ranges {from, to}.
+        Ranges(List<long[]> ranges) {
+
+            long[][] sorted = ranges.toArray(new long[ranges.size()][]);
+
+            Arrays.sort(sorted, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+                }
+            });
+
+            long[] froms = new long[sorted.length];
+            long[] tos = new long[sorted.length];
+            int count = 0;
+
+            for (long[] range : sorted) {
+                if (count > 0 && range[0] <= tos[count - 1]) {
+                    tos[count - 1] = Math.max(tos[count - 1], range[1]);
+                }
+                else {
+                    froms[count] = range[0];
+                    tos[count] = range[1];
+                    count++;
+                }
+            }
+
+            this.froms = Arrays.copyOf(froms, count);
+            this.tos = Arrays.copyOf(tos, count);
+        }
+
+        // Returns true iff one of the ranges contains the index.
+        boolean contains(long index) {
+
+            if (this.froms.length == 0) {
+                return false;
+            }
+
+            int found = Arrays.binarySearch(this.froms, index);
+
+            // The last range that starts at or before the index.
+            int range = found >= 0 ? found : -found - 2;
+
+            return range >= 0 && index < this.tos[range];
+        }
+
+        // Returns whether each index up to the end of the last range (but at most maxSize) is contained.
+        boolean[] table(int maxSize) {
+
+            int size = this.tos.length == 0 ? 0 : (int) Math.max(0, Math.min(this.tos[this.tos.length - 1], maxSize));
+            boolean[] table = new boolean[size];
+
+            for (int i = 0; i < this.froms.length && this.froms[i] < size; i++) {
+                Arrays.fill(table, (int) Math.max(this.froms[i], 0), (int) Math.min(this.tos[i], size), true);
+            }
+
+            return table;
+        }
+    }
+}
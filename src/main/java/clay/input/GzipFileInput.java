@@ -0,0 +1,230 @@
+package clay.input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An {@code Input} represented as a local gzip compressed {@code File}, such as
+ * a {@code .csv.gz} file. The file is decompressed while it is tokenized: it is
+ * never decompressed to disk, nor loaded into memory as a whole.
+ *
+ * A file of multiple members that are compressed independently is read as the
+ * concatenation of all members. When every member stores its own size, as in
+ * the BGZF files written by {@code bgzip}, the members are decompressed ahead on
+ * multiple threads. Other files are decompressed on the parsing thread.
+ *
+ * Since the offsets in a decompressed file cannot be sought in the compressed
+ * file, reaching a record always reads the file from the start: an index saved
+ * by {@link #buildIndex()} is not used.
+ */
+public class GzipFileInput extends FileInput {
+
+    /**
+     * Creates a new {@code GzipFileInput} instance with default:
+     * - delimiter: {@value #DEFAULT_DELIMITER}
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the gzip compressed CSV input file.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public GzipFileInput(File file) throws FileNotFoundException, IllegalArgumentException {
+        this(file, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates a new {@code GzipFileInput} instance with default:
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the gzip compressed CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public GzipFileInput(File file, String delimiter) throws FileNotFoundException, IllegalArgumentException {
+        this(file, delimiter, DEFAULT_QUOTATION, DEFAULT_ESCAPE_QUOTATION);
+    }
+
+    /**
+     * Creates a new {@code GzipFileInput} instance with default:
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the gzip compressed CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public GzipFileInput(File file, String delimiter, String quotation, String escapeQuotation)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, DEFAULT_RECORD_END);
+    }
+
+    /**
+     * Creates a new {@code GzipFileInput} instance with default:
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the gzip compressed CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public GzipFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, recordEnd, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new {@code GzipFileInput} instance.
+     *
+     * @param file
+     *         the gzip compressed CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     * @param charset
+     *         the charset with which the decompressed file is decoded.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public GzipFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                         Charset charset) throws FileNotFoundException, IllegalArgumentException {
+
+        super(file, delimiter, quotation, escapeQuotation, recordEnd, charset);
+    }
+
+    /**
+     * Opens a buffered reader that decodes the decompressed bytes of the file.
+     *
+     * @return a new reader from which the CSV input is tokenized.
+     *
+     * @throws IOException
+     *         when the file could not be opened, or is not a gzip file.
+     */
+    @Override
+    protected Reader openReader() throws IOException {
+
+        CharsetDecoder decoder = this.charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        return Channels.newReader(this.openChannel(), decoder, Tokenizer.WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a tokenizer that works on the decompressed bytes of the file when
+     * possible, else one that tokenizes the chars of the reader returned by
+     * {@link #openReader()}.
+     *
+     * @return a new tokenizer that reads the raw records of the file.
+     *
+     * @throws IOException
+     *         when the file could not be opened, or is not a gzip file.
+     */
+    @Override
+    Tokenizer openTokenizer() throws IOException {
+
+        if (!ByteTokenizer.supports(this.charset, this.delimiter, this.quotation, this.escapeQuotation,
+                this.recordEnd)) {
+            return this.tokenizer(this.openReader());
+        }
+
+        return ByteTokenizer.forChannel(this.openChannel(), Tokenizer.WINDOW_SIZE, this.charset, this.delimiter,
+                this.quotation, this.escapeQuotation, this.recordEnd);
+    }
+
+    /**
+     * Opens a tokenizer positioned at the start of a raw record, by skipping all
+     * records before it.
+     *
+     * @param record
+     *         the index of the raw record.
+     *
+     * @return a new tokenizer positioned at the start of the raw record.
+     *
+     * @throws IOException
+     *         when the file could not be opened, or is not a gzip file.
+     */
+    @Override
+    Tokenizer openTokenizer(long record) throws IOException {
+        return skip(this.openTokenizer(), record);
+    }
+
+    // Opens a channel of the decompressed bytes of the file.
+    private ReadableByteChannel openChannel() throws IOException {
+
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        try {
+            long[] members = ParallelGzipChannel.members(channel);
+
+            if (members != null) {
+                return new ParallelGzipChannel(channel, members, Runtime.getRuntime().availableProcessors(),
+                        ParallelGzipChannel.DEFAULT_BATCH_SIZE);
+            }
+
+            channel.position(0);
+
+            return Channels.newChannel(new GZIPInputStream(Channels.newInputStream(channel), Tokenizer.WINDOW_SIZE));
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package clay.input;
+
+import java.util.Arrays;
+
+/**
+ * Creates the strings of the cells of an input, returning the same instance for
+ * all cells in a column that have the same chars. Every column has a dictionary
+ * of its own (see {@link Dictionary}), in which the raw chars of a cell are looked
+ * up, so that looking up a value that was seen before does not allocate.
+ *
+ * A column that turns out to have more distinct values than the cardinality the
+ * interner was created with is not interned any further: its dictionary is
+ * dropped, and a new string is created for each of its cells.
+ */
+final class Interner {
+
+    // The dictionary of every column that has too many distinct values to be interned.
+    private static final Dictionary HIGH_CARDINALITY = new Dictionary();
+
+    // The maximum number of distinct values of a column that is interned.
+    private final int cardinality;
+
+    // The dictionary of every column, or null for a column that has not had a cell yet.
+    private Dictionary[] dictionaries;
+
+    /**
+     * Creates a new interner.
+     *
+     * @param cardinality
+     *         the maximum number of distinct values of a column that is interned.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code cardinality} is not positive.
+     */
+    Interner(int cardinality) throws IllegalArgumentException {
+
+        if (cardinality < 1) {
+            throw new IllegalArgumentException("cardinality < 1");
+        }
+
+        this.cardinality = cardinality;
+        this.dictionaries = new Dictionary[16];
+    }
+
+    /**
+     * Returns the string of a cell: the same instance as before for a column in
+     * which a cell with the same chars was interned already.
+     *
+     * @param column
+     *         the index of the column of the cell.
+     * @param chars
+     *         the array holding the chars of the cell.
+     * @param offset
+     *         the index in the array of the first char of the cell.
+     * @param length
+     *         the number of chars of the cell.
+     *
+     * @return the string of the cell.
+     */
+    String intern(int column, char[] chars, int offset, int length) {
+
+        if (column >= this.dictionaries.length) {
+            this.dictionaries = Arrays.copyOf(this.dictionaries, Math.max(this.dictionaries.length * 2, column + 1));
+        }
+
+        Dictionary dictionary = this.dictionaries[column];
+
+        if (dictionary == null) {
+            dictionary = new Dictionary();
+            this.dictionaries[column] = dictionary;
+        }
+        else if (dictionary == HIGH_CARDINALITY) {
+            // Not worth interning.
+            return new String(chars, offset, length);
+        }
+
+        int code = dictionary.find(chars, offset, length);
+
+        if (code >= 0) {
+            return dictionary.value(code);
+        }
+
+        String value = new String(chars, offset, length);
+
+        if (dictionary.size() == this.cardinality) {
+            // A high cardinality column: stop interning it, and let go of its values.
+            this.dictionaries[column] = HIGH_CARDINALITY;
+            return value;
+        }
+
+        dictionary.add(value);
+
+        return value;
+    }
+
+    /**
+     * Returns {@code true} iff the cells of a column are (still) interned: it has
+     * not had more distinct values than the cardinality of this interner.
+     *
+     * @param column
+     *         the index of the column.
+     *
+     * @return {@code true} iff the cells of the column are interned.
+     */
+    boolean interns(int column) {
+        return column >= this.dictionaries.length || this.dictionaries[column] != HIGH_CARDINALITY;
+    }
+}
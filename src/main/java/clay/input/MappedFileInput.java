@@ -0,0 +1,193 @@
+package clay.input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@code Input} represented as a local {@code File} that is memory mapped
+ * instead of read through a channel.
+ *
+ * The file is mapped (in segments, for files that are larger than a segment)
+ * and decoded straight from the OS page cache: parsing a file that was recently
+ * read costs (almost) no I/O, and its bytes are never copied onto the Java heap.
+ * This makes this input well suited for very large files that are parsed more
+ * than once. When the bytes of the file can be tokenized without decoding them
+ * (see {@link FileInput}), they are tokenized straight from the mapped segments.
+ */
+public class MappedFileInput extends FileInput {
+
+    /**
+     * Creates a new {@code MappedFileInput} instance with default:
+     * - delimiter: {@value #DEFAULT_DELIMITER}
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public MappedFileInput(File file) throws FileNotFoundException, IllegalArgumentException {
+        this(file, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates a new {@code MappedFileInput} instance with default:
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public MappedFileInput(File file, String delimiter) throws FileNotFoundException, IllegalArgumentException {
+        this(file, delimiter, DEFAULT_QUOTATION, DEFAULT_ESCAPE_QUOTATION);
+    }
+
+    /**
+     * Creates a new {@code MappedFileInput} instance with default:
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public MappedFileInput(File file, String delimiter, String quotation, String escapeQuotation)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, DEFAULT_RECORD_END);
+    }
+
+    /**
+     * Creates a new {@code MappedFileInput} instance with default:
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public MappedFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, recordEnd, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new {@code MappedFileInput} instance.
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     * @param charset
+     *         the charset with which the file is decoded.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public MappedFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                           Charset charset) throws FileNotFoundException, IllegalArgumentException {
+
+        super(file, delimiter, quotation, escapeQuotation, recordEnd, charset);
+    }
+
+    /**
+     * Opens a reader that decodes the file from memory mapped segments of it.
+     *
+     * @return a new reader from which the CSV input is tokenized.
+     *
+     * @throws IOException
+     *         when the file could not be opened or mapped.
+     */
+    @Override
+    protected Reader openReader() throws IOException {
+
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        try {
+            return new MappedFileReader(channel, this.charset, MappedFileReader.SEGMENT_SIZE);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a tokenizer that works on the raw bytes of the mapped file when possible,
+     * else one that tokenizes the chars of the reader returned by {@link #openReader()}.
+     *
+     * @return a new tokenizer that reads the raw records of the file.
+     *
+     * @throws IOException
+     *         when the file could not be opened.
+     */
+    @Override
+    Tokenizer openTokenizer() throws IOException {
+
+        if (!ByteTokenizer.supports(this.charset, this.delimiter, this.quotation, this.escapeQuotation,
+                this.recordEnd)) {
+            return this.tokenizer(this.openReader());
+        }
+
+        FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+        try {
+            return ByteTokenizer.forMappedFile(channel, MappedFileReader.SEGMENT_SIZE, this.charset, this.delimiter,
+                    this.quotation, this.escapeQuotation, this.recordEnd);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package clay.input;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A reader that decodes a file straight from memory mapped segments of it. The
+ * bytes of the file are never copied onto the Java heap: they are decoded from
+ * the OS page cache into a small buffer of chars. Files larger than a single
+ * segment (which can at most be 2 GB) are mapped one segment at a time.
+ */
+class MappedFileReader extends Reader {
+
+    /**
+     * The default number of bytes of a file that are mapped at once: {@value}
+     */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    // The channel of the file that is being mapped.
+    private final FileChannel channel;
+
+    // The size of the file.
+    private final long size;
+
+    // The (maximum) number of bytes that are mapped at once.
+    private final long segmentSize;
+
+    // Decodes the mapped bytes to chars.
+    private final CharsetDecoder decoder;
+
+    // The decoded chars that have not been read yet.
+    private final CharBuffer chars;
+
+    // The currently mapped segment of the file.
+    private ByteBuffer segment;
+
+    // The position in the file where the currently mapped segment starts.
+    private long segmentStart;
+
+    // Becomes true once the decoder has been flushed at the end of the file.
+    private boolean flushed;
+
+    /**
+     * Creates a new reader that maps segments of the file of the {@code channel}.
+     *
+     * @param channel
+     *         the channel of the file to read. It is closed when this reader is closed.
+     * @param charset
+     *         the charset with which the file is decoded.
+     * @param segmentSize
+     *         the (maximum) number of bytes that are mapped at once.
+     *
+     * @throws IOException
+     *         when the file could not be mapped.
+     */
+    MappedFileReader(FileChannel channel, Charset charset, long segmentSize) throws IOException {
+
+        if (segmentSize < 16 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentSize must be between 16 and " + Integer.MAX_VALUE);
+        }
+
+        this.channel = channel;
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(Tokenizer.WINDOW_SIZE);
+        this.chars.flip();
+        this.flushed = false;
+
+        this.map(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!this.chars.hasRemaining() && !this.fill()) {
+            return -1;
+        }
+
+        int count = Math.min(length, this.chars.remaining());
+        this.chars.get(buffer, offset, count);
+
+        return count;
+    }
+
+    /**
+     * Closes the channel of the file. Note that the segment that is currently
+     * mapped is only unmapped once it is garbage collected.
+     *
+     * @throws IOException
+     *         when the channel could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.segment = ByteBuffer.allocate(0);
+        this.channel.close();
+    }
+
+    // Decodes the next chars from the mapped segment(s), returning false when the
+    // end of the file has been reached.
+    private boolean fill() throws IOException {
+
+        this.chars.clear();
+
+        while (this.chars.position() == 0 && !this.flushed) {
+
+            boolean last = this.segmentStart + this.segment.limit() == this.size;
+            CoderResult result = this.decoder.decode(this.segment, this.chars, last);
+
+            if (result.isError()) {
+                result.throwException();
+            }
+
+            if (this.chars.position() > 0) {
+                break;
+            }
+
+            if (last) {
+                this.decoder.flush(this.chars);
+                this.flushed = true;
+            }
+            else {
+                // Map the next segment, starting at the first byte that has not been
+                // decoded yet: this could be (part of) a char split by the segment end.
+                this.map(this.segmentStart + this.segment.position());
+            }
+        }
+
+        this.chars.flip();
+
+        return this.chars.hasRemaining();
+    }
+
+    // Maps the segment of the file that starts at the given position.
+    private void map(long position) throws IOException {
+        this.segmentStart = position;
+        this.segment = this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+                Math.min(this.segmentSize, this.size - position));
+    }
+}
@@ -0,0 +1,380 @@
+package clay.input;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A channel that reads the decompressed bytes of a gzip file of which the
+ * members are decompressed in parallel.
+ *
+ * Decompressing a member can only start once it is known where the member
+ * starts. A plain multi-member file only reveals that by decompressing the
+ * member before it, but a BGZF file (as written by {@code bgzip}) stores the
+ * size of every member in its header. The members of such a file are grouped
+ * into batches that are decompressed ahead on multiple threads, and the
+ * batches are returned in order.
+ */
+final class ParallelGzipChannel implements ReadableByteChannel {
+
+    /**
+     * The default (minimum) number of compressed bytes that are decompressed by a single task: {@value}
+     */
+    static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+
+    /**
+     * The number of batches per thread that are decompressed ahead: {@value}
+     */
+    static final int BATCHES_PER_THREAD = 2;
+
+    // The first bytes of every gzip member: the magic number and the deflate method.
+    private static final int ID1 = 0x1F;
+    private static final int ID2 = 0x8B;
+    private static final int DEFLATE = 8;
+
+    // The flags in the header of a gzip member.
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    // The gzip file.
+    private final FileChannel file;
+
+    // The offset of the first member of every batch, followed by the size of the file.
+    private final long[] batches;
+
+    // Decompresses the batches.
+    private final ForkJoinPool pool;
+
+    // The batches that are being decompressed, in order.
+    private final Deque<Future<byte[]>> pending;
+
+    // The index of the next batch that will be decompressed.
+    private int next;
+
+    // The decompressed bytes of the batch that is being read.
+    private ByteBuffer current;
+
+    /**
+     * Creates a channel that decompresses the members of a BGZF file, and starts
+     * decompressing the first batches right away.
+     *
+     * @param file
+     *         the gzip file.
+     * @param members
+     *         the offsets of all members of the file, as returned by {@link #members(FileChannel)}.
+     * @param parallelism
+     *         the number of threads to decompress the members with.
+     * @param batchSize
+     *         the (minimum) number of compressed bytes that are decompressed by a single task.
+     *
+     * @throws IOException
+     *         when the size of the file could not be determined.
+     */
+    ParallelGzipChannel(FileChannel file, long[] members, int parallelism, int batchSize) throws IOException {
+
+        this.file = file;
+        this.batches = batches(members, file.size(), batchSize);
+        this.pool = new ForkJoinPool(parallelism);
+        this.pending = new ArrayDeque<Future<byte[]>>();
+        this.next = 0;
+        this.current = ByteBuffer.allocate(0);
+
+        for (int i = 0; i < parallelism * BATCHES_PER_THREAD; i++) {
+            this.submit();
+        }
+    }
+
+    /**
+     * Returns the offsets of all members of a BGZF file: every member must have
+     * a {@code BC} subfield in its extra field that holds its size.
+     *
+     * @param file
+     *         the gzip file.
+     *
+     * @return the offsets of all members of the file, or {@code null} when the
+     * file is not a BGZF file.
+     *
+     * @throws IOException
+     *         when the file could not be read.
+     */
+    static long[] members(FileChannel file) throws IOException {
+
+        long size = file.size();
+        long[] members = new long[64];
+        int count = 0;
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (offset < size) {
+
+            header.clear();
+
+            if (!readFully(file, header, offset) || (header.get(0) & 0xFF) != ID1 ||
+                    (header.get(1) & 0xFF) != ID2 || header.get(2) != DEFLATE || (header.get(3) & FEXTRA) == 0) {
+                return null;
+            }
+
+            ByteBuffer extra = ByteBuffer.allocate(header.getShort(10) & 0xFFFF).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (!readFully(file, extra, offset + 12)) {
+                return null;
+            }
+
+            long blockSize = -1;
+
+            // The subfields of the extra field: SI1, SI2, LEN and LEN bytes of data.
+            for (int i = 0; i + 4 <= extra.capacity(); i += 4 + (extra.getShort(i + 2) & 0xFFFF)) {
+                if (extra.get(i) == 'B' && extra.get(i + 1) == 'C' && extra.getShort(i + 2) == 2 &&
+                        i + 6 <= extra.capacity()) {
+                    blockSize = (extra.getShort(i + 4) & 0xFFFF) + 1;
+                }
+            }
+
+            if (blockSize < 0) {
+                return null;
+            }
+
+            if (count == members.length) {
+                members = Arrays.copyOf(members, count * 2);
+            }
+
+            members[count++] = offset;
+            offset += blockSize;
+        }
+
+        return offset == size ? Arrays.copyOf(members, count) : null;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+
+        if (!this.file.isOpen()) {
+            throw new ClosedChannelException();
+        }
+
+        int transferred = 0;
+
+        while (destination.hasRemaining()) {
+
+            if (!this.current.hasRemaining()) {
+
+                if (this.pending.isEmpty()) {
+                    break;
+                }
+
+                this.current = ByteBuffer.wrap(this.await(this.pending.removeFirst()));
+                this.submit();
+                continue;
+            }
+
+            int count = Math.min(this.current.remaining(), destination.remaining());
+            int limit = this.current.limit();
+
+            this.current.limit(this.current.position() + count);
+            destination.put(this.current);
+            this.current.limit(limit);
+            transferred += count;
+        }
+
+        return transferred == 0 && this.pending.isEmpty() && !this.current.hasRemaining() ? -1 : transferred;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.file.isOpen();
+    }
+
+    /**
+     * Stops decompressing and closes the file.
+     *
+     * @throws IOException
+     *         when the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.pool.shutdownNow();
+        this.file.close();
+    }
+
+    // Groups the members into batches of at least batchSize compressed bytes.
+    private static long[] batches(long[] members, long size, int batchSize) {
+
+        long[] batches = new long[members.length + 1];
+        int count = 0;
+
+        for (long member : members) {
+            if (count == 0 || member - batches[count - 1] >= batchSize) {
+                batches[count++] = member;
+            }
+        }
+
+        batches[count++] = size;
+
+        return Arrays.copyOf(batches, count);
+    }
+
+    // Starts decompressing the next batch, if there is one.
+    private void submit() {
+
+        if (this.next + 1 >= this.batches.length) {
+            return;
+        }
+
+        final long start = this.batches[this.next];
+        final long end = this.batches[this.next + 1];
+
+        this.next++;
+        this.pending.addLast(this.pool.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return inflate(start, end);
+            }
+        }));
+    }
+
+    // Waits for a batch to be decompressed.
+    private byte[] await(Future<byte[]> batch) throws IOException {
+        try {
+            return batch.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while decompressing the file");
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() :
+                    new IOException("could not decompress the file", e.getCause());
+        }
+    }
+
+    // Decompresses all members between two offsets in the file.
+    private byte[] inflate(long start, long end) throws IOException {
+
+        ByteBuffer compressed = ByteBuffer.allocate((int) (end - start)).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (!readFully(this.file, compressed, start)) {
+            throw new IOException("unexpected end of the gzip file");
+        }
+
+        byte[] bytes = compressed.array();
+        byte[] output = new byte[bytes.length * 4];
+        int size = 0;
+        int offset = 0;
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+
+        try {
+            while (offset < bytes.length) {
+
+                offset = skipHeader(compressed, offset);
+
+                // The trailer of a member holds the CRC32 and the size of its decompressed bytes.
+                inflater.reset();
+                inflater.setInput(bytes, offset, bytes.length - offset);
+
+                int memberStart = size;
+
+                while (!inflater.finished()) {
+
+                    if (size == output.length) {
+                        output = Arrays.copyOf(output, output.length * 2);
+                    }
+
+                    int inflated = inflater.inflate(output, size, output.length - size);
+
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("unexpected end of a gzip member");
+                    }
+
+                    size += inflated;
+                }
+
+                offset = bytes.length - inflater.getRemaining();
+
+                if (offset + 8 > bytes.length) {
+                    throw new IOException("unexpected end of a gzip member");
+                }
+
+                crc.reset();
+                crc.update(output, memberStart, size - memberStart);
+
+                if ((int) crc.getValue() != compressed.getInt(offset) ||
+                        size - memberStart != compressed.getInt(offset + 4)) {
+                    throw new IOException("corrupt gzip member");
+                }
+
+                offset += 8;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("corrupt gzip member", e);
+        }
+        finally {
+            inflater.end();
+        }
+
+        return Arrays.copyOf(output, size);
+    }
+
+    // Returns the offset of the compressed data of the member with a header at the given offset.
+    private static int skipHeader(ByteBuffer bytes, int offset) throws IOException {
+
+        if (offset + 10 > bytes.limit() || (bytes.get(offset) & 0xFF) != ID1 ||
+                (bytes.get(offset + 1) & 0xFF) != ID2 || bytes.get(offset + 2) != DEFLATE) {
+            throw new IOException("not a gzip member");
+        }
+
+        int flags = bytes.get(offset + 3);
+        int position = offset + 10;
+
+        if ((flags & FEXTRA) != 0) {
+            position += 2 + (bytes.getShort(position) & 0xFFFF);
+        }
+
+        if ((flags & FNAME) != 0) {
+            while (bytes.get(position++) != 0) {
+                // Skip the zero terminated file name.
+            }
+        }
+
+        if ((flags & FCOMMENT) != 0) {
+            while (bytes.get(position++) != 0) {
+                // Skip the zero terminated comment.
+            }
+        }
+
+        if ((flags & FHCRC) != 0) {
+            position += 2;
+        }
+
+        return position;
+    }
+
+    // Reads bytes at a position in the file until the buffer is full: returns false at the end of the file.
+    private static boolean readFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
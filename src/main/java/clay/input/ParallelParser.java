@@ -0,0 +1,442 @@
+package clay.input;
+
+import clay.filter.Filter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a CSV input on multiple threads.
+ *
+ * The input is split into chunks that each start right after a record end. Such
+ * a position need not be the start of a record: the record end could be part of
+ * a quoted cell. All chunks are therefore tokenized speculatively (in parallel),
+ * each one up to the first record that starts at or after the start of the next
+ * chunk. Since tokenizing is deterministic, a chunk was tokenized correctly iff
+ * the previous chunk ended exactly where this chunk started: the (rare) chunks
+ * for which this does not hold are tokenized again (in parallel), from where
+ * the previous chunk ended. Once all raw records are known, the global index of every
+ * record is known as well, and the filters are applied (in parallel) per chunk.
+ */
+class ParallelParser {
+
+    /**
+     * The minimum number of chars of a chunk: {@value}
+     */
+    static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The number of chunks per thread, to even out chunks that take longer: {@value}
+     */
+    static final int CHUNKS_PER_THREAD = 4;
+
+    // The actual CSV input string.
+    private final String input;
+
+    // The delimiter that separate the CSV data cells.
+    private final String delimiter;
+
+    // The substring that denotes the quotation of a CSV cell.
+    private final String quotation;
+
+    // The substring that denotes the escape of a quotation of a CSV cell.
+    private final String escapeQuotation;
+
+    // The substring that denotes the end of a CSV record.
+    private final String recordEnd;
+
+    // The filters that will be applied (in order!) to all the data cells.
+    private final FilterPlan filters;
+
+    // The (ascending) indexes of the selected columns, or null when all columns are selected.
+    private final int[] columns;
+
+    // The conditions that the raw cells of a record must meet for the record to be kept.
+    private final Condition[] conditions;
+
+    // The maximum number of distinct values of a column that is interned, or 0 to not intern any strings.
+    private final int cardinality;
+
+    // The number of threads to parse the input with.
+    private final int parallelism;
+
+    // The minimum number of chars of a chunk.
+    private final int minChunkSize;
+
+    /**
+     * Creates a new parallel parser.
+     *
+     * @param input
+     *         the actual CSV input string.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     * @param filters
+     *         the filters that will be applied (in order!) to all the data cells.
+     *         Note that these filters are invoked from multiple threads.
+     * @param columns
+     *         the (ascending) indexes of the selected columns, or {@code null} when
+     *         all columns are selected.
+     * @param conditions
+     *         the conditions that the raw cells of a record must meet for the record
+     *         to be kept. Note that these are invoked from multiple threads too.
+     * @param cardinality
+     *         the maximum number of distinct values of a column of which the strings
+     *         are interned (per chunk), or 0 to not intern any strings.
+     * @param parallelism
+     *         the number of threads to parse the input with.
+     * @param minChunkSize
+     *         the minimum number of chars of a chunk.
+     */
+    ParallelParser(String input, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                   Collection<Filter> filters, int[] columns, Condition[] conditions, int cardinality,
+                   int parallelism, int minChunkSize) {
+
+        this.input = input;
+        this.delimiter = delimiter;
+        this.quotation = quotation;
+        this.escapeQuotation = escapeQuotation;
+        this.recordEnd = recordEnd;
+        this.filters = new FilterPlan(filters);
+        this.columns = columns;
+        this.conditions = conditions;
+        this.cardinality = cardinality;
+        this.parallelism = parallelism;
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
+
+    /**
+     * Parses the input into a 2D list of strings, ignoring any empty records.
+     *
+     * @return the parsed records, in the order they appear in the input.
+     *
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    List<List<String>> parse() {
+
+        List<Integer> starts = this.chunkStarts();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+
+        try {
+            // Phase 1: tokenize all chunks speculatively.
+            List<Callable<Chunk>> tokenizeTasks = new ArrayList<Callable<Chunk>>();
+
+            for (int i = 0; i < starts.size(); i++) {
+
+                final int start = starts.get(i);
+                final int end = i + 1 < starts.size() ? starts.get(i + 1) : this.input.length();
+
+                // Do not let a wrong speculation run past the start of the chunk after the next one.
+                final int cap = i + 2 < starts.size() ? starts.get(i + 2) : this.input.length();
+
+                tokenizeTasks.add(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() throws IOException {
+                        return tokenize(start, end, cap, true);
+                    }
+                });
+            }
+
+            List<Chunk> chunks = join(pool.invokeAll(tokenizeTasks));
+
+            // Phase 2: check the speculations in order. The first mispredicted chunk is tokenized again from where
+            // the previous chunk really ended, and at the same time, every later chunk that did not start where its
+            // predecessor ended is tokenized again from there: in all likelihood, that predecessor is right by now.
+            int resolved = 0;
+            int position = 0;
+
+            while (true) {
+
+                while (resolved < chunks.size() && chunks.get(resolved).valid &&
+                        chunks.get(resolved).start == position) {
+                    position = chunks.get(resolved++).position;
+                }
+
+                if (resolved == chunks.size()) {
+                    break;
+                }
+
+                List<Integer> indexes = new ArrayList<Integer>();
+                List<Callable<Chunk>> retokenizeTasks = new ArrayList<Callable<Chunk>>();
+
+                for (int i = resolved; i < chunks.size(); i++) {
+
+                    Chunk previous = i == resolved ? null : chunks.get(i - 1);
+
+                    if (previous != null && (!previous.valid || previous.position == chunks.get(i).start)) {
+                        continue;
+                    }
+
+                    final int start = previous == null ? position : previous.position;
+                    final int end = chunks.get(i).end;
+                    final int cap = previous == null || i + 1 == chunks.size() ? this.input.length() :
+                            chunks.get(i + 1).end;
+                    final boolean speculative = previous != null;
+
+                    indexes.add(i);
+                    retokenizeTasks.add(new Callable<Chunk>() {
+                        @Override
+                        public Chunk call() throws IOException {
+                            return tokenize(start, end, cap, speculative);
+                        }
+                    });
+                }
+
+                List<Chunk> retokenized = join(pool.invokeAll(retokenizeTasks));
+
+                for (int i = 0; i < indexes.size(); i++) {
+                    chunks.set(indexes.get(i), retokenized.get(i));
+                }
+            }
+
+            int rowIndex = 0;
+
+            for (Chunk chunk : chunks) {
+                chunk.rowIndex = rowIndex;
+                rowIndex += chunk.records.size();
+            }
+
+            // Phase 3: now that the global row indexes are known, apply the filters.
+            List<Callable<List<List<String>>>> filterTasks = new ArrayList<Callable<List<List<String>>>>();
+
+            for (final Chunk chunk : chunks) {
+                filterTasks.add(new Callable<List<List<String>>>() {
+                    @Override
+                    public List<List<String>> call() {
+                        return filter(chunk);
+                    }
+                });
+            }
+
+            List<List<String>> records = new ArrayList<List<String>>();
+
+            for (List<List<String>> chunkRecords : join(pool.invokeAll(filterTasks))) {
+                records.addAll(chunkRecords);
+            }
+
+            return records;
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while parsing the input", e);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // Returns the candidate start positions of all chunks: the first one is always 0,
+    // the others are positions right after a record end.
+    private List<Integer> chunkStarts() {
+
+        int length = this.input.length();
+        int count = Math.max(1, Math.min(this.parallelism * CHUNKS_PER_THREAD, length / this.minChunkSize));
+
+        List<Integer> starts = new ArrayList<Integer>();
+        starts.add(0);
+
+        for (int i = 1; i < count; i++) {
+
+            long nominal = ((long) i * length) / count;
+            int index = this.input.indexOf(this.recordEnd, Math.max((int) nominal, starts.get(starts.size() - 1)));
+
+            if (index < 0) {
+                break;
+            }
+
+            int start = index + this.recordEnd.length();
+
+            if (start > starts.get(starts.size() - 1) && start < length) {
+                starts.add(start);
+            }
+        }
+
+        return starts;
+    }
+
+    // Tokenizes the records from `start` up to the first record that starts at or after `end`,
+    // reading no further than `cap`. When speculating, `start` might not be the start of a record.
+    private Chunk tokenize(int start, int end, int cap, boolean speculative) throws IOException {
+
+        Chunk chunk = new Chunk(start, end);
+
+        Tokenizer tokenizer = Tokenizer.create(new RangeReader(this.input, start, cap), this.delimiter,
+                this.quotation, this.escapeQuotation, this.recordEnd);
+
+        tokenizer.select(this.columns);
+        tokenizer.where(this.conditions);
+        tokenizer.intern(this.cardinality);
+
+        try {
+            while (start + tokenizer.position() < end) {
+
+                List<String> record = tokenizer.next();
+
+                if (record == null) {
+                    break;
+                }
+
+                // A record that failed one of the conditions is kept as null, to keep counting the row indexes.
+                chunk.records.add(tokenizer.rejected() ? null : record);
+            }
+
+            chunk.position = (int) (start + tokenizer.position());
+
+            // A chunk that reached the cap (and not the real end of the input) could have a truncated last record.
+            chunk.valid = cap == this.input.length() || chunk.position < cap;
+        }
+        catch (RuntimeException e) {
+
+            if (!speculative) {
+                // The input really is malformed.
+                throw e;
+            }
+
+            chunk.valid = false;
+        }
+        finally {
+            tokenizer.close();
+        }
+
+        return chunk;
+    }
+
+    // Applies the filters to the raw records of a chunk.
+    private List<List<String>> filter(Chunk chunk) {
+
+        if (this.filters.batched) {
+            return this.filters.filter(chunk.rowIndex, chunk.records, this.columns);
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>(chunk.records.size());
+
+        for (int i = 0; i < chunk.records.size(); i++) {
+
+            List<String> record = chunk.records.get(i);
+
+            if (record == null) {
+                continue;
+            }
+
+            record = RecordIterator.filter(this.filters, this.columns, chunk.rowIndex + i, record);
+
+            if (record != null) {
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    // Waits for all futures and returns their results, unwrapping any exception.
+    private static <T> List<T> join(List<Future<T>> futures) throws IOException, InterruptedException {
+
+        List<T> results = new ArrayList<T>(futures.size());
+
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (ExecutionException e) {
+
+                Throwable cause = e.getCause();
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                throw new RuntimeException(cause);
+            }
+        }
+
+        return results;
+    }
+
+    // The raw records of a chunk of the input.
+    private static class Chunk {
+
+        // The position in the input where tokenizing this chunk started.
+        final int start;
+
+        // The position in the input where the next chunk (speculatively) starts.
+        final int end;
+
+        // The raw records that were tokenized.
+        final List<List<String>> records;
+
+        // The position in the input right after the last tokenized record.
+        int position;
+
+        // Whether the records could be tokenized without running into the cap.
+        boolean valid;
+
+        // The index of the first record of this chunk in the input.
+        int rowIndex;
+
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.records = new ArrayList<List<String>>();
+            this.position = start;
+            this.valid = false;
+        }
+    }
+
+    // A reader over a range of a string that, unlike a reader over a substring, does not copy it.
+    private static class RangeReader extends Reader {
+
+        // The string to read from.
+        private final String string;
+
+        // The index in the string right after the last char to read.
+        private final int end;
+
+        // The index in the string of the next char to read.
+        private int index;
+
+        RangeReader(String string, int start, int end) {
+            this.string = string;
+            this.index = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+
+            if (this.index >= this.end) {
+                return -1;
+            }
+
+            int count = Math.min(length, this.end - this.index);
+            this.string.getChars(this.index, this.index + count, buffer, offset);
+            this.index += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {
+            this.index = this.end;
+        }
+    }
+}
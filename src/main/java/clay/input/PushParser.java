@@ -0,0 +1,225 @@
+package clay.input;
+
+import clay.filter.Filter;
+import clay.filter.RangeFilter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Parses a CSV input by pushing its records to a {@link RecordHandler}, or by
+ * advancing a {@link RecordCursor} over them. The raw
+ * cells of every record are collected in a reused {@link RowBuffer}, after which
+ * the filters are applied to them without creating strings where possible: a
+ * {@link RangeFilter} narrows the range of a cell, and the filters that exclude
+ * rows or columns are resolved by the {@link FilterPlan}. Only other filters
+ * are passed a string of the cell.
+ */
+class PushParser {
+
+    /**
+     * The tokenizer that reads the raw records from the input.
+     */
+    final Tokenizer tokenizer;
+
+    // The filters that will be applied (in order!) to all the data cells.
+    private final FilterPlan filters;
+
+    /**
+     * Collects the raw cells of the record that is being read.
+     */
+    final RowBuffer buffer;
+
+    /**
+     * The start index in the chars of the buffer of every cell of the current record.
+     */
+    int[] starts;
+
+    /**
+     * The end index in the chars of the buffer of every cell of the current record.
+     */
+    int[] ends;
+
+    /**
+     * The number of cells of the current record.
+     */
+    int cells;
+
+    /**
+     * The index of the current record among all raw records of the input.
+     */
+    int rowIndex;
+
+    // The index of the next raw record that will be read.
+    private int nextRowIndex;
+
+    // The range of the cell that is being filtered.
+    private final int[] range;
+
+    /**
+     * Creates a new push parser.
+     *
+     * @param tokenizer
+     *         the tokenizer that reads the raw records from the input.
+     * @param filters
+     *         the filters that will be applied (in order!) to all the data cells.
+     */
+    PushParser(Tokenizer tokenizer, Collection<Filter> filters) {
+        this.tokenizer = tokenizer;
+        this.filters = new FilterPlan(filters);
+        this.buffer = new RowBuffer();
+        this.starts = new int[16];
+        this.ends = new int[16];
+        this.cells = 0;
+        this.rowIndex = -1;
+        this.nextRowIndex = 0;
+        this.range = new int[2];
+    }
+
+    /**
+     * Pushes all records to the handler, and closes the tokenizer afterwards.
+     *
+     * @param handler
+     *         the handler that receives the records.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed, or when
+     *         the handler throws one.
+     */
+    void parse(RecordHandler handler) throws IOException {
+
+        try {
+            while (this.advance()) {
+
+                char[] chars = this.buffer.chars;
+
+                handler.startRecord(this.rowIndex);
+
+                for (int i = 0; i < this.cells; i++) {
+                    handler.cell(chars, this.starts[i], this.ends[i] - this.starts[i]);
+                }
+
+                handler.endRecord();
+            }
+        }
+        finally {
+            this.tokenizer.close();
+        }
+    }
+
+    /**
+     * Reads raw records up to the next one that has a non-empty cell after applying
+     * the filters. The cells of that record are the ranges from {@link #starts} to
+     * {@link #ends} in the chars of {@link #buffer}.
+     *
+     * @return {@code true} iff there is a next record, {@code false} when the end
+     * of the input has been reached.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    boolean advance() throws IOException {
+
+        while (true) {
+
+            int rowIndex = this.nextRowIndex++;
+
+            if (this.filters.excludes(rowIndex)) {
+
+                if (!this.tokenizer.skip()) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            this.buffer.clear();
+
+            if (!this.tokenizer.next(this.buffer)) {
+                return false;
+            }
+
+            if (!this.tokenizer.rejected() && this.filter(rowIndex)) {
+                this.rowIndex = rowIndex;
+                return true;
+            }
+        }
+    }
+
+    // Applies the filters to the cells in the buffer, returning true iff any of them has a value.
+    private boolean filter(int rowIndex) {
+
+        RowBuffer buffer = this.buffer;
+        int cells = buffer.cells;
+        int kept = 0;
+        boolean hasValue = false;
+
+        if (this.starts.length < cells) {
+            this.starts = Arrays.copyOf(this.starts, Math.max(this.starts.length * 2, cells));
+            this.ends = Arrays.copyOf(this.ends, this.starts.length);
+        }
+
+        for (int cell = 0; cell < cells; cell++) {
+
+            if (this.filter(rowIndex, this.tokenizer.column(cell), buffer.start(cell), buffer.ends[cell], kept)) {
+
+                if (this.ends[kept] > this.starts[kept]) {
+                    // There is at least one cell with a value in it.
+                    hasValue = true;
+                }
+
+                kept++;
+            }
+        }
+
+        this.cells = kept;
+
+        return hasValue;
+    }
+
+    // Applies all filters to the cell from start to end in the buffer, storing its (new) range
+    // at index `kept`. Returns false if one of the filters excluded the cell.
+    private boolean filter(int rowIndex, int columnIndex, int start, int end, int kept) {
+
+        if (this.filters.excludesColumn(columnIndex)) {
+            return false;
+        }
+
+        RowBuffer buffer = this.buffer;
+        int[] range = this.range;
+
+        range[0] = start;
+        range[1] = end;
+
+        // The range filters that come first narrow the range instead of a string.
+        int first = this.filters.narrow(rowIndex, columnIndex, buffer.chars, range);
+
+        if (first < 0) {
+            return false;
+        }
+
+        if (first < this.filters.values.length) {
+
+            String value = this.filters.applyValues(first, rowIndex, columnIndex,
+                    new String(buffer.chars, range[0], range[1] - range[0]));
+
+            if (value == null) {
+                // One of the filters excluded this value.
+                return false;
+            }
+
+            range[0] = buffer.append(value);
+            range[1] = range[0] + value.length();
+        }
+
+        this.starts[kept] = range[0];
+        this.ends[kept] = range[1];
+
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package clay.input;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A channel that reads a file sequentially through a ring of direct buffers,
+ * each of which is filled by an asynchronous read that is issued well before
+ * its bytes are needed. While the bytes of one buffer are being tokenized, the
+ * reads of the next buffers are in progress: the time spent waiting for the
+ * storage overlaps with the time spent tokenizing.
+ */
+final class ReadAheadChannel implements ReadableByteChannel {
+
+    /**
+     * The default number of buffers in the ring: {@value}
+     */
+    static final int DEFAULT_BUFFER_COUNT = 4;
+
+    /**
+     * The default number of bytes of every buffer in the ring: {@value}
+     */
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    // The file that is read.
+    private final AsynchronousFileChannel file;
+
+    // The ring of buffers that are filled ahead.
+    private final ByteBuffer[] buffers;
+
+    // The pending (or completed) read of every buffer in the ring.
+    private final Future<?>[] reads;
+
+    // The position in the file of the first byte of every buffer in the ring.
+    private final long[] positions;
+
+    // The index in the ring of the buffer from which bytes are read now.
+    private int current;
+
+    // Whether the buffer from which bytes are read now has been filled, and flipped.
+    private boolean filled;
+
+    // The position in the file of the next read that will be issued.
+    private long next;
+
+    // Whether the end of the file has been reached.
+    private boolean eof;
+
+    /**
+     * Creates a channel that reads a file from its start, and issues the reads
+     * of all buffers in the ring right away.
+     *
+     * @param file
+     *         the file to read.
+     * @param bufferCount
+     *         the number of buffers in the ring.
+     * @param bufferSize
+     *         the number of bytes of every buffer in the ring.
+     *
+     * @throws IllegalArgumentException
+     *         when {@code bufferCount} or {@code bufferSize} is not positive.
+     */
+    ReadAheadChannel(AsynchronousFileChannel file, int bufferCount, int bufferSize) throws IllegalArgumentException {
+
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("bufferCount < 1");
+        }
+
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize < 1");
+        }
+
+        this.file = file;
+        this.buffers = new ByteBuffer[bufferCount];
+        this.reads = new Future<?>[bufferCount];
+        this.positions = new long[bufferCount];
+        this.current = 0;
+        this.filled = false;
+        this.next = 0;
+        this.eof = false;
+
+        for (int i = 0; i < bufferCount; i++) {
+            this.buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+            this.issue(i);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+
+        if (!this.file.isOpen()) {
+            throw new ClosedChannelException();
+        }
+
+        int transferred = 0;
+
+        while (destination.hasRemaining() && !this.eof) {
+
+            ByteBuffer buffer = this.buffers[this.current];
+
+            if (!this.filled) {
+                this.fill(this.current);
+                this.filled = true;
+
+                if (!buffer.hasRemaining()) {
+                    // Nothing was left to read.
+                    this.eof = true;
+                    break;
+                }
+            }
+
+            int count = Math.min(buffer.remaining(), destination.remaining());
+            int limit = buffer.limit();
+
+            buffer.limit(buffer.position() + count);
+            destination.put(buffer);
+            buffer.limit(limit);
+            transferred += count;
+
+            if (!buffer.hasRemaining()) {
+
+                if (limit < buffer.capacity()) {
+                    // A buffer that is not full ends at the end of the file.
+                    this.eof = true;
+                    break;
+                }
+
+                // The buffer is drained: fill it again with the bytes after the last buffer of the ring.
+                this.issue(this.current);
+                this.current = (this.current + 1) % this.buffers.length;
+                this.filled = false;
+            }
+        }
+
+        return transferred == 0 && this.eof ? -1 : transferred;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.file.isOpen();
+    }
+
+    /**
+     * Closes the file: any read that is still in progress is cancelled.
+     *
+     * @throws IOException
+     *         when the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    // Issues the read of the next bytes of the file into a buffer of the ring.
+    private void issue(int index) {
+
+        ByteBuffer buffer = this.buffers[index];
+        buffer.clear();
+
+        this.positions[index] = this.next;
+        this.reads[index] = this.file.read(buffer, this.next);
+        this.next += buffer.capacity();
+    }
+
+    // Waits for the read of a buffer to complete, reads the remainder of a short read, and flips the buffer.
+    private void fill(int index) throws IOException {
+
+        ByteBuffer buffer = this.buffers[index];
+
+        try {
+            int read = (Integer) this.reads[index].get();
+
+            // A read may return fewer bytes than requested before the end of the file.
+            while (read >= 0 && buffer.hasRemaining()) {
+                read = this.file.read(buffer, this.positions[index] + buffer.position()).get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading the file");
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() :
+                    new IOException("could not read the file", e.getCause());
+        }
+
+        buffer.flip();
+    }
+}
@@ -0,0 +1,277 @@
+package clay.input;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A tokenizer that reads the input from a {@code Reader} through a window of a
+ * fixed size, so no matter how large the input is, only a single window and the
+ * record that is being tokenized are held in memory.
+ *
+ * This tokenizer handles substrings of any length: it looks ahead for each of
+ * them at every position of the input.
+ */
+class ReaderTokenizer extends Tokenizer {
+
+    // The reader from which the CSV input is read.
+    private final Reader reader;
+
+    // The window holding the chars that are read from the input.
+    final char[] window;
+
+    // The index in the window of the next char that will be tokenized.
+    int position;
+
+    // The number of chars in the window that have been read from the input.
+    int limit;
+
+    // The number of chars of the input that have been moved out of the window.
+    private long offset;
+
+    // Becomes true once the end of the reader has been reached.
+    private boolean eof;
+
+    // A buffer for the chars of cells that cannot be passed straight from the window.
+    char[] buffer;
+
+    // The number of chars in the buffer.
+    int buffered;
+
+    /**
+     * Creates a new tokenizer that reads from a {@code Reader}.
+     *
+     * @param reader
+     *         the reader from which the CSV input is read.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     */
+    ReaderTokenizer(Reader reader, String delimiter, String quotation, String escapeQuotation, String recordEnd) {
+
+        super(delimiter, quotation, escapeQuotation, recordEnd);
+
+        this.reader = reader;
+
+        // The window must at least be able to hold the largest substring to look ahead for.
+        int lookahead = Math.max(Math.max(delimiter.length(), recordEnd.length()), this.escapedQuotation.length());
+        this.window = new char[Math.max(WINDOW_SIZE, lookahead)];
+
+        this.position = 0;
+        this.limit = 0;
+        this.offset = 0;
+        this.eof = false;
+        this.buffer = new char[64];
+        this.buffered = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean next(CellHandler handler) throws IOException {
+
+        if (!this.available(1)) {
+            return false;
+        }
+
+        this.buffered = 0;
+        this.firstColumn();
+
+        while (this.available(1)) {
+
+            if (this.ahead(this.delimiter)) {
+                this.pass(handler, this.buffer, 0, this.buffered);
+                this.buffered = 0;
+                this.position += this.delimiter.length();
+            }
+            else if (this.ahead(this.recordEnd)) {
+                this.pass(handler, this.buffer, 0, this.buffered);
+                this.position += this.recordEnd.length();
+                return true;
+            }
+            else if (this.ahead(this.quotation)) {
+
+                this.position += this.quotation.length();
+                this.buffered = 0;
+
+                while (true) {
+
+                    if (!this.available(1)) {
+                        throw this.unclosedQuote();
+                    }
+
+                    if (this.ahead(this.escapedQuotation)) {
+                        this.buffer(this.quotation);
+                        this.position += this.escapedQuotation.length();
+                    }
+                    else if (this.ahead(this.quotation)) {
+                        this.position += this.quotation.length();
+                        break;
+                    }
+                    else {
+                        this.buffer(this.window[this.position]);
+                        this.position++;
+                    }
+                }
+            }
+            else {
+                this.buffer(this.window[this.position]);
+                this.position++;
+            }
+        }
+
+        // The last record of the input need not be terminated by a record end.
+        if (this.buffered > 0) {
+            this.pass(handler, this.buffer, 0, this.buffered);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of chars of the input that have been tokenized so far.
+     *
+     * @return the number of chars of the input that have been tokenized so far.
+     */
+    @Override
+    long position() {
+        return this.offset + this.position;
+    }
+
+    /**
+     * Closes the underlying reader. After this, the tokenizer has no more records.
+     *
+     * @throws IOException
+     *         when the reader could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        this.eof = true;
+        this.position = this.limit;
+
+        this.reader.close();
+    }
+
+    /**
+     * Returns {@code true} iff there are at least {@code count} chars available in
+     * the window, reading more chars from the input if needed. Note that reading
+     * more chars can move the chars in the window that have not been tokenized yet.
+     *
+     * @param count
+     *         the number of chars that should be available.
+     *
+     * @return {@code true} iff there are at least {@code count} chars available.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     */
+    boolean available(int count) throws IOException {
+
+        while (this.limit - this.position < count && !this.eof) {
+
+            if (this.position > 0) {
+                // Move the chars that have not been tokenized yet to the start of the window.
+                System.arraycopy(this.window, this.position, this.window, 0, this.limit - this.position);
+                this.offset += this.position;
+                this.limit -= this.position;
+                this.position = 0;
+            }
+
+            int read = this.reader.read(this.window, this.limit, this.window.length - this.limit);
+
+            if (read < 0) {
+                this.eof = true;
+            }
+            else {
+                this.limit += read;
+            }
+        }
+
+        return this.limit - this.position >= count;
+    }
+
+    /**
+     * Appends the chars in the window from {@code start} (inclusive) to {@code end}
+     * (exclusive) to the buffer, unless the cell is in a column that is not selected.
+     *
+     * @param start
+     *         the index in the window of the first char to append.
+     * @param end
+     *         the index in the window right after the last char to append.
+     */
+    void buffer(int start, int end) {
+
+        if (this.skipping) {
+            return;
+        }
+
+        int length = end - start;
+
+        this.ensureBuffer(length);
+        System.arraycopy(this.window, start, this.buffer, this.buffered, length);
+        this.buffered += length;
+    }
+
+    /**
+     * Appends a single char to the buffer, unless the cell is in a column that is
+     * not selected.
+     *
+     * @param c
+     *         the char to append.
+     */
+    void buffer(char c) {
+
+        if (this.skipping) {
+            return;
+        }
+
+        this.ensureBuffer(1);
+        this.buffer[this.buffered++] = c;
+    }
+
+    // Appends all chars of a string to the buffer.
+    private void buffer(String s) {
+
+        if (this.skipping) {
+            return;
+        }
+
+        this.ensureBuffer(s.length());
+        s.getChars(0, s.length(), this.buffer, this.buffered);
+        this.buffered += s.length();
+    }
+
+    // Makes sure the buffer can hold `extra` more chars.
+    private void ensureBuffer(int extra) {
+
+        if (this.buffered + extra > this.buffer.length) {
+
+            char[] larger = new char[Math.max(this.buffer.length * 2, this.buffered + extra)];
+            System.arraycopy(this.buffer, 0, larger, 0, this.buffered);
+            this.buffer = larger;
+        }
+    }
+
+    // Returns true iff the substring is present in the input at the current position.
+    private boolean ahead(String substring) throws IOException {
+
+        if (!this.available(substring.length())) {
+            // No place for a substring: it would go beyond the end of the input.
+            return false;
+        }
+
+        for (int i = 0; i < substring.length(); i++) {
+            if (this.window[this.position + i] != substring.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,302 @@
+package clay.input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record of a CSV input that is returned by a {@link RecordCursor}. The same
+ * instance is returned for every record of the cursor: its cells change each
+ * time the cursor advances. Cells can be inspected and parsed in place, without
+ * creating a string for them: use {@link #getString(int)} or {@link #toList()}
+ * only for the cells that need to be kept.
+ */
+public final class Record {
+
+    // The parser whose current record this is.
+    private final PushParser parser;
+
+    /**
+     * Creates a view of the current record of a parser.
+     *
+     * @param parser
+     *         the parser whose current record this is.
+     */
+    Record(PushParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Returns the index of this record among all raw records of the input, which
+     * is the row index that is passed to the filters.
+     *
+     * @return the index of this record among all raw records of the input.
+     */
+    public int getRowIndex() {
+        return this.parser.rowIndex;
+    }
+
+    /**
+     * Returns the number of cells of this record.
+     *
+     * @return the number of cells of this record.
+     */
+    public int size() {
+        return this.parser.cells;
+    }
+
+    /**
+     * Returns the number of chars of a cell.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return the number of chars of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     */
+    public int getLength(int cell) throws IndexOutOfBoundsException {
+        return this.end(cell) - this.start(cell);
+    }
+
+    /**
+     * Returns {@code true} iff a cell has no chars.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return {@code true} iff the cell has no chars.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     */
+    public boolean isEmpty(int cell) throws IndexOutOfBoundsException {
+        return this.getLength(cell) == 0;
+    }
+
+    /**
+     * Returns a char of a cell.
+     *
+     * @param cell
+     *         the index of the cell.
+     * @param index
+     *         the index of the char in the cell.
+     *
+     * @return the char of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell or char.
+     */
+    public char charAt(int cell, int index) throws IndexOutOfBoundsException {
+
+        int start = this.start(cell);
+
+        if (index < 0 || index >= this.end(cell) - start) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + (this.end(cell) - start));
+        }
+
+        return this.parser.buffer.chars[start + index];
+    }
+
+    /**
+     * Copies the chars of a cell into an array.
+     *
+     * @param cell
+     *         the index of the cell.
+     * @param destination
+     *         the array to copy the chars into.
+     * @param offset
+     *         the index in the array at which the first char is copied.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell, or the chars do not fit in the array.
+     */
+    public void getChars(int cell, char[] destination, int offset) throws IndexOutOfBoundsException {
+
+        int start = this.start(cell);
+
+        System.arraycopy(this.parser.buffer.chars, start, destination, offset, this.end(cell) - start);
+    }
+
+    /**
+     * Returns {@code true} iff a cell holds the same chars as the given sequence.
+     *
+     * @param cell
+     *         the index of the cell.
+     * @param sequence
+     *         the sequence to compare the cell with.
+     *
+     * @return {@code true} iff the cell holds the same chars as the given sequence.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     */
+    public boolean contentEquals(int cell, CharSequence sequence) throws IndexOutOfBoundsException {
+
+        int start = this.start(cell);
+        int length = this.end(cell) - start;
+
+        if (sequence == null || sequence.length() != length) {
+            return false;
+        }
+
+        char[] chars = this.parser.buffer.chars;
+
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != sequence.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns a new string holding the chars of a cell.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return a new string holding the chars of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     */
+    public String getString(int cell) throws IndexOutOfBoundsException {
+
+        int start = this.start(cell);
+
+        return new String(this.parser.buffer.chars, start, this.end(cell) - start);
+    }
+
+    /**
+     * Parses a cell as a decimal {@code long}, without creating a string for it.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return the {@code long} value of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     * @throws NumberFormatException
+     *         when the cell is not a decimal {@code long}, just like {@link Long#parseLong(String)}.
+     */
+    public long getLong(int cell) throws IndexOutOfBoundsException, NumberFormatException {
+
+        char[] chars = this.parser.buffer.chars;
+        int start = this.start(cell);
+        int end = this.end(cell);
+        int index = start;
+        boolean negative = false;
+
+        if (index < end && (chars[index] == '-' || chars[index] == '+')) {
+            negative = chars[index] == '-';
+            index++;
+        }
+
+        if (index == end) {
+            throw new NumberFormatException("For input string: \"" + this.getString(cell) + "\"");
+        }
+
+        // Accumulate negatively, so that Long.MIN_VALUE does not overflow.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+
+        for (; index < end; index++) {
+
+            int digit = chars[index] - '0';
+
+            if (digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + this.getString(cell) + "\"");
+            }
+
+            value = value * 10 - digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses a cell as a decimal {@code int}, without creating a string for it.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return the {@code int} value of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     * @throws NumberFormatException
+     *         when the cell is not a decimal {@code int}, just like {@link Integer#parseInt(String)}.
+     */
+    public int getInt(int cell) throws IndexOutOfBoundsException, NumberFormatException {
+
+        long value = this.getLong(cell);
+
+        if (value != (int) value) {
+            throw new NumberFormatException("For input string: \"" + this.getString(cell) + "\"");
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a cell as a {@code double}, just like {@link Double#parseDouble(String)}.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return the {@code double} value of the cell.
+     *
+     * @throws IndexOutOfBoundsException
+     *         when there is no such cell.
+     * @throws NumberFormatException
+     *         when the cell is not a {@code double}.
+     */
+    public double getDouble(int cell) throws IndexOutOfBoundsException, NumberFormatException {
+        return Double.parseDouble(this.getString(cell));
+    }
+
+    /**
+     * Returns a new list holding a string of every cell: a copy of this record
+     * that remains valid after the cursor advances.
+     *
+     * @return a new list holding a string of every cell.
+     */
+    public List<String> toList() {
+
+        List<String> list = new ArrayList<String>(this.size());
+
+        for (int cell = 0; cell < this.size(); cell++) {
+            list.add(this.getString(cell));
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the cells of this record, formatted like a list of strings.
+     *
+     * @return the cells of this record, formatted like a list of strings.
+     */
+    @Override
+    public String toString() {
+        return this.toList().toString();
+    }
+
+    // Returns the start index of a cell in the chars of the buffer.
+    private int start(int cell) {
+
+        if (cell < 0 || cell >= this.parser.cells) {
+            throw new IndexOutOfBoundsException("cell: " + cell + ", cells: " + this.parser.cells);
+        }
+
+        return this.parser.starts[cell];
+    }
+
+    // Returns the end index of a cell in the chars of the buffer.
+    private int end(int cell) {
+        return this.parser.ends[cell];
+    }
+}
@@ -0,0 +1,113 @@
+package clay.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A cursor over the records of a CSV input that reuses a single {@link Record}
+ * for all of them: advancing the cursor creates no objects per record, nor per
+ * cell. The records are the same as {@link CSVInput#getRecords()} returns: with
+ * all filters applied, and without records that have no non-empty cell.
+ *
+ * <pre>
+ * <code>
+ * RecordCursor cursor = input.cursor();
+ *
+ * try {
+ *     for (Record record = cursor.next(); record != null; record = cursor.next()) {
+ *         total += record.getLong(2);
+ *     }
+ * }
+ * finally {
+ *     cursor.close();
+ * }
+ * </code>
+ * </pre>
+ *
+ * The underlying input is closed as soon as the end of the input is reached,
+ * or when {@link #close()} is invoked.
+ */
+public final class RecordCursor implements Closeable {
+
+    // Reads the records and applies the filters to them.
+    private final PushParser parser;
+
+    // The record that is returned for every call to next().
+    private final Record record;
+
+    // Becomes true once the input has been closed.
+    private boolean closed;
+
+    /**
+     * Creates a new cursor over the records of a parser.
+     *
+     * @param parser
+     *         the parser that reads the records.
+     */
+    RecordCursor(PushParser parser) {
+        this.parser = parser;
+        this.record = new Record(parser);
+        this.closed = false;
+    }
+
+    /**
+     * Advances this cursor to the next record. Note that the same record instance
+     * is returned every time: its cells are replaced by those of the next record.
+     *
+     * @return the next record, or {@code null} when the end of the input has
+     * been reached.
+     *
+     * @throws RuntimeException
+     *         when the input could not be read, or when the input contains a
+     *         quoted cell that is not closed.
+     */
+    public Record next() {
+
+        if (this.closed) {
+            return null;
+        }
+
+        try {
+            if (this.parser.advance()) {
+                return this.record;
+            }
+
+            this.close();
+        }
+        catch (IOException e) {
+            this.closeQuietly();
+            throw new RuntimeException("could not read the input", e);
+        }
+        catch (RuntimeException e) {
+            this.closeQuietly();
+            throw e;
+        }
+
+        return null;
+    }
+
+    /**
+     * Closes the underlying input. After this, the cursor has no more records.
+     *
+     * @throws IOException
+     *         when the input could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (!this.closed) {
+            this.closed = true;
+            this.parser.tokenizer.close();
+        }
+    }
+
+    // Closes the input without throwing an exception: used when already failing.
+    private void closeQuietly() {
+        try {
+            this.close();
+        }
+        catch (IOException ignored) {
+            // Nothing more we can do.
+        }
+    }
+}
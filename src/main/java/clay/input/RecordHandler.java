@@ -0,0 +1,71 @@
+package clay.input;
+
+/**
+ * Receives the records of a CSV input that is parsed by {@link CSVInput#parse(RecordHandler)}.
+ * For every record, {@link #startRecord(int)} is invoked first, then {@link #cell(char[], int, int)}
+ * for each of its cells, and finally {@link #endRecord()}.
+ *
+ * The records are passed exactly as {@link CSVInput#getRecords()} would return
+ * them: with all filters applied, and without records that have no non-empty
+ * cell. Since the chars of a cell are passed as a range of a reused array,
+ * parsing creates no objects per record or cell: a handler that aggregates the
+ * cells on the fly need not create any either.
+ *
+ * For example, to sum the second column of an input:
+ *
+ * <pre>
+ * <code>
+ * final long[] sum = new long[1];
+ *
+ * input.parse(new RecordHandler() {
+ *
+ *     int column;
+ *
+ *     &#64;Override
+ *     public void startRecord(int rowIndex) {
+ *         column = 0;
+ *     }
+ *
+ *     &#64;Override
+ *     public void cell(char[] chars, int offset, int length) {
+ *         if (column++ == 1) {
+ *             sum[0] += Long.parseLong(new String(chars, offset, length));
+ *         }
+ *     }
+ *
+ *     &#64;Override
+ *     public void endRecord() {
+ *     }
+ * });
+ * </code>
+ * </pre>
+ */
+public interface RecordHandler {
+
+    /**
+     * Handles the start of a record.
+     *
+     * @param rowIndex
+     *         the index of the record among all raw records of the input,
+     *         which is the row index that is passed to the filters.
+     */
+    void startRecord(int rowIndex);
+
+    /**
+     * Handles a cell of the record. The chars are only valid during this call:
+     * they are overwritten once it returns, so they must be copied to keep them.
+     *
+     * @param chars
+     *         the array holding the chars of the cell.
+     * @param offset
+     *         the index in {@code chars} of the first char of the cell.
+     * @param length
+     *         the number of chars of the cell.
+     */
+    void cell(char[] chars, int offset, int length);
+
+    /**
+     * Handles the end of a record, after all of its cells have been handled.
+     */
+    void endRecord();
+}
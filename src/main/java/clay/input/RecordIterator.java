@@ -0,0 +1,178 @@
+package clay.input;
+
+import clay.filter.Filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An iterator that parses a CSV input lazily: each call to {@link #next()}
+ * tokenizes just enough of the input to produce the next record. All filters
+ * are applied to the cells of a record before it is returned and records without
+ * any non-empty cell are skipped, just like {@link SimpleInput#getRecords()} does.
+ *
+ * The raw cells of a record are collected as chars, so that the range filters
+ * that come first narrow them before a single string is created of every cell,
+ * unless the tokenizer creates the strings straight from the input (see
+ * {@link Tokenizer#decodesStrings()}).
+ *
+ * The underlying tokenizer is closed as soon as the end of the input is reached,
+ * or when {@link #close()} is invoked.
+ */
+class RecordIterator extends TokenizerIterator<List<String>> {
+
+    // The filters that will be applied (in order!) to all the data cells.
+    private final FilterPlan filters;
+
+    // Collects the raw cells of the record that is being read.
+    private final RowBuffer buffer;
+
+    // The range of the cell that is being filtered.
+    private final int[] range;
+
+    /**
+     * Creates a new iterator over the records of a CSV input.
+     *
+     * @param tokenizer
+     *         the tokenizer that reads the raw records from the input.
+     * @param filters
+     *         the filters that will be applied (in order!) to all the data cells.
+     */
+    RecordIterator(Tokenizer tokenizer, Collection<Filter> filters) {
+
+        super(tokenizer);
+
+        // Take a snapshot so that adding or removing filters later on does not affect this iterator.
+        this.filters = new FilterPlan(filters);
+        this.buffer = new RowBuffer();
+        this.range = new int[2];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean read(int rowIndex) throws IOException {
+
+        if (this.filters.excludes(rowIndex)) {
+            // No need to create the cells of a record that is excluded as a whole.
+            return this.tokenizer.skip();
+        }
+
+        if (this.tokenizer.decodesStrings()) {
+            return this.readStrings(rowIndex);
+        }
+
+        RowBuffer buffer = this.buffer;
+        buffer.clear();
+
+        if (!this.tokenizer.next(buffer)) {
+            return false;
+        }
+
+        if (this.tokenizer.rejected()) {
+            // The record failed one of the conditions.
+            return true;
+        }
+
+        List<String> row = new ArrayList<String>(buffer.cells);
+        boolean hasValue = false;
+
+        for (int cell = 0; cell < buffer.cells; cell++) {
+
+            this.range[0] = buffer.start(cell);
+            this.range[1] = buffer.ends[cell];
+
+            // A string is only created of the chars of the cell that remain after the range filters.
+            String value = this.filters.apply(rowIndex, this.tokenizer.column(cell), buffer.chars, this.range,
+                    this.tokenizer.interner);
+
+            if (value != null) {
+
+                row.add(value);
+
+                if (!value.isEmpty()) {
+                    // There is at least one cell with a value in it.
+                    hasValue = true;
+                }
+            }
+        }
+
+        this.produce(hasValue ? row : null);
+
+        return true;
+    }
+
+    // Reads the next raw record as strings, and applies the filters to them.
+    private boolean readStrings(int rowIndex) throws IOException {
+
+        List<String> record = this.tokenizer.next();
+
+        if (record == null) {
+            return false;
+        }
+
+        if (this.tokenizer.rejected()) {
+            // The record failed one of the conditions.
+            return true;
+        }
+
+        this.produce(filter(this.filters, this.tokenizer.columns, rowIndex, record));
+
+        return true;
+    }
+
+    /**
+     * Applies all filters to the cells of a raw record.
+     *
+     * @param filters
+     *         the plan of the filters that will be applied to all the cells.
+     * @param columns
+     *         the indexes of the columns of the cells, when only the cells in these
+     *         columns were tokenized (see {@link Tokenizer#select(int[])}), or
+     *         {@code null} when the cells are in all columns.
+     * @param rowIndex
+     *         the index of the raw record in the input.
+     * @param record
+     *         the cells of the raw record.
+     *
+     * @return the cells for which none of the filters returned {@code null}, or
+     * {@code null} if none of these cells is non-empty.
+     */
+    static List<String> filter(FilterPlan filters, int[] columns, int rowIndex, List<String> record) {
+
+        if (filters.excludes(rowIndex)) {
+            return null;
+        }
+
+        List<String> row = new ArrayList<String>(record.size());
+        boolean hasValue = false;
+
+        for (int cell = 0; cell < record.size(); cell++) {
+
+            int columnIndex = columns == null ? cell : columns[cell];
+
+            if (filters.excludesColumn(columnIndex)) {
+                continue;
+            }
+
+            String value = filters.applyValues(rowIndex, columnIndex, record.get(cell));
+
+            if (value == null) {
+                // One of the filters excluded this value.
+                continue;
+            }
+
+            row.add(value);
+
+            if (!value.isEmpty()) {
+                // There is at least one cell with a value in it.
+                hasValue = true;
+            }
+        }
+
+        return hasValue ? row : null;
+    }
+}
@@ -0,0 +1,104 @@
+package clay.input;
+
+import java.util.Arrays;
+
+/**
+ * Collects the raw cells of a record that a {@link Tokenizer} passes to it into
+ * a single array of chars that is reused for all records, so that the cells can
+ * be inspected (and filtered) once the whole record is known.
+ */
+final class RowBuffer implements CellHandler {
+
+    /**
+     * The chars of all cells of the record, from index 0 up to {@link #size}.
+     */
+    char[] chars;
+
+    /**
+     * The number of chars of all cells of the record.
+     */
+    int size;
+
+    /**
+     * The end index in {@link #chars} of every cell of the record.
+     */
+    int[] ends;
+
+    /**
+     * The number of cells of the record.
+     */
+    int cells;
+
+    /**
+     * Creates a new, empty buffer.
+     */
+    RowBuffer() {
+        this.chars = new char[1024];
+        this.ends = new int[16];
+        this.clear();
+    }
+
+    /**
+     * Removes all cells, to start collecting the next record.
+     */
+    void clear() {
+        this.size = 0;
+        this.cells = 0;
+    }
+
+    /**
+     * Appends a raw cell to the cells of the record.
+     */
+    @Override
+    public void cell(char[] chars, int offset, int length) {
+
+        this.ensureChars(length);
+
+        if (this.cells == this.ends.length) {
+            this.ends = Arrays.copyOf(this.ends, this.ends.length * 2);
+        }
+
+        System.arraycopy(chars, offset, this.chars, this.size, length);
+        this.size += length;
+        this.ends[this.cells++] = this.size;
+    }
+
+    /**
+     * Returns the start index in {@link #chars} of a cell.
+     *
+     * @param cell
+     *         the index of the cell.
+     *
+     * @return the start index in {@link #chars} of the cell.
+     */
+    int start(int cell) {
+        return cell == 0 ? 0 : this.ends[cell - 1];
+    }
+
+    /**
+     * Appends chars after all cells without adding a cell, for instance to hold
+     * the value that a filter replaced a cell with.
+     *
+     * @param value
+     *         the chars to append.
+     *
+     * @return the index in {@link #chars} of the first appended char.
+     */
+    int append(String value) {
+
+        int start = this.size;
+
+        this.ensureChars(value.length());
+        value.getChars(0, value.length(), this.chars, start);
+        this.size += value.length();
+
+        return start;
+    }
+
+    // Makes sure the chars can hold `extra` more chars.
+    private void ensureChars(int extra) {
+        if (this.size + extra > this.chars.length) {
+            this.chars = Arrays.copyOf(this.chars, Math.max(this.chars.length * 2, this.size + extra));
+        }
+    }
+}
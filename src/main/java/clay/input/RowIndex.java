@@ -0,0 +1,254 @@
+package clay.input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A sparse index of where the raw records of a CSV file start: the offset of
+ * every {@code stride}-th record is kept, so that reaching any record takes a
+ * seek and skipping less than {@code stride} records. The offsets are in the
+ * units of the tokenizer that created them: bytes for a {@link ByteTokenizer},
+ * else chars.
+ *
+ * An index is saved in a sidecar file next to the CSV file. It is only valid for
+ * the file, dialect and charset it was created for: the size and modification
+ * time of the file are saved with the index, and an index that does not match
+ * them anymore is ignored.
+ */
+final class RowIndex {
+
+    /**
+     * The default number of records between two indexed records: {@value}
+     */
+    static final int DEFAULT_STRIDE = 128;
+
+    /**
+     * The extension of sidecar index files: {@value}
+     */
+    static final String EXTENSION = ".idx";
+
+    // The first bytes of an index file.
+    private static final int MAGIC = 0x434C4958;
+
+    // The version of the format of index files.
+    private static final int VERSION = 1;
+
+    // The number of records between two indexed records.
+    final int stride;
+
+    // Whether the offsets are in bytes (else in chars).
+    final boolean bytes;
+
+    // The number of raw records of the file.
+    final long recordCount;
+
+    // The offset of every stride-th record.
+    final long[] offsets;
+
+    private RowIndex(int stride, boolean bytes, long recordCount, long[] offsets) {
+        this.stride = stride;
+        this.bytes = bytes;
+        this.recordCount = recordCount;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Creates an index by skipping over all records of a tokenizer. The tokenizer
+     * is closed afterwards.
+     *
+     * @param tokenizer
+     *         the tokenizer that reads the raw records from the start of the input.
+     * @param stride
+     *         the number of records between two indexed records.
+     * @param bytes
+     *         whether the tokenizer works on bytes (else on chars).
+     *
+     * @return the index of the records of the tokenizer.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    static RowIndex build(Tokenizer tokenizer, int stride, boolean bytes) throws IOException {
+
+        long[] offsets = new long[64];
+        int count = 0;
+        long record = 0;
+
+        try {
+            while (true) {
+
+                long offset = tokenizer.position();
+
+                if (!tokenizer.skip()) {
+                    break;
+                }
+
+                if (record % stride == 0) {
+
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+
+                    offsets[count++] = offset;
+                }
+
+                record++;
+            }
+        }
+        finally {
+            tokenizer.close();
+        }
+
+        return new RowIndex(stride, bytes, record, Arrays.copyOf(offsets, count));
+    }
+
+    /**
+     * Returns the offset of the indexed record at or before a record.
+     *
+     * @param record
+     *         the index of the record.
+     *
+     * @return the offset of the indexed record at or before the record.
+     */
+    long offset(long record) {
+
+        if (this.offsets.length == 0) {
+            return 0;
+        }
+
+        return this.offsets[(int) Math.min(record / this.stride, this.offsets.length - 1)];
+    }
+
+    /**
+     * Returns the index of the indexed record at or before a record.
+     *
+     * @param record
+     *         the index of the record.
+     *
+     * @return the index of the indexed record at or before the record.
+     */
+    long indexed(long record) {
+
+        if (this.offsets.length == 0) {
+            return 0;
+        }
+
+        return Math.min(record / this.stride, this.offsets.length - 1) * this.stride;
+    }
+
+    /**
+     * Saves this index to a file, replacing it atomically when it already exists.
+     *
+     * @param indexFile
+     *         the file to save this index to.
+     * @param input
+     *         the input this index was created for.
+     * @param size
+     *         the size of the file when this index was created.
+     * @param lastModified
+     *         the modification time of the file when this index was created.
+     *
+     * @throws IOException
+     *         when the index could not be saved.
+     */
+    void write(File indexFile, FileInput input, long size, long lastModified) throws IOException {
+
+        File temporary = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeUTF(input.getDelimiter());
+            out.writeUTF(input.getQuotation());
+            out.writeUTF(input.getEscapeQuotation());
+            out.writeUTF(input.getRecordEnd());
+            out.writeUTF(input.getCharset().name());
+            out.writeBoolean(this.bytes);
+            out.writeInt(this.stride);
+            out.writeLong(this.recordCount);
+            out.writeInt(this.offsets.length);
+
+            for (long offset : this.offsets) {
+                out.writeLong(offset);
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        Files.move(temporary.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads an index from a file, if it is valid for the given input.
+     *
+     * @param indexFile
+     *         the file to load the index from.
+     * @param input
+     *         the input the index must have been created for.
+     *
+     * @return the index, or {@code null} if there is no index file, or when it
+     * is not valid (anymore) for the input.
+     */
+    static RowIndex read(File indexFile, FileInput input) {
+
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        File file = input.getFile();
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+            try {
+                boolean valid = in.readInt() == MAGIC &&
+                        in.readInt() == VERSION &&
+                        in.readLong() == file.length() &&
+                        in.readLong() == file.lastModified() &&
+                        in.readUTF().equals(input.getDelimiter()) &&
+                        in.readUTF().equals(input.getQuotation()) &&
+                        in.readUTF().equals(input.getEscapeQuotation()) &&
+                        in.readUTF().equals(input.getRecordEnd()) &&
+                        in.readUTF().equals(input.getCharset().name());
+
+                if (!valid) {
+                    return null;
+                }
+
+                boolean bytes = in.readBoolean();
+                int stride = in.readInt();
+                long recordCount = in.readLong();
+                long[] offsets = new long[in.readInt()];
+
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readLong();
+                }
+
+                return new RowIndex(stride, bytes, recordCount, offsets);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            // An unreadable (or truncated) index file is ignored.
+            return null;
+        }
+    }
+}
@@ -3,13 +3,22 @@ package clay.input;
 import clay.filter.Filter;
 import clay.filter.TrimFilter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Represents a simple CSV input backed up by a plain {@code String} which
- * this class will parse into a 2D list of strings.
+ * this class will parse into a 2D list of strings. Subclasses that do not
+ * want to keep the entire input in memory can instead provide a {@code Reader}
+ * by overriding {@link #openReader()}.
  */
 public abstract class SimpleInput implements CSVInput {
 
@@ -20,9 +29,12 @@ public abstract class SimpleInput implements CSVInput {
     protected final LinkedHashMap<Class<? extends Filter>, Filter> filters;
 
     /**
-     * The actual CSV input string.
+     * The actual CSV input string. This is {@code null} for inputs that are read
+     * through {@link #openReader()} (such as all file inputs) until {@link #getInput()}
+     * is first called, which is why this is not {@code final}: subclasses should
+     * call {@link #getInput()} rather than read this field.
      */
-    protected final String input;
+    protected String input;
 
     /**
      * The input string parsed into a 2D list of strings.
@@ -49,6 +61,23 @@ public abstract class SimpleInput implements CSVInput {
      */
     protected final String recordEnd;
 
+    /**
+     * The number of threads with which the input is parsed.
+     */
+    protected int parallelism;
+
+    /**
+     * The (ascending) indexes of the selected columns, or {@code null} when all
+     * columns are selected.
+     */
+    protected int[] columns;
+
+    // The conditions that the raw cells of a record must meet for the record to be kept.
+    private final List<Condition> conditions;
+
+    // The maximum number of distinct values of a column of which the strings are interned, or 0 for none.
+    private int cardinality;
+
     /**
      * Creates a new instance of a {@code SimpleInput}.
      *
@@ -69,10 +98,34 @@ public abstract class SimpleInput implements CSVInput {
     public SimpleInput(String input, String delimiter, String quotation, String escapeQuotation, String recordEnd)
             throws IllegalArgumentException {
 
+        this(delimiter, quotation, escapeQuotation, recordEnd);
+
         if (input == null) {
             throw new IllegalArgumentException("input == null");
         }
 
+        this.input = input;
+    }
+
+    /**
+     * Creates a new instance of a {@code SimpleInput} whose input will be read from
+     * the reader returned by {@link #openReader()}, which subclasses must override.
+     *
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    protected SimpleInput(String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws IllegalArgumentException {
+
         if (delimiter == null) {
             throw new IllegalArgumentException("delimiter == null");
         }
@@ -89,7 +142,7 @@ public abstract class SimpleInput implements CSVInput {
             throw new IllegalArgumentException("recordEnd == null");
         }
 
-        this.input = input;
+        this.input = null;
         this.delimiter = delimiter;
         this.quotation = quotation;
         this.escapeQuotation = escapeQuotation;
@@ -97,6 +150,10 @@ public abstract class SimpleInput implements CSVInput {
 
         this.filters = new LinkedHashMap<Class<? extends Filter>, Filter>();
         this.data = null;
+        this.parallelism = 1;
+        this.columns = null;
+        this.conditions = new ArrayList<Condition>();
+        this.cardinality = 0;
 
         this.with(new TrimFilter());
     }
@@ -143,8 +200,219 @@ public abstract class SimpleInput implements CSVInput {
      * {@inheritDoc}
      */
     @Override
+    public CSVInput intern(int cardinality) throws IllegalArgumentException, IllegalStateException {
+
+        if (cardinality < 0) {
+            throw new IllegalArgumentException("cardinality < 0");
+        }
+
+        if (this.data != null) {
+            throw new IllegalStateException("the input is already parsed: cannot intern the values");
+        }
+
+        this.cardinality = cardinality;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CSVInput parallel(int parallelism) throws IllegalArgumentException, IllegalStateException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+
+        if (this.data != null) {
+            throw new IllegalStateException("the input is already parsed: cannot change the parallelism");
+        }
+
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CSVInput select(int... columns) throws IllegalArgumentException, IllegalStateException {
+
+        if (columns == null) {
+            throw new IllegalArgumentException("columns == null");
+        }
+
+        if (this.data != null) {
+            throw new IllegalStateException("the input is already parsed: cannot select columns");
+        }
+
+        int[] sorted = columns.clone();
+        Arrays.sort(sorted);
+
+        int count = 0;
+
+        for (int column : sorted) {
+
+            if (column < 0) {
+                throw new IllegalArgumentException("column < 0");
+            }
+
+            if (count == 0 || sorted[count - 1] != column) {
+                sorted[count++] = column;
+            }
+        }
+
+        this.columns = Arrays.copyOf(sorted, count);
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CSVInput where(int column, Predicate<CharSequence> predicate)
+            throws IllegalArgumentException, IllegalStateException {
+
+        if (column < 0) {
+            throw new IllegalArgumentException("column < 0");
+        }
+
+        if (predicate == null) {
+            throw new IllegalArgumentException("predicate == null");
+        }
+
+        if (this.data != null) {
+            throw new IllegalStateException("the input is already parsed: cannot add a condition");
+        }
+
+        this.conditions.add(new Condition(column, predicate));
+
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The names are looked up in the first raw record of the input, to which only
+     * the range filters that come first (such as {@link TrimFilter}) are applied:
+     * the record is found even when it is excluded, or when other columns were
+     * selected before.
+     */
+    @Override
+    public CSVInput select(String... names) throws IllegalArgumentException, IllegalStateException {
+
+        if (names == null) {
+            throw new IllegalArgumentException("names == null");
+        }
+
+        if (this.data != null) {
+            throw new IllegalStateException("the input is already parsed: cannot select columns");
+        }
+
+        List<String> header;
+
+        try {
+            Tokenizer tokenizer = this.openTokenizer();
+
+            try {
+                header = tokenizer.next();
+            }
+            finally {
+                tokenizer.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+
+        if (header != null) {
+
+            FilterPlan filters = new FilterPlan(this.filters.values());
+
+            for (int column = 0; column < header.size(); column++) {
+
+                char[] chars = header.get(column).toCharArray();
+                int[] range = {0, chars.length};
+
+                header.set(column, filters.narrow(0, column, chars, range) < 0 ? null :
+                        new String(chars, range[0], range[1] - range[0]));
+            }
+        }
+
+        int[] columns = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+
+            columns[i] = header == null ? -1 : header.indexOf(names[i]);
+
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("no such column: " + names[i]);
+            }
+        }
+
+        return this.select(columns);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * For inputs that are read through {@link #openReader()}, this reads the entire
+     * input into memory the first time it is called.
+     */
+    @Override
     public String getInput() {
-        return input;
+
+        if (this.input == null) {
+            this.input = this.readInput();
+        }
+
+        return this.input;
+    }
+
+    // Returns the input string, or else reads the entire input through openReader() without keeping it.
+    private String readInput() {
+
+        if (this.input != null) {
+            return this.input;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        char[] chars = new char[Tokenizer.WINDOW_SIZE];
+
+        try {
+            Reader reader = this.openReader();
+
+            try {
+                for (int read = reader.read(chars); read >= 0; read = reader.read(chars)) {
+                    builder.append(chars, 0, read);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Opens a new reader from which the CSV input is tokenized. Every iteration
+     * over the input opens its own reader, which is closed once the iteration is
+     * done. By default, this reads from the {@link #input} string.
+     *
+     * @return a new reader from which the CSV input is tokenized.
+     *
+     * @throws IOException
+     *         when the input could not be opened.
+     */
+    protected Reader openReader() throws IOException {
+        return new StringReader(this.input);
     }
 
     /**
@@ -192,75 +460,408 @@ public abstract class SimpleInput implements CSVInput {
         return new ArrayList<List<String>>(data);
     }
 
-    // Parses the input, ignoring any empty records.
-    private void parse() {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void parse(RecordHandler handler) throws IllegalArgumentException {
+
+        if (handler == null) {
+            throw new IllegalArgumentException("handler == null");
+        }
+
+        try {
+            new PushParser(this.openTokenizerUnchecked(), this.filters.values()).parse(handler);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RecordCursor cursor() {
+        return new RecordCursor(new PushParser(this.openTokenizerUnchecked(), this.filters.values()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<List<String>> getRecords(long from, long to) throws IllegalArgumentException {
+
+        if (from < 0) {
+            throw new IllegalArgumentException("from < 0");
+        }
+
+        if (to < from) {
+            throw new IllegalArgumentException("to < from");
+        }
+
+        if (to > Integer.MAX_VALUE + 1L) {
+            // The filters are passed an int row index.
+            throw new IllegalArgumentException("to > Integer.MAX_VALUE + 1");
+        }
+
+        FilterPlan filters = new FilterPlan(this.filters.values());
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        if (from == to) {
+            return records;
+        }
+
+        try {
+            Tokenizer tokenizer = this.project(this.openTokenizer(from));
+
+            try {
+                for (long rowIndex = from; rowIndex < to; rowIndex++) {
+
+                    if (filters.excludes(rowIndex)) {
+
+                        if (!tokenizer.skip()) {
+                            break;
+                        }
+
+                        continue;
+                    }
+
+                    List<String> record = tokenizer.next();
+
+                    if (record == null) {
+                        break;
+                    }
+
+                    if (tokenizer.rejected()) {
+                        continue;
+                    }
+
+                    record = RecordIterator.filter(filters, this.columns, (int) rowIndex, record);
+
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+            }
+            finally {
+                tokenizer.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+
+        return records;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<List<String>> head(int count) throws IllegalArgumentException {
 
-        this.data = new ArrayList<List<String>>();
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+
+        if (this.data != null) {
+            // Already parsed: no need to tokenize the input again.
+            return new ArrayList<List<String>>(this.data.subList(0, Math.min(count, this.data.size())));
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>(Math.min(count, 1024));
 
-        int inputIndex = 0;
-        int rowIndex = 0;
-        int columnIndex = 0;
+        if (count == 0) {
+            return records;
+        }
 
-        StringBuilder buffer = new StringBuilder();
-        List<String> row = new ArrayList<String>();
+        RecordIterator iterator = new RecordIterator(this.openTokenizerUnchecked(), this.filters.values());
+
+        try {
+            try {
+                while (records.size() < count && iterator.hasNext()) {
+                    records.add(iterator.next());
+                }
+            }
+            finally {
+                // Stop reading the input as soon as enough records have been read.
+                iterator.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+
+        return records;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<List<String>> iterator() {
+
+        if (this.data != null) {
+            // Already parsed: no need to tokenize the input again.
+            return Collections.unmodifiableList(this.data).iterator();
+        }
 
-        while (inputIndex < input.length()) {
+        return new RecordIterator(this.openTokenizerUnchecked(), this.filters.values());
+    }
 
-            char current = this.input.charAt(inputIndex);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<List<CharSequence>> views() {
+
+        return new Iterable<List<CharSequence>>() {
+            @Override
+            public Iterator<List<CharSequence>> iterator() {
+
+                if (data != null) {
+                    // Already parsed: no need to tokenize the input again.
+                    final Iterator<List<String>> records = data.iterator();
+
+                    return new Iterator<List<CharSequence>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return records.hasNext();
+                        }
+
+                        @Override
+                        public List<CharSequence> next() {
+                            return Collections.<CharSequence>unmodifiableList(records.next());
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove");
+                        }
+                    };
+                }
 
-            if (ahead(this.delimiter, inputIndex)) {
-                this.insert(rowIndex, columnIndex, buffer.toString(), row);
-                buffer = new StringBuilder();
-                inputIndex += this.delimiter.length();
-                columnIndex++;
+                return new ViewIterator(openTokenizerUnchecked(), filters.values());
             }
-            else if (ahead(this.recordEnd, inputIndex)) {
-                this.insert(rowIndex, columnIndex, buffer.toString(), row);
-                buffer = new StringBuilder();
-                this.insert(row);
-                row = new ArrayList<String>();
-                inputIndex += this.recordEnd.length();
-                rowIndex++;
-                columnIndex = 0;
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CSVTable getTable(int cardinality) throws IllegalArgumentException {
+
+        CSVTable table = new CSVTable(cardinality);
+
+        for (List<CharSequence> record : this.views()) {
+            table.add(record);
+        }
+
+        table.trim();
+
+        return table;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CSVIndex getIndex() {
+        return new CSVIndex(this.getInput(), this.delimiter, this.quotation, this.escapeQuotation, this.recordEnd,
+                this.filters.values());
+    }
+
+    /**
+     * Opens a new tokenizer that reads the raw records of the input. By default,
+     * this tokenizes the chars of the reader returned by {@link #openReader()}.
+     *
+     * @return a new tokenizer that reads the raw records of the input.
+     *
+     * @throws IOException
+     *         when the input could not be opened.
+     */
+    Tokenizer openTokenizer() throws IOException {
+        return this.tokenizer(this.openReader());
+    }
+
+    /**
+     * Opens a new tokenizer positioned at the start of a raw record of the input.
+     * By default, this skips all records before it.
+     *
+     * @param record
+     *         the index of the raw record.
+     *
+     * @return a new tokenizer positioned at the start of the raw record, or at
+     * the end of the input when it has fewer records.
+     *
+     * @throws IOException
+     *         when the input could not be opened.
+     */
+    Tokenizer openTokenizer(long record) throws IOException {
+        return skip(this.openTokenizer(), record);
+    }
+
+    /**
+     * Skips raw records of a tokenizer, closing it when skipping fails.
+     *
+     * @param tokenizer
+     *         the tokenizer to skip the records of.
+     * @param count
+     *         the number of records to skip.
+     *
+     * @return the tokenizer.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     */
+    static Tokenizer skip(Tokenizer tokenizer, long count) throws IOException {
+
+        try {
+            for (long i = 0; i < count && tokenizer.skip(); i++) {
+                // Skipped.
             }
-            else if (ahead(this.quotation, inputIndex)) {
+        }
+        catch (IOException e) {
+            tokenizer.close();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            tokenizer.close();
+            throw e;
+        }
+
+        return tokenizer;
+    }
+
+    /**
+     * Creates a tokenizer that reads the raw records from the given reader.
+     *
+     * @param reader
+     *         the reader from which the CSV input is read.
+     *
+     * @return a tokenizer that reads the raw records from the given reader.
+     */
+    Tokenizer tokenizer(Reader reader) {
+        return Tokenizer.create(reader, this.delimiter, this.quotation, this.escapeQuotation, this.recordEnd);
+    }
+
+    /**
+     * Lets a tokenizer only pass on the cells in the selected columns, and reject
+     * the records that fail any of the conditions.
+     *
+     * @param tokenizer
+     *         the tokenizer to select the columns of.
+     *
+     * @return the tokenizer.
+     */
+    Tokenizer project(Tokenizer tokenizer) {
+        tokenizer.select(this.columns);
+        tokenizer.where(this.conditions());
+        tokenizer.intern(this.cardinality);
+        return tokenizer;
+    }
+
+    // Returns a snapshot of the conditions.
+    Condition[] conditions() {
+        return this.conditions.toArray(new Condition[this.conditions.size()]);
+    }
 
-                inputIndex += this.quotation.length();
-                buffer = new StringBuilder();
+    // Opens a new tokenizer of the selected columns, wrapping any IOException in a RuntimeException.
+    private Tokenizer openTokenizerUnchecked() {
+        try {
+            return this.project(this.openTokenizer());
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not open the input", e);
+        }
+    }
 
+    // Parses the input, ignoring any empty records.
+    private void parse() {
+
+        if (this.parallelism > 1) {
+            // The text is only kept while it is parsed: the records are all that is kept of it.
+            this.data = new ParallelParser(this.readInput(), this.delimiter, this.quotation, this.escapeQuotation,
+                    this.recordEnd, this.filters.values(), this.columns, this.conditions(), this.cardinality,
+                    this.parallelism,
+                    ParallelParser.MIN_CHUNK_SIZE).parse();
+            return;
+        }
+
+        FilterPlan filters = new FilterPlan(this.filters.values());
+
+        if (filters.batched) {
+            this.data = this.parseBatches(filters);
+            return;
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        Iterator<List<String>> iterator = this.iterator();
+
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+
+        this.data = records;
+    }
+
+    // Parses the input in batches of raw records, so that batch filters are invoked once per column of a batch.
+    private List<List<String>> parseBatches(FilterPlan filters) {
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        List<List<String>> batch = new ArrayList<List<String>>(FilterPlan.BATCH_SIZE);
+        int firstRow = 0;
+
+        try {
+            Tokenizer tokenizer = this.project(this.openTokenizer());
+
+            try {
                 while (true) {
 
-                    if (inputIndex >= input.length()) {
-                        throw new RuntimeException("missing closing quote '" + this.quotation + "'");
-                    }
+                    List<String> record = null;
 
-                    current = this.input.charAt(inputIndex);
+                    if (filters.excludes(firstRow + batch.size())) {
 
-                    if (ahead(this.escapeQuotation + this.quotation, inputIndex)) {
-                        buffer.append(this.quotation);
-                        inputIndex += (this.escapeQuotation.length() + this.quotation.length());
-                    }
-                    else if (ahead(this.quotation, inputIndex)) {
-                        inputIndex += this.quotation.length();
-                        break;
+                        if (!tokenizer.skip()) {
+                            break;
+                        }
                     }
                     else {
-                        buffer.append(current);
-                        inputIndex++;
+
+                        record = tokenizer.next();
+
+                        if (record == null) {
+                            break;
+                        }
+
+                        if (tokenizer.rejected()) {
+                            // The record failed one of the conditions.
+                            record = null;
+                        }
+                    }
+
+                    batch.add(record);
+
+                    if (batch.size() == FilterPlan.BATCH_SIZE) {
+                        records.addAll(filters.filter(firstRow, batch, this.columns));
+                        firstRow += batch.size();
+                        batch.clear();
                     }
                 }
             }
-            else {
-                buffer.append(current);
-                inputIndex++;
+            finally {
+                tokenizer.close();
             }
         }
-
-        if (!buffer.toString().isEmpty()) {
-            this.insert(rowIndex, columnIndex, buffer.toString(), row);
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
         }
 
-        this.insert(row);
+        records.addAll(filters.filter(firstRow, batch, this.columns));
+
+        return records;
     }
 
     /**
@@ -274,16 +875,22 @@ public abstract class SimpleInput implements CSVInput {
      *
      * @return {@code true} iff the {@code substring} at the given {@code index}
      * can be seen from the {@link #input}.
+     *
+     * @deprecated the input is no longer parsed char by char from the {@link #input}
+     * string: this reads the entire input into memory (see {@link #getInput()}).
      */
+    @Deprecated
     protected boolean ahead(String substring, int index) {
 
-        if ((index + substring.length()) > this.input.length()) {
+        String input = this.getInput();
+
+        if ((index + substring.length()) > input.length()) {
             // No place for a substring: it would go beyond the end of the input.
             return false;
         }
 
         for (int i = 0; i < substring.length(); i++) {
-            if (this.input.charAt(index + i) != substring.charAt(i)) {
+            if (input.charAt(index + i) != substring.charAt(i)) {
                 // No, at least one char differs.
                 return false;
             }
@@ -303,49 +910,54 @@ public abstract class SimpleInput implements CSVInput {
      *         the value of the cell.
      * @param dataRow
      *         the list holding all of the values in the current row.
+     *
+     * @deprecated the input is no longer parsed through this method, so overriding
+     * it has no effect: the filters are applied while the input is tokenized.
      */
+    @Deprecated
     protected void insert(int rowIndex, int column, String value, List<String> dataRow) {
 
-        boolean add = true;
-
         for (Filter filter : this.filters.values()) {
 
             value = filter.apply(rowIndex, column, value);
 
             if (value == null) {
                 // One of the filters excluded this value.
-                add = false;
-                break;
+                return;
             }
         }
 
-        if (add) {
-            dataRow.add(value);
-        }
+        dataRow.add(value);
     }
 
     /**
-     * Inserts a row of values iff the row contains at least one cell
-     * that is non-null and not empty.
+     * Inserts a row of values into the {@link #data} iff the row contains at least
+     * one cell that is non-null and not empty.
      *
      * @param dataRow
      *         the row to add.
+     *
+     * @throws IllegalStateException
+     *         when the input is not parsed yet: there is no {@link #data} to insert
+     *         the row into.
+     *
+     * @deprecated the input is no longer parsed through this method, so overriding
+     * it has no effect: empty records are skipped while the input is tokenized.
      */
-    protected void insert(List<String> dataRow) {
+    @Deprecated
+    protected void insert(List<String> dataRow) throws IllegalStateException {
 
-        boolean add = false;
+        if (this.data == null) {
+            throw new IllegalStateException("the input is not parsed yet: cannot insert a row");
+        }
 
         for (String cell : dataRow) {
 
             if (!(cell == null || cell.isEmpty())) {
                 // There is at least one cell with a value in it.
-                add = true;
-                break;
+                this.data.add(dataRow);
+                return;
             }
         }
-
-        if (add) {
-            this.data.add(dataRow);
-        }
     }
 }
@@ -0,0 +1,583 @@
+package clay.input;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * An {@code Input} represented as a local {@code File} that keeps growing, such
+ * as a log to which records are appended: besides parsing the file as a whole,
+ * {@link #poll()} returns only the records that were appended since the previous
+ * poll.
+ *
+ * This input remembers the offset in the file right after the last complete
+ * record it returned, and each poll only reads the bytes after it. A record is
+ * complete once its record end has been appended: a last record that is still
+ * being written (for instance one with a quoted cell that is not closed yet) is
+ * left for the next poll, which reads it again from its start. The filters are
+ * applied to the polled records as usual, with row indexes that keep counting
+ * up over all polls.
+ *
+ * When the file shrinks (it was truncated, or replaced by a new file), polling
+ * starts again at the start of the file, while the row indexes keep counting up.
+ */
+public class TailFileInput extends FileInput implements Closeable {
+
+    // The offset in the file right after the last complete record that was polled.
+    private long offset;
+
+    // The index of the next raw record that will be polled.
+    private int rowIndex;
+
+    // Watches the directory of the file for changes, or null until await(...) is first called.
+    private transient WatchService watcher;
+
+    /**
+     * Creates a new {@code TailFileInput} instance with default:
+     * - delimiter: {@value #DEFAULT_DELIMITER}
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public TailFileInput(File file) throws FileNotFoundException, IllegalArgumentException {
+        this(file, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Creates a new {@code TailFileInput} instance with default:
+     * - quotation: {@value #DEFAULT_QUOTATION}
+     * - escape quotation: {@value #DEFAULT_ESCAPE_QUOTATION}
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public TailFileInput(File file, String delimiter) throws FileNotFoundException, IllegalArgumentException {
+        this(file, delimiter, DEFAULT_QUOTATION, DEFAULT_ESCAPE_QUOTATION);
+    }
+
+    /**
+     * Creates a new {@code TailFileInput} instance with default:
+     * - end of record: {@value #DEFAULT_RECORD_END}
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public TailFileInput(File file, String delimiter, String quotation, String escapeQuotation)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, DEFAULT_RECORD_END);
+    }
+
+    /**
+     * Creates a new {@code TailFileInput} instance with default:
+     * - charset: UTF-8
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public TailFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd)
+            throws FileNotFoundException, IllegalArgumentException {
+
+        this(file, delimiter, quotation, escapeQuotation, recordEnd, DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates a new {@code TailFileInput} instance.
+     *
+     * @param file
+     *         the CSV input file.
+     * @param delimiter
+     *         the CSV cell delimiter.
+     * @param quotation
+     *         the CSV cell quotation.
+     * @param escapeQuotation
+     *         the string that escapes the CSV quotation.
+     * @param recordEnd
+     *         the string that marks the end of a record.
+     * @param charset
+     *         the charset with which the file is decoded.
+     *
+     * @throws FileNotFoundException
+     *         when {@code file} does not exist.
+     * @throws IllegalArgumentException
+     *         when any of the parameters is {@code null}.
+     */
+    public TailFileInput(File file, String delimiter, String quotation, String escapeQuotation, String recordEnd,
+                           Charset charset) throws FileNotFoundException, IllegalArgumentException {
+
+        super(file, delimiter, quotation, escapeQuotation, recordEnd, charset);
+
+        this.offset = 0;
+        this.rowIndex = 0;
+        this.watcher = null;
+    }
+
+    /**
+     * Returns the offset in the file (in bytes) right after the last complete
+     * record that was polled: the next poll starts reading here.
+     *
+     * @return the offset in the file right after the last complete record that
+     * was polled.
+     */
+    public synchronized long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Returns the number of raw records that were polled so far, including empty
+     * records and records excluded by the filters: the row index of the next
+     * polled record.
+     *
+     * @return the number of raw records that were polled so far.
+     */
+    public synchronized int getRecordCount() {
+        return this.rowIndex;
+    }
+
+    /**
+     * Returns all complete records that were appended to the file since the
+     * previous poll (or all complete records of the file, on the first poll),
+     * with all filters applied to them. Records without any non-empty cell are
+     * skipped, just like {@link #getRecords()} does.
+     *
+     * @return the records that were appended since the previous poll, which is
+     * an empty list when no record has been completed since then.
+     *
+     * @throws RuntimeException
+     *         when the file could not be read.
+     */
+    public synchronized List<List<String>> poll() {
+
+        try {
+            long size = this.file.length();
+
+            if (size < this.offset) {
+                // The file was truncated or replaced: start over.
+                this.offset = 0;
+            }
+
+            List<List<String>> records = new ArrayList<List<String>>();
+
+            if (size == this.offset) {
+                return records;
+            }
+
+            FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+
+            try {
+                channel.position(this.offset);
+
+                if (ByteTokenizer.supports(this.charset, this.delimiter, this.quotation, this.escapeQuotation,
+                        this.recordEnd)) {
+                    this.pollBytes(channel, records);
+                }
+                else {
+                    this.pollChars(channel, records);
+                }
+            }
+            finally {
+                channel.close();
+            }
+
+            return records;
+        }
+        catch (IOException e) {
+            throw new RuntimeException("could not read the input", e);
+        }
+    }
+
+    /**
+     * Waits until the file has grown (or shrunk) since the last poll, using a
+     * {@code WatchService} on the directory of the file.
+     *
+     * @param timeout
+     *         the maximum time to wait.
+     * @param unit
+     *         the unit of {@code timeout}.
+     *
+     * @return {@code true} iff the size of the file differs from the offset of
+     * the next poll, {@code false} when the timeout elapsed before that.
+     *
+     * @throws IOException
+     *         when the directory of the file could not be watched.
+     * @throws InterruptedException
+     *         when the thread was interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        WatchService watcher = this.watcher();
+
+        while (this.file.length() == this.getOffset()) {
+
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0) {
+                return false;
+            }
+
+            WatchKey key = watcher.poll(remaining, TimeUnit.NANOSECONDS);
+
+            if (key != null) {
+                // Only the size of the file matters: which events occurred does not.
+                key.pollEvents();
+                key.reset();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops watching the directory of the file, if {@link #await(long, TimeUnit)}
+     * was invoked. Polling remains possible.
+     *
+     * @throws IOException
+     *         when the watch service could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (this.watcher != null) {
+            this.watcher.close();
+            this.watcher = null;
+        }
+    }
+
+    // Returns the service that watches the directory of the file, creating it on first use.
+    private synchronized WatchService watcher() throws IOException {
+
+        if (this.watcher == null) {
+
+            Path directory = this.file.getAbsoluteFile().toPath().getParent();
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+
+            directory.register(watcher, new WatchEvent.Kind<?>[]{StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY});
+
+            this.watcher = watcher;
+        }
+
+        return this.watcher;
+    }
+
+    // Polls the records by tokenizing the bytes of the file, from the current position of the channel.
+    private void pollBytes(FileChannel channel, List<List<String>> records) throws IOException {
+
+        Tokenizer tokenizer = ByteTokenizer.forChannel(channel, Tokenizer.WINDOW_SIZE, this.charset,
+                this.delimiter, this.quotation, this.escapeQuotation, this.recordEnd);
+
+        this.offset += this.poll(this.project(tokenizer), channel, null, records);
+    }
+
+    // Polls the records by decoding the bytes of the file window by window, from the current position of the channel.
+    private void pollChars(FileChannel channel, List<List<String>> records) throws IOException {
+
+        DecodingReader reader = new DecodingReader(channel, this.charset, this.recordEnd.length());
+        long consumed = this.poll(this.project(this.tokenizer(reader)), channel, reader, records);
+
+        this.offset += reader.bytes(consumed);
+    }
+
+    // Tokenizes the records after the offset, adds the complete ones to `records` (with the filters applied)
+    // and returns the position in the tokenizer right after the last complete record. Whether the last
+    // record ends with a record end is checked in the chars of the reader, or else in the bytes of the channel.
+    private long poll(Tokenizer tokenizer, FileChannel channel, DecodingReader reader, List<List<String>> records)
+            throws IOException {
+
+        FilterPlan filters = new FilterPlan(this.filters.values());
+        List<List<String>> complete = new ArrayList<List<String>>();
+        long consumed = 0;
+        long previous = 0;
+
+        try {
+            while (true) {
+
+                List<String> record;
+
+                try {
+                    record = tokenizer.next();
+                }
+                catch (RuntimeException e) {
+
+                    if (!tokenizer.unclosed()) {
+                        throw e;
+                    }
+
+                    // A quoted cell that has not been closed yet: all records before it are complete.
+                    break;
+                }
+
+                if (record == null) {
+
+                    if (!complete.isEmpty() && !this.terminated(channel, reader, consumed)) {
+                        // The last record of the file is still being written.
+                        complete.remove(complete.size() - 1);
+                        consumed = previous;
+                    }
+
+                    break;
+                }
+
+                // A record that failed one of the conditions is kept as null, to keep counting the row indexes.
+                complete.add(tokenizer.rejected() ? null : record);
+                previous = consumed;
+                consumed = tokenizer.position();
+            }
+        }
+        finally {
+            tokenizer.close();
+        }
+
+        // Only now that the input was read, the state of this input is changed.
+        for (List<String> record : complete) {
+
+            int rowIndex = this.rowIndex++;
+
+            if (record == null || filters.excludes(rowIndex)) {
+                continue;
+            }
+
+            List<String> filtered = RecordIterator.filter(filters, this.columns, rowIndex, record);
+
+            if (filtered != null) {
+                records.add(filtered);
+            }
+        }
+
+        return consumed;
+    }
+
+    // Returns true iff the input ends with a record end at the given position in the tokenizer.
+    private boolean terminated(FileChannel channel, DecodingReader reader, long end) throws IOException {
+
+        if (reader != null) {
+            // At the end of the input, all chars that were read have been tokenized.
+            return end > 0 && reader.endsWith(this.recordEnd);
+        }
+
+        // The byte tokenizer only supports a record end of a single byte.
+        ByteBuffer last = ByteBuffer.allocate(1);
+
+        return end > 0 && channel.read(last, this.offset + end - 1) == 1 && last.get(0) == this.recordEnd.charAt(0);
+    }
+
+    // Decodes the bytes of a channel window by window, and finds the number of bytes that a number of chars were
+    // decoded from. Bytes at the end of the channel that do not make up a whole char (yet) are not decoded.
+    private static final class DecodingReader extends Reader {
+
+        // The channel from which the bytes are read.
+        private final FileChannel channel;
+
+        // The position in the channel of the first byte.
+        private final long start;
+
+        // The charset with which the bytes are decoded.
+        private final Charset charset;
+
+        // Decodes the bytes.
+        private final CharsetDecoder decoder;
+
+        // The bytes that were read but not decoded yet.
+        private final ByteBuffer window;
+
+        // The number of chars that were read, and of bytes they were decoded from, at the start of every read.
+        private final List<long[]> marks;
+
+        // The number of chars that were read.
+        private long chars;
+
+        // The number of bytes that were decoded.
+        private long bytes;
+
+        // The last chars that were read, at most as many as the chars of a record end.
+        private String last;
+
+        // The number of last chars to keep.
+        private final int keep;
+
+        DecodingReader(FileChannel channel, Charset charset, int keep) throws IOException {
+            this.channel = channel;
+            this.start = channel.position();
+            this.charset = charset;
+            this.decoder = decoder(charset);
+            this.window = ByteBuffer.allocate(Tokenizer.WINDOW_SIZE);
+            this.marks = new ArrayList<long[]>();
+            this.chars = 0;
+            this.bytes = 0;
+            this.last = "";
+            this.keep = keep;
+
+            this.window.flip();
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) throws IOException {
+
+            if (length == 0) {
+                return 0;
+            }
+
+            this.marks.add(new long[]{this.chars, this.bytes});
+
+            CharBuffer out = CharBuffer.wrap(chars, offset, length);
+
+            while (true) {
+
+                int position = this.window.position();
+                CoderResult result = this.decoder.decode(this.window, out, false);
+
+                this.bytes += this.window.position() - position;
+
+                if (out.position() > offset || result.isOverflow()) {
+                    break;
+                }
+
+                // The window does not hold a whole char: read more bytes.
+                this.window.compact();
+                int read = this.channel.read(this.window);
+                this.window.flip();
+
+                if (read < 0) {
+                    return -1;
+                }
+            }
+
+            int count = out.position() - offset;
+            int from = Math.max(offset, offset + count - this.keep);
+
+            this.chars += count;
+            this.last = this.last + new String(chars, from, offset + count - from);
+            this.last = this.last.substring(Math.max(0, this.last.length() - this.keep));
+
+            return count;
+        }
+
+        // Returns true iff the chars that were read end with the given chars.
+        boolean endsWith(String suffix) {
+            return this.last.endsWith(suffix);
+        }
+
+        // Returns the number of bytes that the first chars that were read were decoded from: the bytes of the
+        // chars after the last mark before them are decoded once more.
+        long bytes(long chars) throws IOException {
+
+            long[] mark = null;
+
+            for (int i = this.marks.size() - 1; mark == null && i >= 0; i--) {
+                if (this.marks.get(i)[0] <= chars) {
+                    mark = this.marks.get(i);
+                }
+            }
+
+            if (mark == null || mark[0] == chars) {
+                return mark == null ? 0 : mark[1];
+            }
+
+            CharsetDecoder decoder = decoder(this.charset);
+            CharBuffer out = CharBuffer.allocate((int) (chars - mark[0]));
+            ByteBuffer in = ByteBuffer.allocate(Tokenizer.WINDOW_SIZE);
+            long bytes = mark[1];
+            long position = this.start + mark[1];
+
+            in.flip();
+
+            while (true) {
+
+                int before = in.position();
+
+                decoder.decode(in, out, false);
+                bytes += in.position() - before;
+
+                if (!out.hasRemaining()) {
+                    return bytes;
+                }
+
+                in.compact();
+                int read = this.channel.read(in, position);
+                in.flip();
+
+                if (read < 0) {
+                    throw new IOException("the file shrunk while it was polled");
+                }
+
+                position += read;
+            }
+        }
+
+        @Override
+        public void close() {
+            // The channel is closed by the poll.
+        }
+
+        // Returns a decoder that replaces malformed and unmappable input.
+        private static CharsetDecoder decoder(Charset charset) {
+            return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+}
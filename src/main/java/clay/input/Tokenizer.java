@@ -0,0 +1,436 @@
+package clay.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokenizes CSV input into raw records: the cells of a record are returned as
+ * they appear in the input, without any filters applied to them.
+ *
+ * Use {@link #create(Reader, String, String, String, String)} to get a tokenizer
+ * that is specialized for the dialect of the input.
+ */
+abstract class Tokenizer implements Closeable {
+
+    /**
+     * The default number of chars (or bytes) that are read from the input at once: {@value}
+     */
+    static final int WINDOW_SIZE = 64 * 1024;
+
+    // The delimiter that separate the CSV data cells.
+    final String delimiter;
+
+    // The substring that denotes the quotation of a CSV cell.
+    final String quotation;
+
+    // The substring that denotes the escape of a quotation of a CSV cell.
+    final String escapeQuotation;
+
+    // The substring that denotes an escaped quotation inside a quoted CSV cell.
+    final String escapedQuotation;
+
+    // The substring that denotes the end of a CSV record.
+    final String recordEnd;
+
+    /**
+     * A handler that ignores all cells: used to skip records.
+     */
+    static final CellHandler SKIP = new CellHandler() {
+        @Override
+        public void cell(char[] chars, int offset, int length) {
+            // Skipped.
+        }
+    };
+
+    // Collects the cells of a record as strings.
+    final StringCollector strings;
+
+    /**
+     * Creates the strings of the cells when they are interned, else {@code null}.
+     */
+    Interner interner;
+
+    // The (ascending) indexes of the columns of which the cells are passed on, or null for all columns.
+    int[] columns;
+
+    // Whether the cells in a column are passed on, or null for all columns.
+    private boolean[] selected;
+
+    // The conditions that the raw cells of a record must meet for the record to be kept.
+    private Condition[] conditions;
+
+    // Whether the cells in a column are tested by one of the conditions, or null when there are none.
+    private boolean[] tested;
+
+    // The index of the column of the cell that is being tokenized.
+    private int column;
+
+    // Whether the cell that is being tokenized is passed on.
+    boolean passing;
+
+    // Whether the cell that is being tokenized is tested by one of the conditions.
+    boolean testing;
+
+    // Whether the record that is being tokenized failed one of the conditions.
+    private boolean rejected;
+
+    // Whether the cell that is being tokenized is neither passed on nor tested: its chars need not be buffered.
+    boolean skipping;
+
+    // Whether the input ended inside a quoted cell.
+    private boolean unclosed;
+
+    /**
+     * Creates a new tokenizer.
+     *
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     */
+    Tokenizer(String delimiter, String quotation, String escapeQuotation, String recordEnd) {
+        this.delimiter = delimiter;
+        this.quotation = quotation;
+        this.escapeQuotation = escapeQuotation;
+        this.escapedQuotation = escapeQuotation + quotation;
+        this.recordEnd = recordEnd;
+        this.strings = new StringCollector(this);
+        this.interner = null;
+        this.columns = null;
+        this.selected = null;
+        this.conditions = new Condition[0];
+        this.tested = null;
+        this.column = 0;
+        this.passing = true;
+        this.testing = false;
+        this.rejected = false;
+        this.skipping = false;
+        this.unclosed = false;
+    }
+
+    /**
+     * Creates a tokenizer that reads from a {@code Reader} and is specialized for
+     * the given dialect: when all substrings consist of a single char, which is by
+     * far the most common case, a {@link CharTokenizer} is returned.
+     *
+     * @param reader
+     *         the reader from which the CSV input is read.
+     * @param delimiter
+     *         the delimiter that separate the CSV data cells.
+     * @param quotation
+     *         the substring that denotes the quotation of a CSV cell.
+     * @param escapeQuotation
+     *         the substring that denotes the escape of a quotation of a CSV cell.
+     * @param recordEnd
+     *         the substring that denotes the end of a CSV record.
+     *
+     * @return a tokenizer that is specialized for the given dialect.
+     */
+    static Tokenizer create(Reader reader, String delimiter, String quotation, String escapeQuotation,
+                            String recordEnd) {
+
+        if (delimiter.length() == 1 && quotation.length() == 1 && escapeQuotation.length() == 1 &&
+                recordEnd.length() == 1) {
+            return new CharTokenizer(reader, delimiter, quotation, escapeQuotation, recordEnd);
+        }
+
+        return new ReaderTokenizer(reader, delimiter, quotation, escapeQuotation, recordEnd);
+    }
+
+    /**
+     * Reads the next raw record from the input, advancing the input past its
+     * record end.
+     *
+     * @return the cells of the next record, or {@code null} when the end of the
+     * input has been reached.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    List<String> next() throws IOException {
+
+        this.strings.row = new ArrayList<String>();
+
+        return this.next(this.strings) ? this.strings.row : null;
+    }
+
+    /**
+     * Reads the next raw record from the input, advancing the input past its
+     * record end, and passes all of its cells to the {@code handler}.
+     *
+     * @param handler
+     *         the handler that receives the cells of the record.
+     *
+     * @return {@code true} iff a record was read, {@code false} when the end of
+     * the input has been reached.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    abstract boolean next(CellHandler handler) throws IOException;
+
+    /**
+     * Skips the next raw record of the input, without creating any of its cells.
+     *
+     * @return {@code true} iff a record was skipped, {@code false} when the end
+     * of the input has been reached.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     * @throws RuntimeException
+     *         when the input contains a quoted cell that is not closed.
+     */
+    boolean skip() throws IOException {
+        return this.next(SKIP);
+    }
+
+    /**
+     * Selects the columns of which the cells are passed to handlers: the cells in
+     * all other columns are only scanned past, without buffering or decoding any
+     * of their chars. The n-th cell that is passed on for a record is in the
+     * column {@code column(n)}.
+     *
+     * @param columns
+     *         the (ascending) indexes of the selected columns, or {@code null} to
+     *         pass on the cells in all columns.
+     */
+    void select(int[] columns) {
+
+        this.columns = columns;
+        this.selected = null;
+
+        if (columns != null) {
+
+            this.selected = new boolean[columns.length == 0 ? 0 : columns[columns.length - 1] + 1];
+
+            for (int column : columns) {
+                this.selected[column] = true;
+            }
+        }
+    }
+
+    /**
+     * Lets the strings of the cells be interned per column, as long as a column
+     * has no more distinct values than the given cardinality.
+     *
+     * @param cardinality
+     *         the maximum number of distinct values of a column that is interned,
+     *         or 0 to not intern any strings.
+     */
+    void intern(int cardinality) {
+        this.interner = cardinality > 0 ? new Interner(cardinality) : null;
+    }
+
+    /**
+     * Sets the conditions that the raw cells of a record must meet for the record
+     * to be kept. As soon as a cell fails a condition, the remaining cells of its
+     * record are only scanned past, and {@link #rejected()} returns {@code true}
+     * once the record has been read. Note that the cells of the record before the
+     * failing cell may have been passed on already.
+     *
+     * @param conditions
+     *         the conditions that the raw cells of a record must meet.
+     */
+    void where(Condition[] conditions) {
+
+        this.conditions = conditions;
+        this.tested = null;
+
+        for (Condition condition : conditions) {
+
+            if (this.tested == null || this.tested.length <= condition.column) {
+                this.tested = this.tested == null ? new boolean[condition.column + 1] :
+                        Arrays.copyOf(this.tested, condition.column + 1);
+            }
+
+            this.tested[condition.column] = true;
+        }
+    }
+
+    /**
+     * Returns {@code true} iff the last record that was read failed one of the
+     * conditions set by {@link #where(Condition[])}. A record without a cell in
+     * the column of a condition is tested as if it had an empty cell there.
+     *
+     * @return {@code true} iff the last record that was read failed a condition.
+     */
+    final boolean rejected() {
+
+        if (this.rejected) {
+            return true;
+        }
+
+        for (Condition condition : this.conditions) {
+            if (condition.column >= this.column && !condition.predicate.test(CharSlice.EMPTY)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the index of the column of a cell that was passed on for a record.
+     *
+     * @param cell
+     *         the index of the cell among the cells that were passed on for a record.
+     *
+     * @return the index of the column of the cell.
+     */
+    final int column(int cell) {
+        return this.columns == null ? cell : this.columns[cell];
+    }
+
+    /**
+     * Starts tokenizing the cells of a record, from the first column: invoked at
+     * the start of every record.
+     */
+    final void firstColumn() {
+        this.column = 0;
+        this.rejected = false;
+        this.updateColumn();
+    }
+
+    /**
+     * Moves on to the next column: invoked after every cell of a record.
+     */
+    final void nextColumn() {
+        this.column++;
+        this.updateColumn();
+    }
+
+    /**
+     * Passes a cell to the handler unless it is in a column that is not selected,
+     * and moves on to the next column. A cell that is tested by a condition is
+     * tested first: when it fails, the cell is not passed on.
+     *
+     * @param handler
+     *         the handler that receives the cell.
+     * @param chars
+     *         the array holding the chars of the cell.
+     * @param offset
+     *         the index in the array of the first char of the cell.
+     * @param length
+     *         the number of chars of the cell.
+     */
+    final void pass(CellHandler handler, char[] chars, int offset, int length) {
+
+        if (!this.skipping && (!this.testing || this.test(chars, offset, length)) && this.passing) {
+            handler.cell(chars, offset, length);
+        }
+
+        this.nextColumn();
+    }
+
+    /**
+     * Tests the cell that is being tokenized against all conditions on its column,
+     * rejecting the record when it fails any of them.
+     *
+     * @param chars
+     *         the array holding the chars of the cell.
+     * @param offset
+     *         the index in the array of the first char of the cell.
+     * @param length
+     *         the number of chars of the cell.
+     *
+     * @return {@code true} iff the cell meets all conditions on its column.
+     */
+    final boolean test(char[] chars, int offset, int length) {
+
+        CharSlice cell = new CharSlice(chars, offset, length);
+
+        for (Condition condition : this.conditions) {
+            if (condition.column == this.column && !condition.predicate.test(cell)) {
+                this.rejected = true;
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Determines what to do with the cells in the current column.
+    private void updateColumn() {
+
+        int column = this.column;
+
+        this.passing = this.selected == null || (column < this.selected.length && this.selected[column]);
+        this.testing = this.tested != null && column < this.tested.length && this.tested[column];
+        this.skipping = this.rejected || !(this.passing || this.testing);
+    }
+
+    /**
+     * Returns {@code true} iff the input ended inside a quoted cell that was not
+     * closed: the exception that was thrown for it says no more than that the
+     * input is not complete (yet).
+     *
+     * @return {@code true} iff the input ended inside a quoted cell.
+     */
+    boolean unclosed() {
+        return this.unclosed;
+    }
+
+    /**
+     * Notes that the input ended inside the quoted cell that is being tokenized.
+     *
+     * @return the exception to throw for it.
+     */
+    RuntimeException unclosedQuote() {
+        this.unclosed = true;
+        return new RuntimeException("missing closing quote '" + this.quotation + "'");
+    }
+
+    /**
+     * Returns the number of units (chars, or bytes for tokenizers that read bytes)
+     * of the input that have been tokenized so far.
+     *
+     * @return the number of units of the input that have been tokenized so far.
+     */
+    abstract long position();
+
+    /**
+     * Returns {@code true} iff {@link #next()} creates the strings of the cells
+     * straight from the input, without decoding them into chars first: the cells
+     * are then cheaper to read as strings than as raw chars.
+     *
+     * @return {@code true} iff the cells are cheaper to read as strings.
+     */
+    boolean decodesStrings() {
+        return false;
+    }
+
+    // Collects the cells of a record as strings.
+    static final class StringCollector implements CellHandler {
+
+        // The tokenizer that passes the cells.
+        private final Tokenizer tokenizer;
+
+        // The cells of the record that is being read.
+        List<String> row;
+
+        StringCollector(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void cell(char[] chars, int offset, int length) {
+
+            Interner interner = this.tokenizer.interner;
+
+            this.row.add(interner == null ? new String(chars, offset, length) :
+                    interner.intern(this.tokenizer.column, chars, offset, length));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package clay.input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The base of iterators that lazily turn the raw records of a {@link Tokenizer}
+ * into elements: each call to {@link #next()} tokenizes just enough of the input
+ * to produce the next element. Subclasses decide how a raw record is read, and
+ * whether it produces an element at all.
+ *
+ * The underlying tokenizer is closed as soon as the end of the input is reached,
+ * when reading the input fails, or when {@link #close()} is invoked.
+ *
+ * @param <T>
+ *         the type of the elements.
+ */
+abstract class TokenizerIterator<T> implements Iterator<T>, Closeable {
+
+    /**
+     * The tokenizer that reads the raw records from the input.
+     */
+    final Tokenizer tokenizer;
+
+    // The index of the next (raw) record in the input.
+    private int rowIndex;
+
+    // The next element that will be returned, or null if it has not been read yet.
+    private T next;
+
+    // Becomes true once the tokenizer has been closed.
+    private boolean closed;
+
+    /**
+     * Creates a new iterator over the raw records of a tokenizer.
+     *
+     * @param tokenizer
+     *         the tokenizer that reads the raw records from the input.
+     */
+    TokenizerIterator(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        this.rowIndex = 0;
+        this.next = null;
+        this.closed = false;
+    }
+
+    /**
+     * Reads the next raw record from the tokenizer.
+     *
+     * @param rowIndex
+     *         the index of the raw record in the input.
+     *
+     * @return {@code false} when the end of the input has been reached, else
+     * {@code true}, after having passed the element for the raw record (if any)
+     * to {@link #produce(Object)}.
+     *
+     * @throws IOException
+     *         when the input could not be read.
+     */
+    abstract boolean read(int rowIndex) throws IOException;
+
+    /**
+     * Sets the element that will be returned next: invoked by {@link #read(int)}.
+     *
+     * @param element
+     *         the element that will be returned next.
+     */
+    final void produce(T element) {
+        this.next = element;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+
+        try {
+            while (this.next == null && !this.closed) {
+                if (!this.read(this.rowIndex++)) {
+                    this.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            this.closeQuietly();
+            throw new RuntimeException("could not read the input", e);
+        }
+        catch (RuntimeException e) {
+            this.closeQuietly();
+            throw e;
+        }
+
+        return this.next != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next() {
+
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T element = this.next;
+        this.next = null;
+
+        return element;
+    }
+
+    /**
+     * Always throws an {@code UnsupportedOperationException}: records cannot be
+     * removed from the input.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * Closes the underlying tokenizer. After this, the iterator has no more elements.
+     *
+     * @throws IOException
+     *         when the tokenizer could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        this.next = null;
+
+        if (!this.closed) {
+            this.closed = true;
+            this.tokenizer.close();
+        }
+    }
+
+    // Closes the tokenizer without throwing an exception: used when already failing.
+    private void closeQuietly() {
+        try {
+            this.close();
+        }
+        catch (IOException ignored) {
+            // Nothing more we can do.
+        }
+    }
+}
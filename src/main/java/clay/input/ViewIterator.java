@@ -0,0 +1,127 @@
+package clay.input;
+
+import clay.filter.Filter;
+import clay.filter.RangeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An iterator that parses a CSV input lazily into records of {@link CharSlice}
+ * views instead of strings. The cells of a raw record are collected in a reused
+ * buffer and copied into a single array per record, of which all cells are views:
+ * only that array and the views themselves are allocated, and the views remain
+ * valid after the iterator has moved on to other records.
+ *
+ * The filters are applied just like {@link RecordIterator} does. A {@link RangeFilter}
+ * narrows the view itself, any other filter is passed a string of the cell, after
+ * which the string it returns is used as the value of the cell.
+ */
+class ViewIterator extends TokenizerIterator<List<CharSequence>> {
+
+    // The filters that will be applied (in order!) to all the data cells.
+    private final FilterPlan filters;
+
+    // Collects the raw cells of the record that is being read.
+    private final RowBuffer buffer;
+
+    // The range of the cell that is being filtered.
+    private final int[] range;
+
+    /**
+     * Creates a new iterator over the records of a CSV input.
+     *
+     * @param tokenizer
+     *         the tokenizer that reads the raw records from the input.
+     * @param filters
+     *         the filters that will be applied (in order!) to all the data cells.
+     */
+    ViewIterator(Tokenizer tokenizer, Collection<Filter> filters) {
+
+        super(tokenizer);
+
+        // Take a snapshot so that adding or removing filters later on does not affect this iterator.
+        this.filters = new FilterPlan(filters);
+        this.buffer = new RowBuffer();
+        this.range = new int[2];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean read(int rowIndex) throws IOException {
+
+        if (this.filters.excludes(rowIndex)) {
+            return this.tokenizer.skip();
+        }
+
+        RowBuffer buffer = this.buffer;
+        buffer.clear();
+
+        if (!this.tokenizer.next(buffer)) {
+            return false;
+        }
+
+        if (this.tokenizer.rejected()) {
+            // The record failed one of the conditions.
+            return true;
+        }
+
+        // A single copy of the record backs all of its views.
+        char[] record = Arrays.copyOf(buffer.chars, buffer.size);
+        List<CharSequence> row = new ArrayList<CharSequence>(buffer.cells);
+        boolean hasValue = false;
+
+        for (int cell = 0; cell < buffer.cells; cell++) {
+
+            CharSequence value = this.filter(rowIndex, this.tokenizer.column(cell), record, buffer.start(cell),
+                    buffer.ends[cell]);
+
+            if (value != null) {
+
+                row.add(value);
+
+                if (value.length() > 0) {
+                    // There is at least one cell with a value in it.
+                    hasValue = true;
+                }
+            }
+        }
+
+        this.produce(hasValue ? row : null);
+
+        return true;
+    }
+
+    // Applies all filters to a cell, returning null if one of them excluded it.
+    private CharSequence filter(int rowIndex, int columnIndex, char[] record, int start, int end) {
+
+        if (this.filters.excludesColumn(columnIndex)) {
+            return null;
+        }
+
+        int[] range = this.range;
+
+        range[0] = start;
+        range[1] = end;
+
+        // Narrowing a view does not need a string.
+        int first = this.filters.narrow(rowIndex, columnIndex, record, range);
+
+        if (first < 0) {
+            return null;
+        }
+
+        CharSlice slice = new CharSlice(record, range[0], range[1] - range[0]);
+
+        if (first == this.filters.values.length) {
+            return slice;
+        }
+
+        return this.filters.applyValues(first, rowIndex, columnIndex, slice.toString());
+    }
+}
@@ -0,0 +1,90 @@
+package clay.filter;
+
+import clay.input.CSVInput;
+import clay.input.StringInput;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BatchFilterTest {
+
+    // Upper cases all values, counting the batches and the values it is passed.
+    private static class UpperCaseFilter extends BatchFilter {
+
+        int batches = 0;
+        int values = 0;
+
+        @Override
+        public void apply(int firstRow, int columnIndex, String[] values, int count) {
+
+            this.batches++;
+
+            for (int i = 0; i < count; i++) {
+                if (values[i] != null) {
+                    this.values++;
+                    values[i] = values[i].toUpperCase() + (firstRow + i) + ":" + columnIndex;
+                }
+            }
+        }
+    }
+
+    private static String csv(int rows) {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < rows; i++) {
+            builder.append(i % 7 == 0 ? "a" : "a,b, c").append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void getRecords_ShouldApplyFilterPerColumnOfBatch() {
+
+        UpperCaseFilter filter = new UpperCaseFilter();
+        CSVInput input = new StringInput(csv(10000)).with(filter).with(new ExcludeRowFilter(3))
+                .with(new ExcludeColumnFilter(1));
+
+        List<List<String>> records = input.getRecords();
+
+        assertThat(records.size(), is(9999));
+        assertThat(records.get(0), is(Arrays.asList("A0:0")));
+        assertThat(records.get(1), is(Arrays.asList("A1:0", "C1:2")));
+        assertThat(records.get(3), is(Arrays.asList("A4:0", "C4:2")));
+
+        // Three batches of 4096 rows, of which only columns 0 and 2 are filtered.
+        assertThat(filter.batches, is(6));
+        assertThat(filter.values, is(9999 + 9999 - 10000 / 7 - 1));
+    }
+
+    @Test
+    public void getRecords_ShouldReturnSameRecordsAsIterating() {
+
+        for (int parallelism : new int[]{1, 3}) {
+
+            CSVInput input = new StringInput(csv(10000)).with(new UpperCaseFilter()).with(new ExcludeRowFilter(3))
+                    .parallel(parallelism);
+
+            List<List<String>> expected = new ArrayList<List<String>>();
+
+            // Iterating over the records passes the filter one cell at a time.
+            for (List<String> record : input) {
+                expected.add(record);
+            }
+
+            assertThat(input.getRecords(), is(expected));
+        }
+    }
+
+    @Test
+    public void apply_SingleValue_ShouldApplyBatchOfOne() {
+        assertThat(new UpperCaseFilter().apply(2, 3, "a"), is("A2:3"));
+        assertThat(new UpperCaseFilter().apply(2, 3, null), is((String) null));
+    }
+}
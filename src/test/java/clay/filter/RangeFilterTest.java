@@ -0,0 +1,111 @@
+package clay.filter;
+
+import clay.input.CSVInput;
+import clay.input.RecordHandler;
+import clay.input.StringInput;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RangeFilterTest {
+
+    // Strips a leading '#' from a cell, and excludes cells that are just "-".
+    private static class StripFilter extends RangeFilter {
+
+        int ranges = 0;
+
+        @Override
+        public boolean apply(int rowIndex, int columnIndex, char[] chars, int[] range) {
+
+            this.ranges++;
+
+            if (range[1] - range[0] == 1 && chars[range[0]] == '-') {
+                return false;
+            }
+
+            if (range[0] < range[1] && chars[range[0]] == '#') {
+                range[0]++;
+            }
+
+            return true;
+        }
+    }
+
+    private static final String CSV = " #a , - ,c\n-\n#1,#,\" #3 \"";
+
+    private static final List<List<String>> EXPECTED = Arrays.asList(Arrays.asList("a", "c"),
+            Arrays.asList("1", "", "3"));
+
+    @Test
+    public void getRecords_ShouldNarrowAndExcludeCells() {
+
+        for (int parallelism : new int[]{1, 2}) {
+            CSVInput input = new StringInput(CSV).with(new StripFilter()).parallel(parallelism);
+            assertThat(input.getRecords(), is(EXPECTED));
+        }
+    }
+
+    @Test
+    public void iterator_ShouldApplyFilterToRanges() {
+
+        StripFilter filter = new StripFilter();
+        CSVInput input = new StringInput(CSV).with(filter);
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<String> record : input) {
+            records.add(record);
+        }
+
+        assertThat(records, is(EXPECTED));
+        assertThat(filter.ranges, is(7));
+
+        List<String> views = new ArrayList<String>();
+
+        for (List<CharSequence> view : input.views()) {
+            views.add(view.toString());
+        }
+
+        assertThat(views.toString(), is(EXPECTED.toString()));
+    }
+
+    @Test
+    public void parse_ShouldPushNarrowedCells() {
+
+        final List<List<String>> records = new ArrayList<List<String>>();
+
+        new StringInput(CSV).with(new StripFilter()).parse(new RecordHandler() {
+
+            @Override
+            public void startRecord(int rowIndex) {
+                records.add(new ArrayList<String>());
+            }
+
+            @Override
+            public void cell(char[] chars, int offset, int length) {
+                records.get(records.size() - 1).add(new String(chars, offset, length));
+            }
+
+            @Override
+            public void endRecord() {
+                // The cells are collected already.
+            }
+        });
+
+        assertThat(records, is(EXPECTED));
+    }
+
+    @Test
+    public void apply_String_ShouldApplyFilterToAllChars() {
+
+        StripFilter filter = new StripFilter();
+
+        assertThat(filter.apply(0, 0, "#a"), is("a"));
+        assertThat(filter.apply(0, 0, "-"), is((String) null));
+        assertThat(filter.apply(0, 0, "b"), is("b"));
+    }
+}
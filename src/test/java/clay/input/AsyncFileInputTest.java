@@ -0,0 +1,138 @@
+package clay.input;
+
+import clay.filter.ExcludeRowFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AsyncFileInputTest {
+
+    private static final File ADDRESSES = new File("src/test/resources/addresses.csv");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_SmallBuffers_ShouldReadAllBytesInOrder() throws Exception {
+
+        byte[] expected = new byte[10000];
+        new Random(42).nextBytes(expected);
+
+        for (int size : new int[]{0, 1, 7, 10000}) {
+
+            File file = this.folder.newFile("random" + size + ".bin");
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(expected, 0, size);
+            out.close();
+
+            for (int bufferSize : new int[]{1, 3, 64, 20000}) {
+
+                ReadAheadChannel channel = new ReadAheadChannel(AsynchronousFileChannel.open(file.toPath(),
+                        StandardOpenOption.READ), 3, bufferSize);
+
+                ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(5);
+
+                while (channel.read(buffer) >= 0) {
+                    actual.write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+
+                channel.close();
+
+                assertThat(size + "/" + bufferSize, actual.toByteArray(), is(Files.readAllBytes(file.toPath())));
+            }
+        }
+    }
+
+    @Test
+    public void getRecords_ShouldReturnSameRecordsAsFileInput() throws Exception {
+
+        assertThat(new AsyncFileInput(ADDRESSES, "|").getRecords(), is(new FileInput(ADDRESSES, "|").getRecords()));
+
+        // A delimiter of more than a single char is tokenized from a reader.
+        assertThat(new AsyncFileInput(ADDRESSES, "|2").getRecords(), is(new FileInput(ADDRESSES, "|2").getRecords()));
+    }
+
+    @Test
+    public void getRecordsAsync_ShouldCompleteWithAllRecords() throws Exception {
+
+        AsyncFileInput input = new AsyncFileInput(ADDRESSES, "|");
+
+        assertThat(input.getRecordsAsync().get(), is(new FileInput(ADDRESSES, "|").getRecords()));
+    }
+
+    @Test
+    public void getRecordsAsync_LaterFilter_ShouldNotAffectRecords() throws Exception {
+
+        AsyncFileInput input = new AsyncFileInput(ADDRESSES, "|");
+        CompletableFuture<List<List<String>>> future = input.getRecordsAsync();
+
+        // The input is left alone by the parse: it can still be changed, and parsed again.
+        input.with(new ExcludeRowFilter(0));
+
+        assertThat(future.get(), is(new FileInput(ADDRESSES, "|").getRecords()));
+        assertThat(input.getRecords().size(), is(future.get().size() - 1));
+    }
+
+    @Test
+    public void parseAsync_ShouldPushAllRecords() throws Exception {
+
+        final AtomicInteger records = new AtomicInteger();
+
+        new AsyncFileInput(ADDRESSES, "|").parseAsync(new RecordHandler() {
+
+            @Override
+            public void startRecord(int rowIndex) {
+                records.incrementAndGet();
+            }
+
+            @Override
+            public void cell(char[] chars, int offset, int length) {
+                // Only the records are counted.
+            }
+
+            @Override
+            public void endRecord() {
+                // Only the records are counted.
+            }
+        }).get();
+
+        assertThat(records.get(), is(101));
+    }
+
+    @Test
+    public void getRecordsAsync_UnclosedQuote_ShouldCompleteExceptionally() throws Exception {
+
+        File file = this.folder.newFile("unclosed.csv");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("a,\"b\n".getBytes("UTF-8"));
+        out.close();
+
+        try {
+            new AsyncFileInput(file).getRecordsAsync().get();
+            fail("expected an ExecutionException");
+        }
+        catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RuntimeException.class));
+        }
+    }
+}
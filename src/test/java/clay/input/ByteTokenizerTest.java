@@ -0,0 +1,164 @@
+package clay.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ByteTokenizerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<List<String>> tokenize(Tokenizer tokenizer) throws IOException {
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        try {
+            for (List<String> record = tokenizer.next(); record != null; record = tokenizer.next()) {
+                records.add(record);
+            }
+        }
+        catch (RuntimeException e) {
+            // An unclosed quote: all tokenizers should fail in the same way.
+            return null;
+        }
+        finally {
+            tokenizer.close();
+        }
+
+        return records;
+    }
+
+    private static List<List<String>> tokenizeCells(Tokenizer tokenizer) throws IOException {
+
+        final List<List<String>> records = new ArrayList<List<String>>();
+        CellHandler handler = new CellHandler() {
+            @Override
+            public void cell(char[] chars, int offset, int length) {
+                records.get(records.size() - 1).add(new String(chars, offset, length));
+            }
+        };
+
+        try {
+            do {
+                records.add(new ArrayList<String>());
+            }
+            while (tokenizer.next(handler));
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+        finally {
+            tokenizer.close();
+        }
+
+        // The last record was added before the end of the input was known.
+        records.remove(records.size() - 1);
+
+        return records;
+    }
+
+    @Test
+    public void supports_NormalUse_ShouldReturnExpectedValue() {
+
+        assertThat(ByteTokenizer.supports(UTF_8, ",", "\"", "\"", "\n"), is(true));
+        assertThat(ByteTokenizer.supports(Charset.forName("ISO-8859-1"), "|", "'", "\\", "\n"), is(true));
+        assertThat(ByteTokenizer.supports(Charset.forName("UTF-16"), ",", "\"", "\"", "\n"), is(false));
+        assertThat(ByteTokenizer.supports(UTF_8, ",", "\"", "\"", "\r\n"), is(false));
+        assertThat(ByteTokenizer.supports(UTF_8, "⅀", "\"", "\"", "\n"), is(false));
+    }
+
+    @Test
+    public void next_RandomInput_ShouldReturnSameRecordsAsCharTokenizer() throws IOException {
+
+        Random random = new Random(7);
+        String[] alphabet = {"a", "b", " ", ",", "\"", "\\", "\n", "é", "ℋ", "😀"};
+
+        for (int i = 0; i < 1000; i++) {
+
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(60);
+
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            String csv = builder.toString();
+            byte[] bytes = csv.getBytes(UTF_8);
+
+            for (String escapeQuotation : new String[]{"\"", "\\"}) {
+
+                List<List<String>> expected = tokenize(
+                        new CharTokenizer(new StringReader(csv), ",", "\"", escapeQuotation, "\n"));
+
+                List<List<String>> actual = tokenize(ByteTokenizer.forChannel(
+                        Channels.newChannel(new ByteArrayInputStream(bytes)), 16, UTF_8, ",", "\"", escapeQuotation,
+                        "\n"));
+
+                assertThat(csv, actual, is(expected));
+
+                actual = tokenizeCells(ByteTokenizer.forChannel(
+                        Channels.newChannel(new ByteArrayInputStream(bytes)), 16, UTF_8, ",", "\"", escapeQuotation,
+                        "\n"));
+
+                assertThat(csv, actual, is(expected));
+
+                File file = this.folder.newFile();
+                OutputStream out = new FileOutputStream(file);
+                out.write(bytes);
+                out.close();
+
+                actual = tokenize(ByteTokenizer.forMappedFile(FileChannel.open(file.toPath(), StandardOpenOption.READ),
+                        16, UTF_8, ",", "\"", escapeQuotation, "\n"));
+
+                assertThat(csv, actual, is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void position_NormalUse_ShouldReturnNumberOfBytesTokenized() throws IOException {
+
+        byte[] bytes = "é,b\nc,d\n".getBytes(UTF_8);
+        Tokenizer tokenizer = ByteTokenizer.forChannel(Channels.newChannel(new ByteArrayInputStream(bytes)), 16,
+                UTF_8, ",", "\"", "\"", "\n");
+
+        assertThat(tokenizer.next(), is(Arrays.asList("é", "b")));
+        assertThat(tokenizer.position(), is(5L));
+        assertThat(tokenizer.next(), is(Arrays.asList("c", "d")));
+        assertThat(tokenizer.position(), is(9L));
+        assertThat(tokenizer.next() == null, is(true));
+    }
+
+    @Test
+    public void nextCellHandler_Latin1Input_ShouldDecodeCells() throws IOException {
+
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        byte[] bytes = "\u00e9t\u00e9,\"a\u00ff\"\n".getBytes(latin1);
+
+        List<List<String>> records = tokenizeCells(ByteTokenizer.forChannel(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), 16, latin1, ",", "\"", "\"", "\n"));
+
+        assertThat(records, is(Arrays.asList(Arrays.asList("\u00e9t\u00e9", "a\u00ff"))));
+    }
+}
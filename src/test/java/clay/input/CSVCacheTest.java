@@ -0,0 +1,196 @@
+package clay.input;
+
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.TrimFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CSVCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // The number of times the records of a CountingInput were parsed.
+    private static final AtomicInteger PARSED = new AtomicInteger();
+
+    // An input that counts how often it is parsed, and parses slowly.
+    static final class CountingInput extends FileInput {
+
+        CountingInput(File file) throws Exception {
+            super(file);
+        }
+
+        @Override
+        public List<List<String>> getRecords() {
+
+            PARSED.incrementAndGet();
+
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            return super.getRecords();
+        }
+    }
+
+    @Test
+    public void getRecords_SameInput_ShouldParseOnce() throws Exception {
+
+        File file = TestFiles.write(this.folder, "same.csv", "a, b\nc, d\n");
+        CSVCache cache = new CSVCache(1 << 20);
+
+        List<List<String>> records = cache.getRecords(new FileInput(file).with(new TrimFilter())
+                .with(new ExcludeRowFilter(1, 5)));
+
+        assertThat(records, is(Arrays.asList(Arrays.asList("a", "b"))));
+
+        // Equal filters, in the same order.
+        assertThat(cache.getRecords(new FileInput(file).with(new TrimFilter()).with(new ExcludeRowFilter(5, 1))),
+                sameInstance(records));
+
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+
+        // Different filters, dialect or columns.
+        assertThat(cache.getRecords(new FileInput(file).with(new TrimFilter())), not(sameInstance(records)));
+        cache.getRecords(new FileInput(file).with(new TrimFilter()).with(new ExcludeColumnFilter(1, 5)));
+        cache.getRecords(new FileInput(file, ";"));
+        cache.getRecords(new FileInput(file).select(1));
+
+        assertThat(cache.getMissCount(), is(5L));
+        assertThat(cache.getSize(), is(5));
+    }
+
+    @Test
+    public void getRecords_ChangedFile_ShouldParseAgain() throws Exception {
+
+        File file = TestFiles.write(this.folder, "changed.csv", "a\nb\n");
+        CSVCache cache = new CSVCache(1 << 20);
+
+        assertThat(cache.getRecords(new FileInput(file)).size(), is(2));
+
+        TestFiles.append(file, "c\n");
+
+        assertThat(cache.getRecords(new FileInput(file)).size(), is(3));
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void getRecords_OverBudget_ShouldEvictLeastRecentlyRequested() throws Exception {
+
+        File[] files = new File[3];
+        CSVCache cache = new CSVCache(Long.MAX_VALUE);
+
+        for (int i = 0; i < files.length; i++) {
+            files[i] = TestFiles.write(this.folder, "lru" + i + ".csv", "a,b,c\nd,e,f\n");
+            cache.getRecords(new FileInput(files[i]));
+        }
+
+        long weight = cache.getBytes() / 3;
+
+        // Request the first one again, so that the second one is the least recently requested.
+        cache.getRecords(new FileInput(files[0]));
+        cache.setMaxBytes(weight * 2);
+
+        assertThat(cache.getSize(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.getBytes(), is(weight * 2));
+
+        cache.getRecords(new FileInput(files[0]));
+        cache.getRecords(new FileInput(files[2]));
+        assertThat(cache.getMissCount(), is(3L));
+
+        cache.getRecords(new FileInput(files[1]));
+        assertThat(cache.getMissCount(), is(4L));
+        assertThat(cache.getSize(), is(2));
+    }
+
+    @Test
+    public void getRecords_ConcurrentRequests_ShouldParseOnce() throws Exception {
+
+        final File file = TestFiles.write(this.folder, "concurrent.csv", "a,b\nc,d\n");
+        final CSVCache cache = new CSVCache(1 << 20);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<List<List<String>>> results = new ArrayList<List<List<String>>>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        PARSED.set(0);
+
+        for (int i = 0; i < 8; i++) {
+
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        List<List<String>> records = cache.getRecords(new CountingInput(file));
+
+                        synchronized (results) {
+                            results.add(records);
+                        }
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(PARSED.get(), is(1));
+        assertThat(results.size(), is(8));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(7L));
+
+        for (List<List<String>> records : results) {
+            assertThat(records, sameInstance(results.get(0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRecords_StringInput_ShouldThrowException() {
+        new CSVCache(1 << 20).getRecords(new StringInput("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getRecords_ModifyRecords_ShouldThrowException() throws Exception {
+
+        File file = TestFiles.write(this.folder, "modify.csv", "a\n");
+
+        new CSVCache(1 << 20).getRecords(new FileInput(file)).clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getRecords_ModifyRecord_ShouldThrowException() throws Exception {
+
+        File file = TestFiles.write(this.folder, "modify.csv", "a\n");
+
+        new CSVCache(1 << 20).getRecords(new FileInput(file)).get(0).set(0, "b");
+    }
+}
@@ -0,0 +1,120 @@
+package clay.input;
+
+import clay.filter.Filter;
+import clay.filter.TrimFilter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CSVIndexTest {
+
+    private static List<List<String>> tokenize(String csv, String d, String q, String e, String r)
+            throws IOException {
+
+        List<List<String>> records = new ArrayList<List<String>>();
+        Tokenizer tokenizer = new ReaderTokenizer(new StringReader(csv), d, q, e, r);
+
+        try {
+            for (List<String> record = tokenizer.next(); record != null; record = tokenizer.next()) {
+                records.add(record);
+            }
+        }
+        catch (RuntimeException ex) {
+            return null;
+        }
+
+        return records;
+    }
+
+    private static List<List<String>> read(String csv, String d, String q, String e, String r) {
+
+        CSVIndex index;
+
+        try {
+            index = new CSVIndex(csv, d, q, e, r, Collections.<Filter>emptyList());
+        }
+        catch (RuntimeException ex) {
+            return null;
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (int row = 0; row < index.getRowCount(); row++) {
+            records.add(index.getRecord(row));
+        }
+
+        return records;
+    }
+
+    @Test
+    public void getRecord_RandomInput_ShouldReturnRawRecords() throws IOException {
+
+        Random random = new Random(9);
+        String[][] dialects = {{",", "\"", "\"", "\n"}, {",", "\"", "\\", "\n"}, {"::", "'", "''", "\r\n"}};
+        String[] alphabet = {"a", " ", ",", ":", "\"", "'", "\\", "\r", "\n"};
+
+        for (int i = 0; i < 3000; i++) {
+
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            String csv = builder.toString();
+
+            for (String[] dialect : dialects) {
+                assertThat(csv, read(csv, dialect[0], dialect[1], dialect[2], dialect[3]),
+                        is(tokenize(csv, dialect[0], dialect[1], dialect[2], dialect[3])));
+            }
+        }
+    }
+
+    @Test
+    public void getString_WithFilters_ShouldApplyFiltersToCell() {
+
+        CSVIndex index = new StringInput(" a , \"b,\" \n\n c ,d").with(new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return columnIndex == 1 && rowIndex == 2 ? null : value;
+            }
+        }).getIndex();
+
+        assertThat(index.getRowCount(), is(3));
+        assertThat(index.getString(0, 0), is("a"));
+        assertThat(index.getString(0, 1), is("b,"));
+        assertThat(index.getString(0, 2) == null, is(true));
+        assertThat(index.getWidth(1), is(1));
+        assertThat(index.getString(1, 0), is(""));
+        assertThat(index.getString(2, 1) == null, is(true));
+        assertThat(index.getRecord(2), is(Arrays.asList("c")));
+    }
+
+    @Test
+    public void getString_WithoutTrimFilter_ShouldReturnRawCell() {
+
+        CSVIndex index = new StringInput(" a ,\"\"").without(TrimFilter.class).getIndex();
+
+        assertThat(index.getRecord(0), is(Arrays.asList(" a ")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void getIndex_UnclosedQuote_ShouldThrowException() {
+        new StringInput("a,\"b").getIndex();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getString_NoSuchRow_ShouldThrowException() {
+        new StringInput("a").getIndex().getString(1, 0);
+    }
+}
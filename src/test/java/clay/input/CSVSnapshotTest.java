@@ -0,0 +1,156 @@
+package clay.input;
+
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.Filter;
+import clay.filter.TrimFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CSVSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void open_WrittenSnapshot_ShouldReturnFilteredRecords() throws Exception {
+
+        CSVInput input = new FileInput(new File("src/test/resources/addresses.csv"), "|")
+                .with(new ExcludeColumnFilter(1))
+                .with(new TrimFilter());
+
+        File file = new File(this.folder.getRoot(), "addresses.snap");
+        CSVSnapshot.write(input, file);
+
+        CSVSnapshot snapshot = CSVSnapshot.open(file);
+        List<List<String>> expected = input.getRecords();
+
+        assertThat(snapshot.getRecordCount(), is((long) expected.size()));
+        assertThat(snapshot.getRecords(), is(expected));
+        assertThat(snapshot.getRecord(7), is(expected.get(7)));
+        assertThat(snapshot.getRecords(99, 200), is(expected.subList(99, expected.size())));
+    }
+
+    @Test
+    public void open_SmallSegments_ShouldReadRecordsAcrossSegments() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 500; i++) {
+            builder.append(i).append(",\"ℋ\n").append(i % 7 == 0 ? "a longer cell of more than a segment" : "")
+                    .append("\",,").append(i * 31).append('\n');
+        }
+
+        CSVInput input = new StringInput(builder.toString());
+        File file = new File(this.folder.getRoot(), "segments.snap");
+        CSVSnapshot.write(input, file);
+
+        CSVSnapshot snapshot = CSVSnapshot.open(file, 32);
+
+        List<List<String>> expected = input.getRecords();
+
+        assertThat(snapshot.getRecords(), is(expected));
+        assertThat(snapshot.getRecord(499), is(expected.get(499)));
+        assertThat(snapshot.getRecord(499).get(3), is("15469"));
+    }
+
+    @Test
+    public void openSnapshot_ChangedFile_ShouldIgnoreSnapshot() throws Exception {
+
+        File file = TestFiles.write(this.folder, "changed.csv", "a,b\nc,d\n");
+        FileInput input = new FileInput(file);
+
+        assertThat(input.openSnapshot(), nullValue());
+        input.writeSnapshot();
+        assertThat(input.openSnapshot(), notNullValue());
+        assertThat(input.openSnapshot().getRecords(), is(input.getRecords()));
+        assertThat(new FileInput(file, ";").openSnapshot(), nullValue());
+
+        TestFiles.append(file, "e,f\n");
+
+        assertThat(input.openSnapshot(), nullValue());
+    }
+
+    @Test
+    public void openSnapshot_OtherFilters_ShouldIgnoreSnapshot() throws Exception {
+
+        File file = TestFiles.write(this.folder, "filtered.csv", "a,b,c\nd,e,f\ng,h,i\n");
+
+        ((FileInput) new FileInput(file).with(new ExcludeRowFilter(1)).select(0, 2)).writeSnapshot();
+
+        FileInput same = (FileInput) new FileInput(file).with(new ExcludeRowFilter(1)).select(0, 2);
+
+        assertThat(same.openSnapshot().getRecords(), is(Arrays.asList(Arrays.asList("a", "c"),
+                Arrays.asList("g", "i"))));
+
+        assertThat(new FileInput(file).openSnapshot(), nullValue());
+        assertThat(((FileInput) new FileInput(file).with(new ExcludeRowFilter(2)).select(0, 2)).openSnapshot(),
+                nullValue());
+        assertThat(((FileInput) new FileInput(file).with(new ExcludeRowFilter(1)).select(0, 1)).openSnapshot(),
+                nullValue());
+        assertThat(((FileInput) new FileInput(file).with(new ExcludeRowFilter(1)).select(0, 2)
+                .without(TrimFilter.class)).openSnapshot(), nullValue());
+
+        // Conditions and other filters cannot be compared.
+        Predicate<CharSequence> any = new Predicate<CharSequence>() {
+            @Override
+            public boolean test(CharSequence cell) {
+                return true;
+            }
+        };
+
+        FileInput where = (FileInput) new FileInput(file).with(new ExcludeRowFilter(1)).select(0, 2).where(0, any);
+        where.writeSnapshot();
+        assertThat(where.openSnapshot(), nullValue());
+
+        FileInput custom = (FileInput) new FileInput(file).with(new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return value;
+            }
+        });
+        custom.writeSnapshot();
+        assertThat(custom.openSnapshot(), nullValue());
+    }
+
+    @Test
+    public void write_UnclosedQuote_ShouldLeaveNoFiles() throws Exception {
+
+        File file = new File(this.folder.getRoot(), "unclosed.snap");
+
+        try {
+            CSVSnapshot.write(new StringInput("a,b\n\"c,d\n"), file);
+            fail("expected a RuntimeException");
+        }
+        catch (RuntimeException e) {
+            assertThat(this.folder.getRoot().list().length, is(0));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_NotASnapshot_ShouldThrowException() throws Exception {
+        CSVSnapshot.open(TestFiles.write(this.folder, "not.snap", "a,b,c\n1,2,3\n4,5,6\n7,8,9\n"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getRecord_NoSuchRecord_ShouldThrowException() throws Exception {
+
+        File file = new File(this.folder.getRoot(), "one.snap");
+        CSVSnapshot.write(new StringInput("a"), file);
+
+        CSVSnapshot.open(file).getRecord(1);
+    }
+}
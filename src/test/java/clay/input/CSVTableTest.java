@@ -0,0 +1,188 @@
+package clay.input;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CSVTableTest {
+
+    @Test
+    public void getTable_NumericColumns_ShouldBeStoredAsPrimitives() {
+
+        CSVTable table = new StringInput("id,big,ratio,name\n" +
+                "1,3000000000,0.5,a\n" +
+                "-2,-1,1.0E10,b\n" +
+                "3,,-0.25,").getTable();
+
+        assertThat(table.getRowCount(), is(4));
+        assertThat(table.getColumnCount(), is(4));
+
+        // The header makes every column text.
+        assertThat(table.getType(0), is(CSVTable.Type.STRING));
+
+        CSVTable values = new StringInput("1,3000000000,0.5,a\n" +
+                "-2,-1,1.0E10,b\n" +
+                "3,,-0.25,").getTable();
+
+        assertThat(values.getType(0), is(CSVTable.Type.INT));
+        assertThat(values.getType(1), is(CSVTable.Type.LONG));
+        assertThat(values.getType(2), is(CSVTable.Type.DOUBLE));
+        assertThat(values.getType(3), is(CSVTable.Type.STRING));
+
+        assertThat(values.getInts(0), is(new int[]{1, -2, 3}));
+        assertThat(values.getLongs(1), is(new long[]{3000000000L, -1, 0}));
+        assertThat(values.getDouble(1, 2), is(1.0E10));
+        assertThat(values.getLong(2, 0), is(3L));
+        assertThat(values.getDouble(0, 0), is(1.0));
+
+        assertThat(values.isEmpty(2, 1), is(true));
+        assertThat(values.isEmpty(1, 1), is(false));
+        assertThat(values.getString(2, 1), is(""));
+        assertThat(values.getString(1, 1), is("-1"));
+    }
+
+    @Test
+    public void getTable_NonCanonicalNumbers_ShouldBeStoredAsText() {
+
+        String[] columns = {"007", "+1", "-0", "1.50", "1e3", "NaN", "9223372036854775808", "1,2.5"};
+
+        for (String column : columns) {
+
+            CSVTable table = new StringInput(column.replace(',', '\n')).getTable();
+
+            assertThat(column, table.getType(0), is(CSVTable.Type.STRING));
+            assertThat(column, table.getRecords(), is(new StringInput(column.replace(',', '\n')).getRecords()));
+        }
+    }
+
+    @Test
+    public void getTable_RaggedRows_ShouldReturnNullForAbsentCells() {
+
+        CSVTable table = new StringInput("1\n2,x,5\n3,y").getTable();
+
+        assertThat(table.getColumnCount(), is(3));
+        assertThat(table.getWidth(0), is(1));
+        assertThat(table.getWidth(1), is(3));
+        assertThat(table.getWidth(2), is(2));
+        assertThat(table.getString(0, 1) == null, is(true));
+        assertThat(table.getString(2, 2) == null, is(true));
+        assertThat(table.isEmpty(0, 2), is(true));
+        assertThat(table.getInts(2), is(new int[]{0, 5, 0}));
+        assertThat(table.getRecords(), is(Arrays.asList(
+                Arrays.asList("1"), Arrays.asList("2", "x", "5"), Arrays.asList("3", "y"))));
+    }
+
+    @Test
+    public void getTable_LowCardinality_ShouldStoreCodes() {
+
+        CSVInput input = new StringInput(",1,x\nred,2,y\nblue,3,z\nred\n,x,v\nblue,3,w");
+        CSVTable table = input.getTable(5);
+
+        assertThat(table.getType(0), is(CSVTable.Type.DICTIONARY));
+        assertThat(table.getType(1), is(CSVTable.Type.DICTIONARY));
+        assertThat(table.getType(2), is(CSVTable.Type.STRING));
+
+        // The empty cell before the first value has code 0.
+        assertThat(table.getValueCount(0), is(3));
+        assertThat(table.getCode(0, 0), is(0));
+        assertThat(table.getCode(1, 0), is(table.getCode(3, 0)));
+        assertThat(table.getCode(0, "red"), is(table.getCode(1, 0)));
+        assertThat(table.getCode(0, new CharSlice("blue".toCharArray(), 0, 4)), is(2));
+        assertThat(table.getCode(0, "green"), is(-1));
+        assertThat(table.getValue(0, table.getCode(2, 0)), is("blue"));
+        assertThat(table.isEmpty(4, 0), is(true));
+        assertThat(table.isEmpty(1, 0), is(false));
+
+        // A numeric column that turns out to hold text, and an absent cell with the code of the empty value.
+        assertThat(table.getCode(3, 1), is(table.getCode(1, "")));
+        assertThat(table.getString(3, 1) == null, is(true));
+        assertThat(table.getString(4, 1), is("x"));
+
+        assertThat(table.getRecords(), is(input.getRecords()));
+    }
+
+    @Test
+    public void getTable_ManyValues_ShouldWidenTheCodes() {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            builder.append('v').append(i % 300).append(',').append('w').append(i).append('\n');
+        }
+
+        CSVInput input = new StringInput(builder.toString());
+        CSVTable table = input.getTable(300);
+
+        assertThat(table.getType(0), is(CSVTable.Type.DICTIONARY));
+        assertThat(table.getType(1), is(CSVTable.Type.STRING));
+        assertThat(table.getValueCount(0), is(300));
+        assertThat(table.getCode(299, 0), is(299));
+        assertThat(table.getCode(999, 0), is(99));
+        assertThat(table.getCode(300, 0), is(0));
+        assertThat(table.getRecords(), is(input.getRecords()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getTable_TooHighCardinality_ShouldThrowException() {
+        new StringInput("a").getTable(CSVTable.MAX_CARDINALITY + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getCode_StringColumn_ShouldThrowException() {
+        new StringInput("a,1").getTable().getCode(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getInts_StringColumn_ShouldThrowException() {
+        new StringInput("a,1").getTable().getInts(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getString_NoSuchRow_ShouldThrowException() {
+        new StringInput("a,1").getTable().getString(1, 0);
+    }
+
+    @Test
+    public void getRecords_RandomInput_ShouldReturnSameRecordsAsInput() {
+
+        Random random = new Random(8);
+        String[] alphabet = {"0", "1", "7", "-", ".", "E", "a", " ", ",", ",", "\n", "\n"};
+
+        for (int i = 0; i < 2000; i++) {
+
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            CSVInput input = new StringInput(builder.toString());
+            List<List<String>> expected = input.getRecords();
+            CSVTable table = input.getTable();
+
+            assertThat(builder.toString(), table.getRecords(), is(expected));
+            assertThat(table.getRowCount(), is(expected.size()));
+            assertThat(builder.toString(), input.getTable(2).getRecords(), is(expected));
+        }
+    }
+
+    @Test
+    public void isCanonicalLong_NormalUse_ShouldReturnExpectedValue() {
+
+        assertThat(CSVTable.isCanonicalLong("0"), is(true));
+        assertThat(CSVTable.isCanonicalLong("-9223372036854775808"), is(true));
+        assertThat(CSVTable.isCanonicalLong("9223372036854775807"), is(true));
+        assertThat(CSVTable.isCanonicalLong("9223372036854775808"), is(false));
+        assertThat(CSVTable.isCanonicalLong("-"), is(false));
+        assertThat(CSVTable.isCanonicalLong("-0"), is(false));
+        assertThat(CSVTable.isCanonicalLong("01"), is(false));
+        assertThat(CSVTable.parseLong("-9223372036854775808"), is(Long.MIN_VALUE));
+        assertThat(CSVTable.parseLong("42"), is(42L));
+    }
+}
@@ -0,0 +1,85 @@
+package clay.input;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CharSliceTest {
+
+    private static CharSlice slice(String padded, int offset, int length) {
+        return new CharSlice(padded.toCharArray(), offset, length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newCharSlice_NullChars_ShouldThrowException() {
+        new CharSlice(null, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newCharSlice_RangeOutOfBounds_ShouldThrowException() {
+        new CharSlice(new char[4], 2, 3);
+    }
+
+    @Test
+    public void charAt_NormalUse_ShouldReturnCharsOfRange() {
+
+        CharSlice slice = slice("xxabcxx", 2, 3);
+
+        assertThat(slice.length(), is(3));
+        assertThat(slice.charAt(0), is('a'));
+        assertThat(slice.charAt(2), is('c'));
+        assertThat(slice.toString(), is("abc"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void charAt_IndexOutOfRange_ShouldThrowException() {
+        slice("xxabcxx", 2, 3).charAt(3);
+    }
+
+    @Test
+    public void subSequence_NormalUse_ShouldReturnView() {
+
+        CharSlice slice = slice("xxabcxx", 2, 3);
+
+        assertThat(slice.subSequence(1, 3).toString(), is("bc"));
+        assertThat(slice.subSequence(0, 3) == slice, is(true));
+        assertThat(slice.subSequence(1, 1).isEmpty(), is(true));
+    }
+
+    @Test
+    public void trim_NormalUse_ShouldBehaveLikeStringTrim() {
+
+        for (String s : new String[]{"", " ", " a ", "\t a b\n", "ab", "  ab", "ab  "}) {
+            String padded = "xx" + s + "xx";
+            assertThat(s, slice(padded, 2, s.length()).trim().toString(), is(s.trim()));
+        }
+    }
+
+    @Test
+    public void equals_SameChars_ShouldBeEqualWithStringHashCode() {
+
+        CharSlice a = slice("xxabc", 2, 3);
+        CharSlice b = slice("abcyy", 0, 3);
+
+        assertThat(a.equals(b), is(true));
+        assertThat(a.hashCode(), is("abc".hashCode()));
+        assertThat(a.hashCode(), is(b.hashCode()));
+        assertThat(a.equals(slice("abd", 0, 3)), is(false));
+        assertThat(a.equals("abc"), is(false));
+        assertThat(a.contentEquals("abc"), is(true));
+    }
+
+    @Test
+    public void compareTo_NormalUse_ShouldOrderLikeStrings() {
+
+        String[][] pairs = {{"abc", "abd"}, {"ab", "abc"}, {"b", "a"}, {"abc", "abc"}};
+
+        for (String[] pair : pairs) {
+            int expected = Integer.signum(pair[0].compareTo(pair[1]));
+            int actual = Integer.signum(slice(pair[0], 0, pair[0].length()).compareTo(
+                    slice(pair[1], 0, pair[1].length())));
+            assertThat(actual, is(expected));
+        }
+    }
+}
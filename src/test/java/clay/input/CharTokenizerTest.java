@@ -0,0 +1,109 @@
+package clay.input;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class CharTokenizerTest {
+
+    // A reader that returns at most a few chars at a time, to force the tokenizer to refill its window often.
+    private static class TrickleReader extends StringReader {
+
+        private final Random random;
+
+        TrickleReader(String s, Random random) {
+            super(s);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 1 + this.random.nextInt(3)));
+        }
+    }
+
+    private static List<List<String>> tokenize(Tokenizer tokenizer) throws IOException {
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<String> record = tokenizer.next(); record != null; record = tokenizer.next()) {
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    private static List<List<String>> generic(String csv, String escapeQuotation) throws IOException {
+        return tokenize(new ReaderTokenizer(new StringReader(csv), ",", "\"", escapeQuotation, "\n"));
+    }
+
+    private static List<List<String>> fast(Reader reader, String escapeQuotation) throws IOException {
+        return tokenize(new CharTokenizer(reader, ",", "\"", escapeQuotation, "\n"));
+    }
+
+    @Test
+    public void create_SingleCharDialect_ShouldReturnCharTokenizer() {
+
+        assertThat(Tokenizer.create(new StringReader(""), ",", "\"", "\"", "\n"), instanceOf(CharTokenizer.class));
+        assertThat(Tokenizer.create(new StringReader(""), ",", "\"", "\"", "\r\n"), instanceOf(ReaderTokenizer.class));
+        assertThat(Tokenizer.create(new StringReader(""), "::", "\"", "\"", "\n"), instanceOf(ReaderTokenizer.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newCharTokenizer_MultiCharDialect_ShouldThrowException() {
+        new CharTokenizer(new StringReader(""), ",", "\"", "\"", "\r\n");
+    }
+
+    @Test
+    public void next_RandomInput_ShouldReturnSameRecordsAsGenericTokenizer() throws IOException {
+
+        Random random = new Random(42);
+        char[] alphabet = {'a', 'b', ' ', ',', '"', '\\', '\n'};
+
+        for (int i = 0; i < 2000; i++) {
+
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(40);
+
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            String csv = builder.toString();
+
+            for (String escapeQuotation : new String[]{"\"", "\\"}) {
+
+                List<List<String>> expected;
+
+                try {
+                    expected = generic(csv, escapeQuotation);
+                }
+                catch (RuntimeException e) {
+                    // An unclosed quote: the fast tokenizer should fail as well.
+                    expected = null;
+                }
+
+                List<List<String>> actual;
+
+                try {
+                    actual = fast(new TrickleReader(csv, random), escapeQuotation);
+                }
+                catch (RuntimeException e) {
+                    actual = null;
+                }
+
+                assertThat(csv, actual, is(expected));
+            }
+        }
+    }
+}
@@ -1,15 +1,33 @@
 package clay.input;
 
+import clay.filter.TrimFilter;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 public class FileInputTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void getRecords_DefaultDelimiter_ShouldReturnExpectedValue() throws Exception {
 
@@ -29,4 +47,222 @@ public class FileInputTest {
 
         assertThat(records.size(), is(101));
     }
+
+    @Test
+    public void getRecords_Parallel_ShouldNotKeepInput() throws Exception {
+
+        File file = new File("src/test/resources/addresses.csv");
+        FileInput input = (FileInput) new FileInput(file, "|").parallel(4);
+
+        assertThat(input.getRecords(), is(new FileInput(file, "|").getRecords()));
+        assertThat(input.input == null, is(true));
+    }
+
+    @Test
+    public void serialize_FileInputs_ShouldRestoreTheCharset() throws Exception {
+
+        File file = new File("src/test/resources/test.csv");
+        Charset latin1 = Charset.forName("ISO-8859-1");
+
+        for (FileInput input : new FileInput[]{new FileInput(file), new MappedFileInput(file),
+                new AsyncFileInput(file), new FileInput(file, ",", "\"", "\"", "\n", latin1)}) {
+
+            // The filters are not serializable.
+            input.without(TrimFilter.class);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(input);
+            out.close();
+
+            FileInput copy = (FileInput) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                    .readObject();
+
+            assertThat(copy.getCharset(), is(input.getCharset()));
+            assertThat(copy.getRecords(), is(input.getRecords()));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void newFileInput_NonExistingFile_ShouldThrowException() throws Exception {
+        new FileInput(new File("src/test/resources/does-not-exist.csv"));
+    }
+
+    @Test
+    public void getRecords_UnicodeMetaChars_ShouldReturnExpectedValues() throws Exception {
+
+        CSVInput input = new FileInput(new File("src/test/resources/unicode.csv"), "⅀", "ℋ", "\\");
+
+        List<List<String>> records = input.getRecords();
+
+        assertThat(records.size(), is(2));
+        assertThat(records.get(1), is(Arrays.asList("1", "2⅀ℋ2⅀2", "3")));
+    }
+
+    @Test
+    public void iterator_RecordsSpanningWindows_ShouldReturnExpectedValues() throws Exception {
+
+        // Enough records to make delimiters, record ends and quotes straddle the window boundaries.
+        int count = (3 * Tokenizer.WINDOW_SIZE) / 17;
+        File file = this.folder.newFile("large.csv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        for (int i = 0; i < count; i++) {
+            writer.write(i + "::\"a\"\"" + i + "\"::ℋ\r\n");
+        }
+
+        writer.close();
+
+        CSVInput input = new FileInput(file, "::", "\"", "\"", "\r\n");
+
+        int index = 0;
+
+        for (List<String> record : input) {
+            assertThat(record, is(Arrays.asList(String.valueOf(index), "a\"" + index, "ℋ")));
+            index++;
+        }
+
+        assertThat(index, is(count));
+        assertThat(input.getInput().length(), is((int) file.length() - (2 * count)));
+    }
+
+    @Test
+    public void getRecords_WithIndex_ShouldReturnSameRecordsAsWithout() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i % 10 == 0 ? "\n" : i + ",\"é\n" + i + "\"\n");
+        }
+
+        for (String[] dialect : new String[][]{{",", "\n"}, {",,", "\n"}}) {
+
+            File file = TestFiles.write(this.folder, "indexed" + dialect[0].length() + ".csv",
+                    builder.toString().replace(",", dialect[0]));
+
+            FileInput input = new FileInput(file, dialect[0], "\"", "\"", dialect[1]);
+            List<List<String>> expected = new ArrayList<List<String>>();
+
+            for (int from = 0; from < 1000; from += 97) {
+                expected.add(Arrays.asList(String.valueOf(input.getRecords(from, from + 150).size())));
+                expected.addAll(input.getRecords(from, from + 150));
+                expected.add(input.getRecord(from));
+            }
+
+            assertThat(input.hasIndex(), is(false));
+            input.buildIndex(16);
+            assertThat(input.hasIndex(), is(true));
+
+            List<List<String>> actual = new ArrayList<List<String>>();
+
+            for (int from = 0; from < 1000; from += 97) {
+                actual.add(Arrays.asList(String.valueOf(input.getRecords(from, from + 150).size())));
+                actual.addAll(input.getRecords(from, from + 150));
+                actual.add(input.getRecord(from));
+            }
+
+            assertThat(actual, is(expected));
+            assertThat(input.getRecord(1), is(Arrays.asList("1", "é\n1")));
+            assertThat(input.getRecord(10) == null, is(true));
+            assertThat(input.getRecord(5000) == null, is(true));
+        }
+    }
+
+    @Test
+    public void hasIndex_ChangedFile_ShouldIgnoreIndex() throws Exception {
+
+        File file = TestFiles.write(this.folder, "changed.csv", "a\nb\nc\n");
+        FileInput input = new FileInput(file);
+
+        input.buildIndex(1);
+        assertThat(input.hasIndex(), is(true));
+        assertThat(new FileInput(file, ";").hasIndex(), is(false));
+
+        TestFiles.append(file, "d\n");
+
+        assertThat(input.hasIndex(), is(false));
+        assertThat(input.getRecord(3), is(Arrays.asList("d")));
+    }
+
+    @Test
+    public void head_LargeFile_ShouldStopReadingAfterLastRecord() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 100000; i++) {
+            builder.append(i).append(",x\n");
+        }
+
+        // A quoted cell that is not closed, far beyond the records that are read.
+        File file = TestFiles.write(this.folder, "head.csv", builder.append("\"unclosed\n").toString());
+
+        for (CSVInput input : new CSVInput[]{new FileInput(file), new FileInput(file, ",,")}) {
+
+            List<List<String>> records = input.head(3);
+
+            assertThat(records.size(), is(3));
+            assertThat(records.get(2).get(0).startsWith("2"), is(true));
+        }
+    }
+
+    @Test
+    public void select_ByteTokenized_ShouldReturnSameRecordsAsExcludedColumns() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            builder.append(i).append(",\"a\n\"\"").append(i).append("\",ℋ").append(i % 7).append(",x\n");
+        }
+
+        File file = TestFiles.write(this.folder, "select.csv", builder.toString());
+
+        List<List<String>> expected = new ArrayList<List<String>>();
+
+        for (List<String> record : new FileInput(file).getRecords()) {
+            expected.add(Arrays.asList(record.get(1), record.get(2)));
+        }
+
+        assertThat(new FileInput(file).select(2, 1).getRecords(), is(expected));
+        assertThat(new FileInput(file).select(1, 2).getTable().getRowCount(), is(expected.size()));
+    }
+
+    @Test
+    public void where_ByteTokenized_ShouldOnlyReturnMatchingRecords() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            builder.append("\"ℋ").append(i % 20).append("\",").append(i).append('\n');
+        }
+
+        File file = TestFiles.write(this.folder, "where.csv", builder.toString());
+
+        CSVInput input = new FileInput(file).where(0, new Predicate<CharSequence>() {
+            @Override
+            public boolean test(CharSequence cell) {
+                return cell.toString().equals("ℋ7");
+            }
+        });
+
+        List<List<String>> records = input.getRecords();
+
+        assertThat(records.size(), is(1000));
+        assertThat(records.get(999), is(Arrays.asList("ℋ7", "19987")));
+    }
+
+    @Test
+    public void intern_ByteTokenized_ShouldReturnSameInstances() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++) {
+            builder.append(i).append(",ℋ").append(i % 4).append('\n');
+        }
+
+        File file = TestFiles.write(this.folder, "intern.csv", builder.toString());
+        List<List<String>> records = new FileInput(file).intern(10).getRecords();
+
+        assertThat(records, is(new FileInput(file).getRecords()));
+        assertThat(records.get(1).get(1) == records.get(2997).get(1), is(true));
+    }
 }
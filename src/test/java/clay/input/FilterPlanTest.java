@@ -0,0 +1,99 @@
+package clay.input;
+
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeColumnRangeFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.ExcludeRowRangeFilter;
+import clay.filter.Filter;
+import clay.filter.TrimFilter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FilterPlanTest {
+
+    // Applies the filters one by one, like they were applied before they were compiled.
+    private static String apply(Filter[] filters, int rowIndex, int columnIndex, String value) {
+
+        for (Filter filter : filters) {
+
+            value = filter.apply(rowIndex, columnIndex, value);
+
+            if (value == null) {
+                return null;
+            }
+        }
+
+        return value;
+    }
+
+    @Test
+    public void apply_RandomExclusions_ShouldMatchTheFilters() {
+
+        Random random = new Random(42);
+
+        for (int test = 0; test < 50; test++) {
+
+            Filter[] filters = new Filter[]{
+                    new ExcludeRowFilter(random.nextInt(50), random.nextInt(50), null, random.nextInt(50)),
+                    new ExcludeRowRangeFilter(10 + random.nextInt(20), 30 + random.nextInt(20)),
+                    new ExcludeColumnFilter(random.nextInt(20), random.nextInt(2000), -1, random.nextInt(20)),
+                    new ExcludeColumnRangeFilter(5 + random.nextInt(10),
+                            15 + random.nextInt(FilterPlan.MAX_TABLE_SIZE)),
+                    new TrimFilter()
+            };
+
+            FilterPlan plan = new FilterPlan(Arrays.asList(filters));
+
+            for (int row = 0; row < 60; row++) {
+                for (int column = 0; column < 2100; column++) {
+                    assertThat(row + "/" + column, plan.apply(row, column, " x "),
+                            is(apply(filters, row, column, " x ")));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void new_ShouldKeepOnlyTheValueFiltersInOrder() {
+
+        Filter upper = new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return value.toUpperCase();
+            }
+        };
+
+        // A subclass could change what is excluded: it is applied like any other filter.
+        Filter subclass = new ExcludeRowFilter(1) {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return value + rowIndex;
+            }
+        };
+
+        FilterPlan plan = new FilterPlan(Arrays.asList(upper, new ExcludeRowFilter(2), subclass, new TrimFilter()));
+
+        assertThat(plan.values, is(new Filter[]{upper, subclass, plan.values[2]}));
+        assertThat(plan.ranges, is(new boolean[]{false, false, true}));
+        assertThat(plan.apply(1, 0, " a"), is("A1"));
+        assertThat(plan.apply(2, 0, "a "), nullValue());
+    }
+
+    @Test
+    public void excludes_NoFilters_ShouldExcludeNothing() {
+
+        FilterPlan plan = new FilterPlan(Collections.<Filter>emptyList());
+
+        assertThat(plan.excludes(0), is(false));
+        assertThat(plan.excludes(Long.MAX_VALUE), is(false));
+        assertThat(plan.excludesColumn(Integer.MAX_VALUE), is(false));
+        assertThat(plan.apply(0, 0, "a"), is("a"));
+    }
+}
@@ -0,0 +1,193 @@
+package clay.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GzipFileInputTest {
+
+    private static final File ADDRESSES = new File("src/test/resources/addresses.csv");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Compresses bytes into a single gzip member.
+    private static byte[] gzip(byte[] bytes, int offset, int length) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes, offset, length);
+        gzip.close();
+
+        return out.toByteArray();
+    }
+
+    // Compresses bytes into BGZF members of (at most) blockSize uncompressed bytes, followed by an empty member.
+    private static byte[] bgzf(byte[] bytes, int blockSize) throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int offset = 0; offset <= bytes.length; offset += blockSize) {
+
+            int length = Math.min(blockSize, bytes.length - offset);
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+
+            byte[] deflated = new byte[length * 2 + 64];
+            int size = deflater.deflate(deflated);
+            deflater.end();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, offset, length);
+
+            ByteBuffer member = ByteBuffer.allocate(18 + size + 8).order(ByteOrder.LITTLE_ENDIAN);
+            member.put(new byte[]{0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF});
+            member.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+            member.putShort((short) (member.capacity() - 1));
+            member.put(deflated, 0, size);
+            member.putInt((int) crc.getValue()).putInt(length);
+
+            out.write(member.array());
+        }
+
+        return out.toByteArray();
+    }
+
+    private File write(String name, byte[]... parts) throws Exception {
+
+        File file = this.folder.newFile(name);
+        OutputStream out = new FileOutputStream(file);
+
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+
+        out.close();
+
+        return file;
+    }
+
+    @Test
+    public void getRecords_SingleMember_ShouldReturnSameRecordsAsFileInput() throws Exception {
+
+        byte[] bytes = Files.readAllBytes(ADDRESSES.toPath());
+        File file = this.write("addresses.csv.gz", gzip(bytes, 0, bytes.length));
+
+        assertThat(new GzipFileInput(file, "|").getRecords(), is(new FileInput(ADDRESSES, "|").getRecords()));
+
+        // A delimiter of more than a single char is tokenized from a reader.
+        assertThat(new GzipFileInput(file, "|2").getRecords(), is(new FileInput(ADDRESSES, "|2").getRecords()));
+    }
+
+    @Test
+    public void getRecords_ConcatenatedMembers_ShouldReadAllMembers() throws Exception {
+
+        byte[] bytes = Files.readAllBytes(ADDRESSES.toPath());
+        int half = bytes.length / 2;
+        File file = this.write("concatenated.csv.gz", gzip(bytes, 0, half), gzip(bytes, half, bytes.length - half));
+
+        assertThat(new GzipFileInput(file, "|").getRecords(), is(new FileInput(ADDRESSES, "|").getRecords()));
+    }
+
+    @Test
+    public void getRecords_Bgzf_ShouldDecompressMembersInParallel() throws Exception {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 100000; i++) {
+            builder.append(i).append(",\"a\nℋ\",").append(i * 31 % 997).append('\n');
+        }
+
+        byte[] bytes = builder.toString().getBytes("UTF-8");
+        File plain = this.write("bgzf.csv", bytes);
+        File file = this.write("bgzf.csv.gz", bgzf(bytes, 1000));
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        assertThat(ParallelGzipChannel.members(channel), notNullValue());
+        channel.close();
+
+        GzipFileInput input = new GzipFileInput(file);
+
+        assertThat(input.getRecords(), is(new FileInput(plain).getRecords()));
+        assertThat(input.getRecord(99999), is(Arrays.asList("99999", "a\nℋ", "" + 99999 * 31 % 997)));
+    }
+
+    @Test
+    public void read_SmallBatches_ShouldReturnAllBytesInOrder() throws Exception {
+
+        byte[] bytes = new byte[100000];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 7 % 251);
+        }
+
+        File file = this.write("batches.gz", bgzf(bytes, 333));
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        ParallelGzipChannel gzip = new ParallelGzipChannel(channel, ParallelGzipChannel.members(channel), 3, 100);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+
+        while (gzip.read(buffer) >= 0) {
+            actual.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        gzip.close();
+
+        assertThat(actual.toByteArray(), is(bytes));
+    }
+
+    @Test
+    public void members_PlainGzip_ShouldReturnNull() throws Exception {
+
+        File file = this.write("plain.csv.gz", gzip(new byte[]{'a', '\n'}, 0, 2));
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        assertThat(ParallelGzipChannel.members(channel), nullValue());
+
+        channel.close();
+    }
+
+    @Test
+    public void getRecords_CorruptBgzfMember_ShouldThrowException() throws Exception {
+
+        byte[] compressed = bgzf("a,b\nc,d\n".getBytes("UTF-8"), 4);
+
+        // Flip a bit of the CRC32 of the first member, which is followed by the size of its uncompressed bytes.
+        int size = ((compressed[16] & 0xFF) | (compressed[17] & 0xFF) << 8) + 1;
+        compressed[size - 8] ^= 1;
+
+        File file = this.write("corrupt.csv.gz", compressed);
+
+        try {
+            new GzipFileInput(file).getRecords();
+            fail("expected a RuntimeException");
+        }
+        catch (RuntimeException e) {
+            assertThat(e.getMessage(), is("could not read the input"));
+        }
+    }
+}
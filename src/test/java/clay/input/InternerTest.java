@@ -0,0 +1,71 @@
+package clay.input;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class InternerTest {
+
+    @Test
+    public void intern_SameChars_ShouldReturnSameInstancePerColumn() {
+
+        Interner interner = new Interner(100);
+        char[] chars = "xabcabcx".toCharArray();
+
+        String first = interner.intern(0, chars, 1, 3);
+
+        assertThat(first, is("abc"));
+        assertThat(interner.intern(0, chars, 4, 3), sameInstance(first));
+        assertThat(interner.intern(40, chars, 4, 3), not(sameInstance(first)));
+        assertThat(interner.intern(0, chars, 0, 0), is(""));
+        assertThat(interner.intern(0, chars, 1, 2), is("ab"));
+    }
+
+    @Test
+    public void intern_ManyValues_ShouldKeepAllOfThem() {
+
+        Interner interner = new Interner(10000);
+        String[] values = new String[5000];
+
+        for (int i = 0; i < values.length; i++) {
+            char[] chars = ("v" + i).toCharArray();
+            values[i] = interner.intern(1, chars, 0, chars.length);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            char[] chars = ("v" + i).toCharArray();
+            assertThat(interner.intern(1, chars, 0, chars.length), sameInstance(values[i]));
+        }
+
+        assertThat(interner.interns(1), is(true));
+    }
+
+    @Test
+    public void intern_HighCardinality_ShouldStopInterning() {
+
+        Interner interner = new Interner(3);
+
+        for (int i = 0; i < 3; i++) {
+            interner.intern(0, new char[]{(char) ('a' + i)}, 0, 1);
+        }
+
+        assertThat(interner.interns(0), is(true));
+
+        String d = interner.intern(0, new char[]{'d'}, 0, 1);
+
+        assertThat(d, is("d"));
+        assertThat(interner.interns(0), is(false));
+        String a = interner.intern(0, new char[]{'a'}, 0, 1);
+
+        assertThat(interner.intern(0, new char[]{'a'}, 0, 1), not(sameInstance(a)));
+        assertThat(interner.interns(1), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void newInterner_InvalidCardinality_ShouldThrowException() {
+        new Interner(0);
+    }
+}
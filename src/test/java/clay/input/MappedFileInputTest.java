@@ -0,0 +1,75 @@
+package clay.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MappedFileInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void getRecords_CustomDelimiter_ShouldReturnExpectedValue() throws Exception {
+
+        CSVInput input = new MappedFileInput(new File("src/test/resources/addresses.csv"), "|");
+
+        List<List<String>> records = input.getRecords();
+
+        assertThat(records.size(), is(101));
+        assertThat(records, is(new FileInput(new File("src/test/resources/addresses.csv"), "|").getRecords()));
+    }
+
+    @Test
+    public void getRecords_EmptyFile_ShouldReturnNoRecords() throws Exception {
+
+        CSVInput input = new MappedFileInput(this.folder.newFile("empty.csv"));
+
+        assertThat(input.getRecords().size(), is(0));
+    }
+
+    @Test
+    public void read_CharsSplitBySegments_ShouldDecodeAllChars() throws Exception {
+
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            // 1, 2, 3 and 4 byte UTF-8 sequences.
+            expected.append("a,é,ℋ,😀\n");
+        }
+
+        File file = this.folder.newFile("unicode.csv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write(expected.toString());
+        writer.close();
+
+        // A segment size that is not a multiple of any of the sequences.
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        Reader reader = new MappedFileReader(channel, FileInput.DEFAULT_CHARSET, 17);
+
+        StringBuilder actual = new StringBuilder();
+        char[] chars = new char[3];
+
+        for (int read = reader.read(chars); read >= 0; read = reader.read(chars)) {
+            actual.append(chars, 0, read);
+        }
+
+        reader.close();
+
+        assertThat(actual.toString(), is(expected.toString()));
+        assertThat(new MappedFileInput(file).getRecords().get(999), is(Arrays.asList("a", "é", "ℋ", "😀")));
+    }
+}
@@ -0,0 +1,137 @@
+package clay.input;
+
+import clay.filter.Filter;
+import clay.filter.TrimFilter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParallelParserTest {
+
+    // A filter that prefixes every value with the row index.
+    private static final Filter ROW_INDEX_FILTER = new Filter() {
+        @Override
+        public String apply(int rowIndex, int columnIndex, String value) {
+            return rowIndex + ":" + value;
+        }
+    };
+
+    private static String csv(int count) {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+
+            if (i % 7 == 0) {
+                // A quoted cell containing record ends, (escaped) quotes and delimiters.
+                builder.append(i).append(",\"x\n\n").append(i).append("\n\"\"y,\n\"\n");
+            }
+            else if (i % 11 == 0) {
+                builder.append("\n");
+            }
+            else {
+                builder.append(i).append(", ").append(i * 2).append(" \n");
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static List<List<String>> sequential(String csv, Filter... filters) {
+
+        CSVInput input = new StringInput(csv);
+
+        for (Filter filter : filters) {
+            input.with(filter);
+        }
+
+        return input.getRecords();
+    }
+
+    @Test
+    public void parse_SmallChunks_ShouldReturnSameRecordsAsSequential() {
+
+        String csv = csv(500);
+
+        for (int minChunkSize = 1; minChunkSize < 64; minChunkSize += 5) {
+
+            List<List<String>> records = new ParallelParser(csv, ",", "\"", "\"", "\n",
+                    Arrays.<Filter>asList(new TrimFilter(), ROW_INDEX_FILTER), null, new Condition[0], 0, 4,
+                    minChunkSize).parse();
+
+            assertThat(records, is(sequential(csv, new TrimFilter(), ROW_INDEX_FILTER)));
+        }
+    }
+
+    @Test
+    public void parse_MostChunksMispredicted_ShouldReturnSameRecordsAsSequential() {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 200; i++) {
+            // Nearly all of a record is a quoted cell full of record ends: most chunks start inside one.
+            builder.append(i).append(",\"").append("a\n\n\n\n\n\n\n\n\n\n").append(i).append("\"\n");
+        }
+
+        String csv = builder.toString();
+
+        for (int parallelism : new int[]{2, 8}) {
+
+            List<List<String>> records = new ParallelParser(csv, ",", "\"", "\"", "\n",
+                    Collections.<Filter>singletonList(ROW_INDEX_FILTER), null, new Condition[0], 0, parallelism,
+                    7).parse();
+
+            assertThat(records, is(sequential(csv, ROW_INDEX_FILTER)));
+        }
+    }
+
+    @Test
+    public void parse_MultiCharRecordEnd_ShouldReturnSameRecordsAsSequential() {
+
+        String csv = csv(300).replace("\n", "\r\n");
+
+        CSVInput expected = new StringInput(csv, ",", "\"", "\"", "\r\n").with(ROW_INDEX_FILTER);
+        List<List<String>> records = new ParallelParser(csv, ",", "\"", "\"", "\r\n",
+                Arrays.<Filter>asList(new TrimFilter(), ROW_INDEX_FILTER), null, new Condition[0], 0, 3, 10).parse();
+
+        assertThat(records, is(expected.getRecords()));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void parse_UnclosedQuote_ShouldThrowException() {
+        new ParallelParser(csv(100) + "1,\"2\n3,4\n", ",", "\"", "\"", "\n",
+                Collections.<Filter>emptyList(), null, new Condition[0], 0, 4, 10).parse();
+    }
+
+    @Test
+    public void getRecords_Parallel_ShouldReturnSameRecordsAsSequential() {
+
+        String csv = csv(20000);
+
+        List<List<String>> records = new StringInput(csv).with(ROW_INDEX_FILTER).parallel(8).getRecords();
+
+        assertThat(records, is(sequential(csv, ROW_INDEX_FILTER)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallel_InvalidParam_ShouldThrowException() {
+        new StringInput("a,b,c").parallel(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parallel_AlreadyParsed_ShouldThrowException() {
+
+        CSVInput input = new StringInput("a,b,c");
+
+        // parse it
+        input.getRecords();
+
+        // now try to change the parallelism
+        input.parallel(2);
+    }
+}
@@ -0,0 +1,114 @@
+package clay.input;
+
+import clay.filter.ExcludeColumnFilter;
+import clay.filter.ExcludeRowFilter;
+import clay.filter.Filter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PushParserTest {
+
+    // Collects the pushed records, checking that the callbacks come in the right order.
+    private static class Collector implements RecordHandler {
+
+        final List<List<String>> records = new ArrayList<List<String>>();
+        final List<Integer> rowIndexes = new ArrayList<Integer>();
+        List<String> record;
+
+        @Override
+        public void startRecord(int rowIndex) {
+            assertThat(this.record == null, is(true));
+            this.record = new ArrayList<String>();
+            this.rowIndexes.add(rowIndex);
+        }
+
+        @Override
+        public void cell(char[] chars, int offset, int length) {
+            this.record.add(new String(chars, offset, length));
+        }
+
+        @Override
+        public void endRecord() {
+            this.records.add(this.record);
+            this.record = null;
+        }
+    }
+
+    private static List<List<String>> push(CSVInput input) {
+
+        Collector collector = new Collector();
+        input.parse(collector);
+
+        return collector.records;
+    }
+
+    @Test
+    public void parse_RandomInput_ShouldPushSameRecordsAsGetRecords() {
+
+        Random random = new Random(11);
+        String[] alphabet = {"a", "b", " ", " ", ",", ",", "\"", "\n", "\n"};
+
+        Filter upper = new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return columnIndex == 1 ? value.toUpperCase() + "!" : value;
+            }
+        };
+
+        for (int i = 0; i < 2000; i++) {
+
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(50);
+
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+
+            String csv = builder.toString();
+            List<List<String>> expected;
+
+            try {
+                expected = new StringInput(csv).getRecords();
+            }
+            catch (RuntimeException e) {
+                // An unclosed quote.
+                continue;
+            }
+
+            assertThat(csv, push(new StringInput(csv)), is(expected));
+
+            CSVInput filtered = new StringInput(csv).with(upper).with(new ExcludeRowFilter(1))
+                    .with(new ExcludeColumnFilter(2));
+
+            assertThat(csv, push(filtered), is(new StringInput(csv).with(upper).with(new ExcludeRowFilter(1))
+                    .with(new ExcludeColumnFilter(2)).getRecords()));
+        }
+    }
+
+    @Test
+    public void parse_NormalUse_ShouldPassRawRowIndexes() {
+
+        Collector collector = new Collector();
+        new StringInput("a\n\n \nb,c").parse(collector);
+
+        assertThat(collector.records, is(Arrays.asList(Arrays.asList("a"), Arrays.asList("b", "c"))));
+        assertThat(collector.rowIndexes, is(Arrays.asList(0, 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_NullHandler_ShouldThrowException() {
+        new StringInput("a").parse(null);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void parse_UnclosedQuote_ShouldThrowException() {
+        push(new StringInput("a\n\"b"));
+    }
+}
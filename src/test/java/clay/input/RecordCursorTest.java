@@ -0,0 +1,86 @@
+package clay.input;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RecordCursorTest {
+
+    @Test
+    public void next_NormalUse_ShouldReturnSameRecordInstance() throws Exception {
+
+        String csv = "a, b ,c\n" +
+                "\n" +
+                "1,\"2\n2\",3\n";
+
+        RecordCursor cursor = new StringInput(csv).cursor();
+        List<List<String>> records = new ArrayList<List<String>>();
+        Record first = cursor.next();
+
+        for (Record record = first; record != null; record = cursor.next()) {
+            assertThat(record == first, is(true));
+            records.add(record.toList());
+        }
+
+        assertThat(records, is(new StringInput(csv).getRecords()));
+        assertThat(cursor.next() == null, is(true));
+        cursor.close();
+    }
+
+    @Test
+    public void getters_NormalUse_ShouldReadCellsInPlace() throws Exception {
+
+        RecordCursor cursor = new StringInput("\n -42 ,9223372036854775807,1.5,x").cursor();
+        Record record = cursor.next();
+
+        assertThat(record.getRowIndex(), is(1));
+        assertThat(record.size(), is(4));
+        assertThat(record.getInt(0), is(-42));
+        assertThat(record.getLong(1), is(Long.MAX_VALUE));
+        assertThat(record.getDouble(2), is(1.5));
+        assertThat(record.getLength(3), is(1));
+        assertThat(record.charAt(3, 0), is('x'));
+        assertThat(record.contentEquals(3, "x"), is(true));
+        assertThat(record.contentEquals(3, "y"), is(false));
+        assertThat(record.toString(), is(Arrays.asList("-42", "9223372036854775807", "1.5", "x").toString()));
+
+        char[] chars = new char[3];
+        record.getChars(0, chars, 0);
+        assertThat(new String(chars), is("-42"));
+
+        assertThat(cursor.next() == null, is(true));
+    }
+
+    @Test
+    public void getLong_InvalidNumbers_ShouldThrowException() {
+
+        Record record = new StringInput("9223372036854775808,-,1a,,2147483648").cursor().next();
+
+        for (int cell = 0; cell < record.size(); cell++) {
+            try {
+                if (cell == 4) {
+                    record.getInt(cell);
+                }
+                else {
+                    record.getLong(cell);
+                }
+                throw new AssertionError("cell " + cell + " should not be a number");
+            }
+            catch (NumberFormatException e) {
+                // Expected.
+            }
+        }
+
+        assertThat(record.getLong(4), is(2147483648L));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getString_NoSuchCell_ShouldThrowException() {
+        new StringInput("a,b").cursor().next().getString(2);
+    }
+}
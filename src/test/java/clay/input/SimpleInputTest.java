@@ -1,11 +1,16 @@
 package clay.input;
 
+import clay.filter.ExcludeRowRangeFilter;
 import clay.filter.Filter;
 import clay.filter.TrimFilter;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -183,4 +188,422 @@ public class SimpleInputTest {
         assertThat(records.get(0), is(Arrays.asList("a", "b", "c")));
         assertThat(records.get(1), is(Arrays.asList("1", "2⅀ℋ2⅀2", "3")));
     }
+
+    @Test
+    public void iterator_NormalUse_ShouldReturnSameRecordsAsGetRecords() {
+
+        String csv = "a, b ,c\n" +
+                "\n" +
+                "1,\"2\n2\",3\n" +
+                "11,12,13\n";
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<String> record : new StringInput(csv)) {
+            records.add(record);
+        }
+
+        assertThat(records.size(), is(3));
+        assertThat(records, is(new StringInput(csv).getRecords()));
+        assertThat(records.get(1), is(Arrays.asList("1", "2\n2", "3")));
+    }
+
+    @Test
+    public void iterator_WithRowIndexFilter_ShouldPassRawRowIndexes() {
+
+        CSVInput input = new StringInput("1,2\n\n3,4\n5,6").with(new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                // Row 1 is the empty record.
+                return rowIndex == 2 ? null : value;
+            }
+        });
+
+        Iterator<List<String>> iterator = input.iterator();
+
+        assertThat(iterator.next(), is(Arrays.asList("1", "2")));
+        assertThat(iterator.next(), is(Arrays.asList("5", "6")));
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    @Test
+    public void iterator_NotParsed_ShouldNotPreventChangingFilters() {
+
+        CSVInput input = new StringInput(" a , b ");
+
+        assertThat(input.iterator().next(), is(Arrays.asList("a", "b")));
+
+        input.without(TrimFilter.class);
+
+        assertThat(input.iterator().next(), is(Arrays.asList(" a ", " b ")));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void iterator_Exhausted_ShouldThrowException() {
+
+        Iterator<List<String>> iterator = new StringInput("a,b,c").iterator();
+
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void iterator_UnclosedQuote_ShouldThrowException() {
+
+        Iterator<List<String>> iterator = new StringInput("a,b\nc,\"d").iterator();
+
+        assertThat(iterator.next(), is(Arrays.asList("a", "b")));
+
+        iterator.next();
+    }
+
+    @Test
+    public void views_NormalUse_ShouldReturnSameRecordsAsIterator() {
+
+        String csv = "a, b ,c\n" +
+                "\n" +
+                " ,  \n" +
+                "1,\"2\n\"\"2\"\" \",3\n" +
+                "11,12,13";
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<CharSequence> view : new StringInput(csv).views()) {
+
+            List<String> record = new ArrayList<String>();
+
+            for (CharSequence cell : view) {
+                assertThat(cell instanceof CharSlice, is(true));
+                record.add(cell.toString());
+            }
+
+            records.add(record);
+        }
+
+        assertThat(records.size(), is(3));
+        assertThat(records, is(new StringInput(csv).getRecords()));
+        assertThat(records.get(1), is(Arrays.asList("1", "2\n\"2\"", "3")));
+    }
+
+    @Test
+    public void views_WithFilter_ShouldApplyFiltersInOrder() {
+
+        CSVInput input = new StringInput(" a , b \n c ,d").with(new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return columnIndex == 0 ? null : "[" + value + "]";
+            }
+        });
+
+        Iterator<List<CharSequence>> views = input.views().iterator();
+
+        assertThat(views.next().toString(), is("[[b]]"));
+        assertThat(views.next().toString(), is("[[d]]"));
+        assertThat(views.hasNext(), is(false));
+    }
+
+    @Test
+    public void views_PreviousViews_ShouldRemainValid() {
+
+        Iterator<List<CharSequence>> views = new StringInput("a,b\nc,d").views().iterator();
+
+        List<CharSequence> first = views.next();
+        List<CharSequence> second = views.next();
+
+        assertThat(first.toString(), is("[a, b]"));
+        assertThat(second.toString(), is("[c, d]"));
+    }
+
+    @Test
+    public void views_AlreadyParsed_ShouldReturnParsedRecords() {
+
+        CSVInput input = new StringInput("a,b\nc,d");
+        input.getRecords();
+
+        Iterator<List<CharSequence>> views = input.views().iterator();
+
+        assertThat(views.next().get(0) instanceof String, is(true));
+        assertThat(views.next().toString(), is("[c, d]"));
+        assertThat(views.hasNext(), is(false));
+    }
+
+    @Test
+    public void getRecords_Range_ShouldReturnRecordsByRawIndex() {
+
+        CSVInput input = new StringInput("0\n\n2\n3\n4\n5").with(new ExcludeRowRangeFilter(3, 5));
+
+        assertThat(input.getRecords(0, 3), is(Arrays.asList(Arrays.asList("0"), Arrays.asList("2"))));
+        assertThat(input.getRecords(2, 100), is(Arrays.asList(Arrays.asList("2"), Arrays.asList("5"))));
+        assertThat(input.getRecords(4, 4).isEmpty(), is(true));
+        assertThat(input.getRecord(5), is(Arrays.asList("5")));
+        assertThat(input.getRecord(1) == null, is(true));
+        assertThat(input.getRecord(3) == null, is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRecords_ToBeforeFrom_ShouldThrowException() {
+        new StringInput("a").getRecords(2, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRecord_BeyondIntRowIndex_ShouldThrowException() {
+        new StringInput("a").getRecord(Integer.MAX_VALUE + 1L);
+    }
+
+    @Test
+    public void iterator_WithRowRangeFilter_ShouldSkipRange() {
+
+        CSVInput input = new StringInput("0\n1\n2\n3").with(new ExcludeRowRangeFilter(1, 3));
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<String> record : input) {
+            records.add(record);
+        }
+
+        assertThat(records, is(Arrays.asList(Arrays.asList("0"), Arrays.asList("3"))));
+    }
+
+    @Test
+    public void head_ShouldReturnFirstNonEmptyRecords() {
+
+        CSVInput input = new StringInput("0\n\n2\n3\n4").with(new ExcludeRowRangeFilter(3, 4));
+
+        assertThat(input.head(0).isEmpty(), is(true));
+        assertThat(input.head(2), is(Arrays.asList(Arrays.asList("0"), Arrays.asList("2"))));
+        assertThat(input.head(3), is(Arrays.asList(Arrays.asList("0"), Arrays.asList("2"), Arrays.asList("4"))));
+        assertThat(input.head(100), is(input.getRecords()));
+        assertThat(input.head(1), is(Arrays.asList(Arrays.asList("0"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void head_NegativeCount_ShouldThrowException() {
+        new StringInput("a").head(-1);
+    }
+
+    // A filter that excludes the cells of all columns but the given ones, and prefixes the others with their column.
+    private static Filter columns(final Integer... columns) {
+        return new Filter() {
+            @Override
+            public String apply(int rowIndex, int columnIndex, String value) {
+                return Arrays.asList(columns).contains(columnIndex) ? columnIndex + ":" + value : null;
+            }
+        };
+    }
+
+    // A filter that prefixes every value with its row.
+    private static final Filter ROW_INDEX_FILTER = new Filter() {
+        @Override
+        public String apply(int rowIndex, int columnIndex, String value) {
+            return rowIndex + ":" + value;
+        }
+    };
+
+    // A filter that prefixes every value with its column.
+    private static final Filter COLUMN_INDEX_FILTER = new Filter() {
+        @Override
+        public String apply(int rowIndex, int columnIndex, String value) {
+            return columnIndex + ":" + value;
+        }
+    };
+
+    @Test
+    public void select_ShouldOnlyReturnSelectedColumns() {
+
+        String[] csvs = {
+                "a,b,c,d\n1,2,3,4\n\n5,6\n7,\"8\n\"\"x\",9,10,11\n,,,12",
+                "\"a\"\"\",b\nc,\"d,e\"\n \"f\" ,g,h",
+                "x"
+        };
+
+        for (String csv : csvs) {
+            for (String delimiter : new String[]{",", ",,"}) {
+
+                String text = csv.replace(",", delimiter);
+                List<List<String>> expected = new StringInput(text, delimiter).with(columns(1, 3)).getRecords();
+
+                CSVInput input = new StringInput(text, delimiter).with(COLUMN_INDEX_FILTER).select(3, 1, 3);
+                List<List<String>> records = new ArrayList<List<String>>();
+
+                for (List<String> record : input) {
+                    records.add(record);
+                }
+
+                assertThat(text, records, is(expected));
+                assertThat(text, input.head(100), is(expected));
+                assertThat(text, input.getRecords(0, 100), is(expected));
+
+                List<List<String>> cursor = new ArrayList<List<String>>();
+                RecordCursor recordCursor = input.cursor();
+
+                for (Record record = recordCursor.next(); record != null; record = recordCursor.next()) {
+                    cursor.add(record.toList());
+                }
+
+                assertThat(text, cursor, is(expected));
+
+                List<String> views = new ArrayList<String>();
+
+                for (List<CharSequence> view : input.views()) {
+                    views.add(view.toString());
+                }
+
+                assertThat(text, views.toString(), is(expected.toString()));
+                assertThat(text, new StringInput(text, delimiter).with(COLUMN_INDEX_FILTER).select(1, 3).parallel(3)
+                        .getRecords(), is(expected));
+                assertThat(text, input.getRecords(), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void select_Names_ShouldSelectColumnsOfFirstRecord() {
+
+        CSVInput input = new StringInput("a,b,c\n1,2,3\n4,5,6").select("c", "a");
+
+        assertThat(input.getRecords(), is(Arrays.asList(Arrays.asList("a", "c"), Arrays.asList("1", "3"),
+                Arrays.asList("4", "6"))));
+    }
+
+    @Test
+    public void select_PaddedNames_ShouldMatchTrimmedNames() {
+
+        CSVInput input = new StringInput("id, name\n1, bob\n").select("name");
+
+        assertThat(input.getRecords(), is(Arrays.asList(Arrays.asList("name"), Arrays.asList("bob"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void select_UnknownName_ShouldThrowException() {
+        new StringInput("a,b,c\n1,2,3").select("d");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void select_NegativeColumn_ShouldThrowException() {
+        new StringInput("a,b,c").select(1, -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void select_AlreadyParsed_ShouldThrowException() {
+
+        CSVInput input = new StringInput("a,b,c");
+
+        input.getRecords();
+        input.select(1);
+    }
+
+    // A predicate that accepts the cells that start with a given char.
+    private static Predicate<CharSequence> startsWith(final char c) {
+        return new Predicate<CharSequence>() {
+            @Override
+            public boolean test(CharSequence cell) {
+                return cell.length() > 0 && cell.charAt(0) == c;
+            }
+        };
+    }
+
+    @Test
+    public void where_ShouldOnlyReturnMatchingRecords() {
+
+        String csv = "a,x1,b\n\"x\n2\",y3,c\nd,\"x\"\"4\",e\nf\n,x5";
+
+        for (String delimiter : new String[]{",", ",,"}) {
+
+            String text = csv.replace(",", delimiter);
+            CSVInput input = new StringInput(text, delimiter).with(ROW_INDEX_FILTER).where(1, startsWith('x'));
+
+            List<List<String>> expected = Arrays.asList(Arrays.asList("0:a", "0:x1", "0:b"),
+                    Arrays.asList("2:d", "2:x\"4", "2:e"), Arrays.asList("4:", "4:x5"));
+
+            List<List<String>> records = new ArrayList<List<String>>();
+
+            for (List<String> record : input) {
+                records.add(record);
+            }
+
+            assertThat(text, records, is(expected));
+            assertThat(text, input.head(2), is(expected.subList(0, 2)));
+            assertThat(text, input.getRecords(1, 100), is(expected.subList(1, 3)));
+
+            List<List<String>> cursor = new ArrayList<List<String>>();
+            RecordCursor recordCursor = input.cursor();
+
+            for (Record record = recordCursor.next(); record != null; record = recordCursor.next()) {
+                cursor.add(record.toList());
+            }
+
+            assertThat(text, cursor, is(expected));
+
+            List<String> views = new ArrayList<String>();
+
+            for (List<CharSequence> view : input.views()) {
+                views.add(view.toString());
+            }
+
+            assertThat(text, views.toString(), is(expected.toString()));
+            assertThat(text, new StringInput(text, delimiter).with(ROW_INDEX_FILTER).where(1, startsWith('x'))
+                    .parallel(3).getRecords(), is(expected));
+            assertThat(text, input.getRecords(), is(expected));
+        }
+    }
+
+    @Test
+    public void where_UnselectedColumn_ShouldStillBeTested() {
+
+        CSVInput input = new StringInput("1,a,x\n2,b,y\n3,c,x").select(0, 1).where(2, startsWith('x'))
+                .where(0, startsWith('3'));
+
+        assertThat(input.getRecords(), is(Arrays.asList(Arrays.asList("3", "c"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void where_NullPredicate_ShouldThrowException() {
+        new StringInput("a,b,c").where(1, null);
+    }
+
+    @Test
+    public void intern_ShouldReturnSameInstancesForLowCardinalityColumns() {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i).append(", ").append(i % 2 == 0 ? "NL" : "BE").append(" ,").append(i % 3).append('\n');
+        }
+
+        for (int parallelism : new int[]{1, 3}) {
+
+            CSVInput input = new StringInput(builder.toString()).intern(5).parallel(parallelism);
+            List<List<String>> records = input.getRecords();
+
+            assertThat(records, is(new StringInput(builder.toString()).getRecords()));
+            assertThat(records.get(0).get(0) == records.get(5).get(0), is(false));
+
+            if (parallelism == 1) {
+                assertThat(records.get(0).get(1) == records.get(998).get(1), is(true));
+                assertThat(records.get(2).get(2) == records.get(5).get(2), is(true));
+            }
+        }
+
+        List<List<String>> records = new ArrayList<List<String>>();
+
+        for (List<String> record : new StringInput(builder.toString()).intern()) {
+            records.add(record);
+        }
+
+        assertThat(records.get(2).get(2) == records.get(5).get(2), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intern_NegativeCardinality_ShouldThrowException() {
+        new StringInput("a,b,c").intern(-1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void intern_AlreadyParsed_ShouldThrowException() {
+
+        CSVInput input = new StringInput("a,b,c");
+
+        input.getRecords();
+        input.intern();
+    }
 }
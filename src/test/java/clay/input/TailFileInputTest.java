@@ -0,0 +1,171 @@
+package clay.input;
+
+import clay.filter.ExcludeRowFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TailFileInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void append(File file, String contents, String charset) throws Exception {
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), charset);
+        writer.write(contents);
+        writer.close();
+    }
+
+    @Test
+    public void poll_AppendedRecords_ShouldReturnOnlyNewCompleteRecords() throws Exception {
+
+        for (String charset : new String[]{"UTF-8", "UTF-16BE"}) {
+
+            // UTF-16 cannot be tokenized as bytes: both ways of polling are tested.
+            File file = this.folder.newFile("tail-" + charset + ".csv");
+            TailFileInput input = new TailFileInput(file, ",", "\"", "\"", "\n", Charset.forName(charset));
+
+            assertThat(input.poll().size(), is(0));
+
+            this.append(file, "a,b\nc,d\ne,", charset);
+
+            assertThat(input.poll(), is(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"))));
+            assertThat(input.getRecordCount(), is(2));
+
+            this.append(file, "\"f\n", charset);
+
+            // The last record contains a quoted cell that has not been closed yet.
+            assertThat(input.poll().size(), is(0));
+
+            this.append(file, "ℋ\"\n\ng", charset);
+
+            assertThat(input.poll(), is(Collections.singletonList(Arrays.asList("e", "f\nℋ"))));
+
+            this.append(file, "\n", charset);
+
+            assertThat(input.poll(), is(Collections.singletonList(Collections.singletonList("g"))));
+            assertThat(input.getRecordCount(), is(5));
+            assertThat(input.getOffset(), is(file.length()));
+            assertThat(input.poll().size(), is(0));
+        }
+    }
+
+    @Test
+    public void poll_Filters_ShouldUseRowIndexesOverAllPolls() throws Exception {
+
+        File file = this.folder.newFile("filtered.csv");
+        CSVInput input = new TailFileInput(file).with(new ExcludeRowFilter(1, 3));
+
+        this.append(file, "0\n1\n", "UTF-8");
+
+        assertThat(((TailFileInput) input).poll(), is(Collections.singletonList(Collections.singletonList("0"))));
+
+        this.append(file, "2\n3\n4\n", "UTF-8");
+
+        assertThat(((TailFileInput) input).poll(), is(Arrays.asList(Collections.singletonList("2"),
+                Collections.singletonList("4"))));
+    }
+
+    @Test
+    public void poll_MalformedBytes_ShouldContinueAfterLastRecord() throws Exception {
+
+        File file = this.folder.newFile("malformed.csv");
+        TailFileInput input = new TailFileInput(file, ",", "\"", "\"", "\r\n");
+        FileOutputStream out = new FileOutputStream(file);
+
+        out.write(new byte[]{'a', (byte) 0xFF, ',', 'b', '\r', '\n'});
+        out.close();
+
+        assertThat(input.poll(), is(Collections.singletonList(Arrays.asList("a\uFFFD", "b"))));
+        assertThat(input.getOffset(), is(6L));
+
+        this.append(file, "cde,fgh\r\nijk,lmn\r\n", "UTF-8");
+
+        assertThat(input.poll(), is(Arrays.asList(Arrays.asList("cde", "fgh"), Arrays.asList("ijk", "lmn"))));
+        assertThat(input.getOffset(), is(file.length()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void poll_FailingCondition_ShouldThrowException() throws Exception {
+
+        File file = this.folder.newFile("failing.csv");
+        CSVInput input = new TailFileInput(file).where(0, new Predicate<CharSequence>() {
+            @Override
+            public boolean test(CharSequence cell) {
+                throw new IllegalStateException(cell.toString());
+            }
+        });
+
+        this.append(file, "a\n\"b", "UTF-8");
+        ((TailFileInput) input).poll();
+    }
+
+    @Test
+    public void poll_TruncatedFile_ShouldStartOver() throws Exception {
+
+        File file = this.folder.newFile("truncated.csv");
+        TailFileInput input = new TailFileInput(file);
+
+        this.append(file, "a\nb\nc\n", "UTF-8");
+
+        assertThat(input.poll().size(), is(3));
+
+        new FileOutputStream(file).close();
+        this.append(file, "d\n", "UTF-8");
+
+        assertThat(input.poll(), is(Collections.singletonList(Collections.singletonList("d"))));
+        assertThat(input.getRecordCount(), is(4));
+    }
+
+    @Test
+    public void await_AppendedRecord_ShouldReturnTrue() throws Exception {
+
+        final File file = this.folder.newFile("await.csv");
+        TailFileInput input = new TailFileInput(file);
+
+        try {
+            assertThat(input.await(10, TimeUnit.MILLISECONDS), is(false));
+
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                        append(file, "a\n", "UTF-8");
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+
+            writer.start();
+
+            assertThat(input.await(30, TimeUnit.SECONDS), is(true));
+            writer.join();
+
+            List<List<String>> records = input.poll();
+
+            assertThat(records, is(Collections.singletonList(Collections.singletonList("a"))));
+            assertThat(input.await(10, TimeUnit.MILLISECONDS), is(false));
+        }
+        finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package clay.input;
+
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Creates and changes the (UTF-8) files that tests parse.
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    /**
+     * Creates a new file in a temporary folder.
+     *
+     * @param folder
+     *         the folder to create the file in.
+     * @param name
+     *         the name of the file.
+     * @param contents
+     *         the contents of the file.
+     *
+     * @return the new file.
+     *
+     * @throws Exception
+     *         when the file could not be written.
+     */
+    static File write(TemporaryFolder folder, String name, String contents) throws Exception {
+
+        File file = folder.newFile(name);
+        write(file, contents, false);
+
+        return file;
+    }
+
+    /**
+     * Appends to a file, which changes its size and modification time.
+     *
+     * @param file
+     *         the file to append to.
+     * @param contents
+     *         the contents to append.
+     *
+     * @throws Exception
+     *         when the file could not be written.
+     */
+    static void append(File file, String contents) throws Exception {
+        write(file, contents, true);
+    }
+
+    // Writes the contents to the file, after its current contents or instead of them.
+    private static void write(File file, String contents, boolean append) throws Exception {
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8");
+
+        try {
+            writer.write(contents);
+        }
+        finally {
+            writer.close();
+        }
+    }
+}